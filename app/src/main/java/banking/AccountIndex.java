@@ -0,0 +1,115 @@
+package banking;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+// Secondary indexes over the accounts: holder name (case-insensitive, for prefix search) and balance
+// (for range queries). Both are concurrent skip lists, so lookups never block postings. Results are
+// paged by passing the last entry of the previous page as the cursor.
+// LedgerService updates the balance index under the account's stripe lock, so for any one account
+// the remove and re-add happen in balance order.
+final class AccountIndex {
+    static final class BalanceEntry {
+        final long balance;
+        final int accountNumber;
+
+        BalanceEntry(long balance, int accountNumber) {
+            this.balance = balance;
+            this.accountNumber = accountNumber;
+        }
+    }
+
+    private static final Comparator<BankAccount> BY_HOLDER = (a, b) -> {
+        int c = String.CASE_INSENSITIVE_ORDER.compare(a.getAccountHolder(), b.getAccountHolder());
+        return c != 0 ? c : Integer.compare(a.getAccountNumber(), b.getAccountNumber());
+    };
+    private static final Comparator<BalanceEntry> BY_BALANCE = (a, b) -> {
+        int c = Long.compare(a.balance, b.balance);
+        return c != 0 ? c : Integer.compare(a.accountNumber, b.accountNumber);
+    };
+
+    // Holder names never change, so this index only grows
+    private final ConcurrentSkipListSet<BankAccount> holders = new ConcurrentSkipListSet<>(BY_HOLDER);
+    private final ConcurrentSkipListSet<BalanceEntry> balances = new ConcurrentSkipListSet<>(BY_BALANCE);
+
+    // Callers must exclude writers. Entries are sorted first so each insert lands at the end of the list.
+    static AccountIndex build(AccountStore accounts) {
+        AccountIndex index = new AccountIndex();
+        BankAccount[] all = new BankAccount[accounts.size()];
+        int n = 0;
+        for (BankAccount account : accounts) {
+            all[n++] = account;
+        }
+        BalanceEntry[] entries = new BalanceEntry[n];
+        for (int i = 0; i < n; i++) {
+            entries[i] = new BalanceEntry(all[i].getBalance(), all[i].getAccountNumber());
+        }
+        Arrays.parallelSort(all, BY_HOLDER);
+        Arrays.parallelSort(entries, BY_BALANCE);
+        index.holders.addAll(Arrays.asList(all));
+        index.balances.addAll(Arrays.asList(entries));
+        return index;
+    }
+
+    void add(BankAccount account) {
+        holders.add(account);
+        balances.add(new BalanceEntry(account.getBalance(), account.getAccountNumber()));
+    }
+
+    void balanceChanged(int accountNumber, long before, long after) {
+        if (before == after) {
+            return;
+        }
+        balances.remove(new BalanceEntry(before, accountNumber));
+        balances.add(new BalanceEntry(after, accountNumber));
+    }
+
+    // Up to limit accounts whose holder starts with the prefix, ignoring case, ordered by holder and
+    // account number and starting after the given account (null for the first page)
+    List<BankAccount> holdersStartingWith(String prefix, BankAccount after, int limit) {
+        NavigableSet<BankAccount> tail = after == null
+                ? holders.tailSet(new BankAccount(0, prefix, 0, null), true)
+                : holders.tailSet(after, false);
+        List<BankAccount> page = new ArrayList<>(Math.min(limit, 1024));
+        for (BankAccount account : tail) {
+            String holder = account.getAccountHolder();
+            if (page.size() == limit || !holder.regionMatches(true, 0, prefix, 0, prefix.length())) {
+                break;
+            }
+            page.add(account);
+        }
+        return page;
+    }
+
+    // Up to n entries with the highest balances, highest first
+    List<BalanceEntry> highestBalances(int n) {
+        List<BalanceEntry> top = new ArrayList<>(Math.min(n, 1024));
+        for (BalanceEntry entry : balances.descendingSet()) {
+            if (top.size() == n) {
+                break;
+            }
+            top.add(entry);
+        }
+        return top;
+    }
+
+    // Up to limit entries with min <= balance <= max, ordered by balance and account number and
+    // starting after the given entry (null for the first page)
+    List<BalanceEntry> balancesBetween(long min, long max, BalanceEntry after, int limit) {
+        NavigableSet<BalanceEntry> tail = after == null
+                ? balances.tailSet(new BalanceEntry(min, Integer.MIN_VALUE), true)
+                : balances.tailSet(after, false);
+        List<BalanceEntry> page = new ArrayList<>(Math.min(limit, 1024));
+        for (BalanceEntry entry : tail) {
+            if (page.size() == limit || entry.balance > max) {
+                break;
+            }
+            page.add(entry);
+        }
+        return page;
+    }
+}
@@ -0,0 +1,427 @@
+package banking;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+// Append-only write-ahead journal of account operations.
+// Each record is [length][crc32][sequence][type][payload]; a torn tail is dropped on replay.
+class AccountJournal implements AutoCloseable {
+    enum SyncMode {
+        NONE,         // hand records to the OS, never fsync
+        EVERY_COMMIT, // fsync before commit returns
+        GROUP         // like EVERY_COMMIT, but the leader waits briefly so bursts share one fsync
+    }
+
+    static final byte CREATE = 1;
+    // Amounts as doubles, written before fixed-point money; still replayed
+    static final byte DOUBLE_DEPOSIT = 2;
+    static final byte DOUBLE_WITHDRAW = 3;
+    // Amounts in minor units
+    static final byte DEPOSIT = 4;
+    static final byte WITHDRAW = 5;
+    // Every leg of a transfer batch in one record, so replay applies all of them or none
+    static final byte TRANSFER = 6;
+    static final byte INTEREST = 7;
+
+    private static final int RECORD_HEADER = 8;
+
+    private final File file;
+    private final FileChannel channel;
+    private final SyncMode syncMode;
+    private final long groupCommitNanos;
+    private final boolean readOnly;
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final CRC32 crc = new CRC32();
+
+    // Guarded by this
+    private ByteBuffer active = ByteBuffer.allocate(64 * 1024);
+    private ByteBuffer spare = ByteBuffer.allocate(64 * 1024);
+    private long lastSequence;
+    private int recordStart;
+
+    private volatile long durableSequence;
+    private volatile long fileSize;
+
+    public AccountJournal(File file, SyncMode syncMode, long groupCommitMicros) throws IOException {
+        this.file = file;
+        this.syncMode = syncMode;
+        this.groupCommitNanos = TimeUnit.MICROSECONDS.toNanos(groupCommitMicros);
+        this.readOnly = false;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            // Replay, checkpoints and reset all rewrite the data files, so only one process may own them.
+            // Held until the channel is closed.
+            if (lock(channel) == null) {
+                throw new IOException(file + " is in use by another process; close it before starting another.");
+            }
+            this.fileSize = channel.size();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // Read-only view for replaying next to the process that owns the file: takes no lock, never
+    // truncates and refuses to log. A missing file replays as empty.
+    public AccountJournal(File file) throws IOException {
+        this.file = file;
+        this.syncMode = SyncMode.NONE;
+        this.groupCommitNanos = 0;
+        this.readOnly = true;
+        this.channel = file.exists() ? FileChannel.open(file.toPath(), StandardOpenOption.READ) : null;
+        this.fileSize = channel == null ? 0 : channel.size();
+    }
+
+    private static FileLock lock(FileChannel channel) throws IOException {
+        try {
+            return channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // Already open elsewhere in this process
+            return null;
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    public long size() {
+        return fileSize;
+    }
+
+    public synchronized long lastSequence() {
+        return lastSequence;
+    }
+
+    public synchronized long logCreate(int accountNumber, String holder, long timestamp) {
+        byte[] name = holder.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buf = begin(CREATE, 14 + name.length);
+        buf.putLong(timestamp);
+        buf.putInt(accountNumber);
+        buf.putShort((short) name.length);
+        buf.put(name);
+        return finish();
+    }
+
+    public synchronized long logDeposit(int accountNumber, long amount, long timestamp) {
+        return logAmount(DEPOSIT, accountNumber, amount, timestamp);
+    }
+
+    public synchronized long logWithdraw(int accountNumber, long amount, long timestamp) {
+        return logAmount(WITHDRAW, accountNumber, amount, timestamp);
+    }
+
+    public synchronized long logInterest(int accountNumber, long amount, long timestamp) {
+        return logAmount(INTEREST, accountNumber, amount, timestamp);
+    }
+
+    private long logAmount(byte type, int accountNumber, long amount, long timestamp) {
+        ByteBuffer buf = begin(type, 20);
+        buf.putLong(timestamp);
+        buf.putInt(accountNumber);
+        buf.putLong(amount);
+        return finish();
+    }
+
+    // Legs are (from, to, amount) triples taken from the parallel arrays
+    public synchronized long logTransfer(int[] from, int[] to, long[] amounts, int legs, long timestamp) {
+        ByteBuffer buf = begin(TRANSFER, 12 + legs * 16);
+        buf.putLong(timestamp);
+        buf.putInt(legs);
+        for (int i = 0; i < legs; i++) {
+            buf.putInt(from[i]);
+            buf.putInt(to[i]);
+            buf.putLong(amounts[i]);
+        }
+        return finish();
+    }
+
+    private ByteBuffer begin(byte type, int payloadLength) {
+        if (readOnly) {
+            throw new IllegalStateException("Journal is open read-only.");
+        }
+        int needed = RECORD_HEADER + 9 + payloadLength;
+        if (active.remaining() < needed) {
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(active.capacity() * 2, active.position() + needed));
+            active.flip();
+            bigger.put(active);
+            active = bigger;
+        }
+        recordStart = active.position();
+        active.position(recordStart + RECORD_HEADER);
+        active.putLong(lastSequence + 1);
+        active.put(type);
+        return active;
+    }
+
+    private long finish() {
+        int end = active.position();
+        int length = end - recordStart - RECORD_HEADER;
+        crc.reset();
+        crc.update(active.array(), recordStart + RECORD_HEADER, length);
+        active.putInt(recordStart, length);
+        active.putInt(recordStart + 4, (int) crc.getValue());
+        return ++lastSequence;
+    }
+
+    // Makes every record up to and including the given sequence durable according to the sync mode.
+    // Concurrent callers elect one leader whose write and fsync covers everyone queued behind it.
+    public void commit(long sequence) throws IOException {
+        if (sequence <= durableSequence) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            if (sequence <= durableSequence) {
+                return;
+            }
+            if (syncMode == SyncMode.GROUP && groupCommitNanos > 0) {
+                LockSupport.parkNanos(groupCommitNanos);
+            }
+            flushPending();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    public void commitAll() throws IOException {
+        commit(lastSequence());
+    }
+
+    private void flushPending() throws IOException {
+        ByteBuffer pending;
+        long upTo;
+        synchronized (this) {
+            pending = active;
+            active = spare;
+            spare = pending;
+            upTo = lastSequence;
+        }
+        pending.flip();
+        long position = fileSize;
+        try {
+            while (pending.hasRemaining()) {
+                position += channel.write(pending, position);
+            }
+            if (syncMode != SyncMode.NONE) {
+                channel.force(false);
+            }
+        } catch (IOException | RuntimeException e) {
+            // Nothing counts as written: the next flush starts again at fileSize with these records first
+            synchronized (this) {
+                requeue(pending);
+            }
+            throw e;
+        }
+        pending.clear();
+        Metrics.JOURNAL_BYTES.add(position - fileSize);
+        fileSize = position;
+        durableSequence = upTo;
+    }
+
+    // Puts the records of a failed flush back in front of those logged since. Called with this held.
+    private void requeue(ByteBuffer failed) {
+        failed.rewind();
+        int needed = failed.limit() + active.position();
+        ByteBuffer merged;
+        if (failed.capacity() >= needed) {
+            merged = failed;
+            merged.position(merged.limit()).limit(merged.capacity());
+        } else {
+            merged = ByteBuffer.allocate(Math.max(failed.capacity() * 2, needed));
+            merged.put(failed);
+        }
+        active.flip();
+        merged.put(active);
+        active.clear();
+        spare = active;
+        active = merged;
+    }
+
+    // Discards every record once a snapshot covering them has been written.
+    // Callers must ensure no operations are logged concurrently.
+    public void reset(long snapshotSequence) throws IOException {
+        if (readOnly) {
+            throw new IllegalStateException("Journal is open read-only.");
+        }
+        flushLock.lock();
+        try {
+            synchronized (this) {
+                if (snapshotSequence != lastSequence) {
+                    throw new IllegalStateException("Journal has records newer than the snapshot.");
+                }
+                active.clear();
+            }
+            channel.truncate(0);
+            channel.force(true);
+            fileSize = 0;
+            durableSequence = snapshotSequence;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    // Applies every intact record newer than the snapshot to the store and returns the last sequence seen.
+    // A read-only journal stops at a torn tail without dropping it; the owner may still be writing it.
+    public long replay(AccountStore accounts, long snapshotSequence, Aggregates aggregates) throws IOException {
+        flushLock.lock();
+        try {
+            long position = 0;
+            long sequence = snapshotSequence;
+            if (channel == null) {
+                synchronized (this) {
+                    lastSequence = sequence;
+                }
+                durableSequence = sequence;
+                return sequence;
+            }
+            ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER);
+            CRC32 check = new CRC32();
+            while (true) {
+                header.clear();
+                if (!readFully(header, position)) {
+                    break;
+                }
+                int length = header.getInt(0);
+                int expectedCrc = header.getInt(4);
+                if (length < 9 || position + RECORD_HEADER + length > channel.size()) {
+                    break;
+                }
+                ByteBuffer body = ByteBuffer.allocate(length);
+                if (!readFully(body, position + RECORD_HEADER)) {
+                    break;
+                }
+                check.reset();
+                check.update(body.array(), 0, length);
+                if ((int) check.getValue() != expectedCrc) {
+                    break;
+                }
+                body.flip();
+                long recordSequence = body.getLong();
+                if (recordSequence > snapshotSequence) {
+                    apply(accounts, aggregates, body.get(), body);
+                }
+                sequence = Math.max(sequence, recordSequence);
+                position += RECORD_HEADER + length;
+            }
+            // Drop a torn or corrupt tail so new records follow the last good one
+            if (!readOnly && position < channel.size()) {
+                channel.truncate(position);
+            }
+            synchronized (this) {
+                lastSequence = sequence;
+            }
+            fileSize = position;
+            durableSequence = sequence;
+            return sequence;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private boolean readFully(ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            int n = channel.read(buf, position);
+            if (n < 0) {
+                return false;
+            }
+            position += n;
+        }
+        return true;
+    }
+
+    // Daily volume is advanced here; balance figures are counted once replay is done
+    private static void apply(AccountStore accounts, Aggregates aggregates, byte type, ByteBuffer body)
+            throws IOException {
+        long timestamp = body.getLong();
+        if (type == TRANSFER) {
+            int legs = body.getInt();
+            for (int i = 0; i < legs; i++) {
+                int from = body.getInt();
+                int to = body.getInt();
+                long amount = body.getLong();
+                account(accounts, from).transferOut(amount, to, timestamp);
+                account(accounts, to).transferIn(amount, from, timestamp);
+                aggregates.record(TransactionLog.TRANSFER_OUT, amount, timestamp);
+                aggregates.record(TransactionLog.TRANSFER_IN, amount, timestamp);
+            }
+            return;
+        }
+        int accountNumber = body.getInt();
+        switch (type) {
+            case CREATE: {
+                byte[] name = new byte[body.getShort() & 0xFFFF];
+                body.get(name);
+                accounts.add(new BankAccount(accountNumber, new String(name, StandardCharsets.UTF_8), timestamp));
+                aggregates.record(TransactionLog.CREATED, 0, timestamp);
+                break;
+            }
+            case DEPOSIT:
+                deposit(accounts, aggregates, accountNumber, body.getLong(), timestamp);
+                break;
+            case WITHDRAW:
+                withdraw(accounts, aggregates, accountNumber, body.getLong(), timestamp);
+                break;
+            case INTEREST: {
+                long amount = body.getLong();
+                account(accounts, accountNumber).creditInterest(amount, timestamp);
+                aggregates.record(TransactionLog.INTEREST, amount, timestamp);
+                break;
+            }
+            case DOUBLE_DEPOSIT:
+                deposit(accounts, aggregates, accountNumber, Money.fromDouble(body.getDouble()), timestamp);
+                break;
+            case DOUBLE_WITHDRAW:
+                withdraw(accounts, aggregates, accountNumber, Money.fromDouble(body.getDouble()), timestamp);
+                break;
+            default:
+                throw new IOException("Unknown journal record type " + type);
+        }
+    }
+
+    private static void deposit(AccountStore accounts, Aggregates aggregates, int accountNumber, long amount,
+                                long timestamp) throws IOException {
+        account(accounts, accountNumber).deposit(amount, timestamp);
+        aggregates.record(TransactionLog.DEPOSIT, amount, timestamp);
+    }
+
+    private static void withdraw(AccountStore accounts, Aggregates aggregates, int accountNumber, long amount,
+                                 long timestamp) throws IOException {
+        account(accounts, accountNumber).withdraw(amount, timestamp);
+        aggregates.record(TransactionLog.WITHDRAW, amount, timestamp);
+    }
+
+    private static BankAccount account(AccountStore accounts, int accountNumber) throws IOException {
+        BankAccount account = accounts.get(accountNumber);
+        if (account == null) {
+            throw new IOException("Journal refers to missing account #" + accountNumber);
+        }
+        return account;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            commitAll();
+        } finally {
+            if (channel != null) {
+                channel.close();
+            }
+        }
+    }
+}
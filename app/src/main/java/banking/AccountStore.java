@@ -0,0 +1,234 @@
+package banking;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+// Open-addressing hash table of accounts keyed by the primitive account number.
+// Account numbers are always positive, so 0 marks an empty slot.
+// Not thread-safe; the arrays live in one Table object so a lookup always probes a consistent
+// table, which lets LedgerService run lookups optimistically and validate them afterwards.
+@SuppressWarnings("serial")
+class AccountStore implements Serializable, Iterable<BankAccount> {
+    private static final long serialVersionUID = 1L;
+    private static final int EMPTY = 0;
+    private static final int MIN_CAPACITY = 16;
+
+    private static final class Table {
+        final int[] keys;
+        final BankAccount[] values;
+        final int mask;
+        final int resizeAt;
+
+        Table(int capacity) {
+            keys = new int[capacity];
+            values = new BankAccount[capacity];
+            mask = capacity - 1;
+            resizeAt = (int) (capacity * 0.7f);
+        }
+    }
+
+    private transient Table table;
+    private transient int size;
+
+    public AccountStore() {
+        this(MIN_CAPACITY);
+    }
+
+    public AccountStore(int expectedSize) {
+        table = new Table(capacityFor(expectedSize));
+    }
+
+    public static AccountStore fromList(List<BankAccount> list) {
+        AccountStore store = new AccountStore(list.size());
+        for (BankAccount account : list) {
+            store.add(account);
+        }
+        return store;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public BankAccount get(int accountNumber) {
+        if (accountNumber <= 0) {
+            return null;
+        }
+        Table t = table;
+        int slot = slotFor(accountNumber, t.mask);
+        int key;
+        while ((key = t.keys[slot]) != EMPTY) {
+            if (key == accountNumber) {
+                return t.values[slot];
+            }
+            slot = (slot + 1) & t.mask;
+        }
+        return null;
+    }
+
+    public boolean contains(int accountNumber) {
+        return get(accountNumber) != null;
+    }
+
+    // Inserts the account unless its number is already taken; returns false on duplicates.
+    public boolean add(BankAccount account) {
+        int accountNumber = account.getAccountNumber();
+        if (accountNumber <= 0) {
+            throw new IllegalArgumentException("Account number must be a positive number.");
+        }
+        Table t = table;
+        int slot = slotFor(accountNumber, t.mask);
+        int key;
+        while ((key = t.keys[slot]) != EMPTY) {
+            if (key == accountNumber) {
+                return false;
+            }
+            slot = (slot + 1) & t.mask;
+        }
+        t.values[slot] = account;
+        t.keys[slot] = accountNumber;
+        if (++size > t.resizeAt) {
+            rehash(t.keys.length << 1);
+        }
+        return true;
+    }
+
+    public BankAccount remove(int accountNumber) {
+        if (accountNumber <= 0) {
+            return null;
+        }
+        Table t = table;
+        int slot = slotFor(accountNumber, t.mask);
+        int key;
+        while ((key = t.keys[slot]) != EMPTY) {
+            if (key == accountNumber) {
+                BankAccount removed = t.values[slot];
+                shiftBack(t, slot);
+                size--;
+                return removed;
+            }
+            slot = (slot + 1) & t.mask;
+        }
+        return null;
+    }
+
+    public List<BankAccount> toList() {
+        List<BankAccount> list = new ArrayList<>(size);
+        for (BankAccount account : this) {
+            list.add(account);
+        }
+        return list;
+    }
+
+    @Override
+    public Iterator<BankAccount> iterator() {
+        Table t = table;
+        return new Iterator<BankAccount>() {
+            private int slot = advance(0);
+
+            private int advance(int from) {
+                while (from < t.keys.length && t.keys[from] == EMPTY) {
+                    from++;
+                }
+                return from;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return slot < t.keys.length;
+            }
+
+            @Override
+            public BankAccount next() {
+                if (slot >= t.keys.length) {
+                    throw new NoSuchElementException();
+                }
+                BankAccount account = t.values[slot];
+                slot = advance(slot + 1);
+                return account;
+            }
+        };
+    }
+
+    // Backward-shift deletion keeps probe chains intact without tombstones.
+    private static void shiftBack(Table t, int gap) {
+        int mask = t.mask;
+        int slot = gap;
+        while (true) {
+            slot = (slot + 1) & mask;
+            int key = t.keys[slot];
+            if (key == EMPTY) {
+                break;
+            }
+            int home = slotFor(key, mask);
+            // Move the entry into the gap unless its home lies cyclically in (gap, slot]
+            if (((slot - home) & mask) >= ((slot - gap) & mask)) {
+                t.keys[gap] = key;
+                t.values[gap] = t.values[slot];
+                gap = slot;
+            }
+        }
+        t.keys[gap] = EMPTY;
+        t.values[gap] = null;
+    }
+
+    private static int slotFor(int accountNumber, int mask) {
+        int h = accountNumber * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    // Fills a new table completely before publishing it, so readers never probe a half-built one
+    private void rehash(int capacity) {
+        Table old = table;
+        Table t = new Table(capacity);
+        for (int i = 0; i < old.keys.length; i++) {
+            int key = old.keys[i];
+            if (key != EMPTY) {
+                int slot = slotFor(key, t.mask);
+                while (t.keys[slot] != EMPTY) {
+                    slot = (slot + 1) & t.mask;
+                }
+                t.keys[slot] = key;
+                t.values[slot] = old.values[i];
+            }
+        }
+        table = t;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int needed = (int) Math.min(1L << 30, (long) Math.ceil(expectedSize / 0.7));
+        int capacity = MIN_CAPACITY;
+        while (capacity < needed) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(size);
+        for (BankAccount account : this) {
+            out.writeObject(account);
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        int count = in.readInt();
+        table = new Table(capacityFor(count));
+        size = 0;
+        for (int i = 0; i < count; i++) {
+            add((BankAccount) in.readObject());
+        }
+    }
+}
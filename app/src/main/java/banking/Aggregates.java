@@ -0,0 +1,180 @@
+package banking;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Bank-wide figures kept current by every posting, so reports never scan the accounts or parse histories.
+// Balance figures (account count, total deposits, balance bands) are counted from the account table when
+// the ledger opens; daily volume cannot be, so it is carried in the snapshot and advanced by journal replay.
+// LedgerService updates both under the account's stripe lock, so a checkpoint, which holds every stripe,
+// writes volumes that agree with its journal sequence. Reads take no lock and may straddle a posting.
+final class Aggregates {
+    // Lower bound of each balance band in minor units; the last band is open-ended
+    static final long[] BAND_FLOORS = {0, 100_00, 1_000_00, 10_000_00, 100_000_00, 1_000_000_00};
+    // Volume columns are indexed by TransactionLog type code
+    private static final int TYPES = TransactionLog.INTEREST + 1;
+
+    // Postings of one calendar day in the system time zone
+    static final class Day {
+        final LocalDate date;
+        private final AtomicLongArray counts = new AtomicLongArray(TYPES);
+        private final AtomicLongArray amounts = new AtomicLongArray(TYPES);
+
+        private Day(LocalDate date) {
+            this.date = date;
+        }
+
+        long count(byte type) {
+            return counts.get(type);
+        }
+
+        long amount(byte type) {
+            return amounts.get(type);
+        }
+    }
+
+    private final LongAdder accounts = new LongAdder();
+    private final LongAdder totalBalance = new LongAdder();
+    private final AtomicLongArray bandCounts = new AtomicLongArray(BAND_FLOORS.length);
+    private final AtomicLongArray bandBalances = new AtomicLongArray(BAND_FLOORS.length);
+    private final ConcurrentSkipListMap<Long, Day> days = new ConcurrentSkipListMap<>();
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    // Counts every balance in the store; callers must exclude writers
+    void countBalances(AccountStore store) {
+        for (BankAccount account : store) {
+            addBalance(account.getBalance());
+        }
+    }
+
+    // Rebuilds daily volume from every history, for snapshots written before volumes were kept.
+    // Histories paged in for this are given back afterwards; callers must exclude writers.
+    void backfillVolumes(AccountStore store) {
+        days.clear();
+        for (BankAccount account : store) {
+            TransactionLog history = account.getTransactionLog();
+            boolean loaded = history.isBaseLoaded();
+            for (int i = 0; i < history.size(); i++) {
+                record(history.type(i), history.amount(i), history.time(i));
+            }
+            if (!loaded) {
+                history.evictBase();
+            }
+        }
+    }
+
+    // A new account starts in the lowest band with a zero balance
+    void opened(long time) {
+        addBalance(0);
+        record(TransactionLog.CREATED, 0, time);
+    }
+
+    void balanceChanged(long before, long after) {
+        if (before == after) {
+            return;
+        }
+        int from = band(before);
+        int to = band(after);
+        totalBalance.add(after - before);
+        if (from == to) {
+            bandBalances.addAndGet(from, after - before);
+            return;
+        }
+        bandCounts.decrementAndGet(from);
+        bandBalances.addAndGet(from, -before);
+        bandCounts.incrementAndGet(to);
+        bandBalances.addAndGet(to, after);
+    }
+
+    // Counts one history entry towards its day's volume
+    void record(byte type, long amount, long time) {
+        if (type <= TransactionLog.NOTE || type >= TYPES) {
+            return;
+        }
+        long epochDay = Instant.ofEpochMilli(time).atZone(zone).toLocalDate().toEpochDay();
+        Day day = days.get(epochDay);
+        if (day == null) {
+            day = days.computeIfAbsent(epochDay, d -> new Day(LocalDate.ofEpochDay(d)));
+        }
+        day.counts.incrementAndGet(type);
+        day.amounts.addAndGet(type, amount);
+    }
+
+    private void addBalance(long balance) {
+        int band = band(balance);
+        accounts.increment();
+        totalBalance.add(balance);
+        bandCounts.incrementAndGet(band);
+        bandBalances.addAndGet(band, balance);
+    }
+
+    static int band(long balance) {
+        int band = BAND_FLOORS.length - 1;
+        while (band > 0 && balance < BAND_FLOORS[band]) {
+            band--;
+        }
+        return band;
+    }
+
+    long accounts() {
+        return accounts.sum();
+    }
+
+    long totalBalance() {
+        return totalBalance.sum();
+    }
+
+    long bandCount(int band) {
+        return bandCounts.get(band);
+    }
+
+    long bandBalance(int band) {
+        return bandBalances.get(band);
+    }
+
+    // Days with any postings between from and to inclusive, oldest first
+    List<Day> days(LocalDate from, LocalDate to) {
+        return new ArrayList<>(days.subMap(from.toEpochDay(), true, to.toEpochDay(), true).values());
+    }
+
+    // Snapshot section: day count, then per day the epoch day and a count and amount for each type
+    void writeVolumes(SnapshotFile.Output out) throws IOException {
+        List<Day> all = new ArrayList<>(days.values());
+        out.putInt(all.size());
+        for (Day day : all) {
+            out.putLong(day.date.toEpochDay());
+            for (int type = TransactionLog.CREATED; type < TYPES; type++) {
+                out.putLong(day.counts.get(type));
+                out.putLong(day.amounts.get(type));
+            }
+        }
+    }
+
+    private static long volumesLength(int dayCount) {
+        return 4 + dayCount * (8L + (TYPES - TransactionLog.CREATED) * 16);
+    }
+
+    void readVolumes(ByteBuffer in) throws IOException {
+        int count = in.remaining() < 4 ? -1 : in.getInt();
+        if (count < 0 || in.remaining() != volumesLength(count) - 4) {
+            throw new IOException("Corrupt daily volume section");
+        }
+        for (int i = 0; i < count; i++) {
+            long epochDay = in.getLong();
+            Day day = new Day(LocalDate.ofEpochDay(epochDay));
+            for (int type = TransactionLog.CREATED; type < TYPES; type++) {
+                day.counts.set(type, in.getLong());
+                day.amounts.set(type, in.getLong());
+            }
+            days.put(epochDay, day);
+        }
+    }
+}
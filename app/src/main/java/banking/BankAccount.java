@@ -0,0 +1,203 @@
+package banking;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamField;
+import java.io.Serializable;
+import java.util.List;
+
+@SuppressWarnings("serial")
+class BankAccount implements Serializable {
+    // Pinned when the class changed shape; LegacyBankAccount reads streams of the original layout
+    private static final long serialVersionUID = 423676730718307116L;
+
+    // The serialized form older releases wrote, with a double balance. It is only read: the long balance
+    // does not match it, so serializing an account fails rather than losing cents.
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("accountNumber", int.class),
+            new ObjectStreamField("accountHolder", String.class),
+            new ObjectStreamField("balance", double.class),
+            new ObjectStreamField("history", TransactionLog.class),
+    };
+
+    // The account as of one change: balance, how many changes led to it, and the history up to it
+    static final class View {
+        final int accountNumber;
+        final String holder;
+        final long balance;
+        // History entries so far; grows by one with every change, so it orders views of one account
+        final int version;
+        final TransactionLog.View history;
+
+        private View(BankAccount account) {
+            accountNumber = account.accountNumber;
+            holder = account.accountHolder;
+            balance = account.balance;
+            history = account.history.view();
+            version = history.size();
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder(64).append("Account #").append(accountNumber).append(": ")
+                    .append(holder).append("\nBalance: ");
+            return Money.append(text, balance).toString();
+        }
+    }
+
+    private int accountNumber;
+    private String accountHolder;
+    // Minor units, see Money
+    private long balance;
+    private TransactionLog history;
+    // Replaced after every change, so readers get a consistent balance and history without the lock
+    private transient volatile View view;
+
+    public BankAccount(int accountNumber, String accountHolder) {
+        this(accountNumber, accountHolder, System.currentTimeMillis());
+    }
+
+    // Timestamped variants let journal replay reproduce the original history entries
+    BankAccount(int accountNumber, String accountHolder, long timestamp) {
+        this.accountNumber = accountNumber;
+        this.accountHolder = accountHolder;
+        this.balance = 0;
+        this.history = new TransactionLog();
+        history.add(timestamp, TransactionLog.CREATED, 0, 0);
+        publish();
+    }
+
+    // Used when migrating accounts saved by older versions
+    BankAccount(int accountNumber, String accountHolder, long balance, TransactionLog history) {
+        this.accountNumber = accountNumber;
+        this.accountHolder = accountHolder;
+        this.balance = balance;
+        this.history = history;
+        // AccountIndex builds search probes without a history
+        if (history != null) {
+            publish();
+        }
+    }
+
+    public int getAccountNumber() {
+        return accountNumber;
+    }
+
+    public String getAccountHolder() {
+        return accountHolder;
+    }
+
+    public long getBalance() {
+        return balance;
+    }
+
+    // Read-only and formatted on access; reflects the history as of the latest view
+    public List<String> getTransactionHistory() {
+        return view.history.lines();
+    }
+
+    // Latest published state; any thread may call this at any time, O(1)
+    View view() {
+        return view;
+    }
+
+    // Called with the account's lock held after every change, and after the history's storage moves so
+    // the old view no longer keeps paged-in entries reachable
+    void publish() {
+        view = new View(this);
+    }
+
+    int getTransactionCount() {
+        return history.size();
+    }
+
+    String getTransaction(int index) {
+        return history.format(index);
+    }
+
+    TransactionLog getTransactionLog() {
+        return history;
+    }
+
+    public void deposit(long amount) throws IllegalArgumentException {
+        deposit(amount, System.currentTimeMillis());
+    }
+
+    void deposit(long amount, long timestamp) throws IllegalArgumentException {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Deposit amount must be positive.");
+        }
+        balance = Money.add(balance, amount);
+        history.add(timestamp, TransactionLog.DEPOSIT, amount, balance);
+        publish();
+    }
+
+    public void withdraw(long amount) throws IllegalArgumentException {
+        withdraw(amount, System.currentTimeMillis());
+    }
+
+    void withdraw(long amount, long timestamp) throws IllegalArgumentException {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Withdrawal amount must be positive.");
+        }
+        if (amount > balance) {
+            throw new IllegalArgumentException("Insufficient balance.");
+        }
+        balance -= amount;
+        history.add(timestamp, TransactionLog.WITHDRAW, amount, balance);
+        publish();
+    }
+
+    // One leg of a transfer; LedgerService checks both sides before either is applied
+    void transferOut(long amount, int toAccount, long timestamp) throws IllegalArgumentException {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Transfer amount must be positive.");
+        }
+        if (amount > balance) {
+            throw new IllegalArgumentException("Insufficient balance.");
+        }
+        balance -= amount;
+        history.add(timestamp, TransactionLog.TRANSFER_OUT, amount, balance, toAccount);
+        publish();
+    }
+
+    void transferIn(long amount, int fromAccount, long timestamp) throws IllegalArgumentException {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Transfer amount must be positive.");
+        }
+        balance = Money.add(balance, amount);
+        history.add(timestamp, TransactionLog.TRANSFER_IN, amount, balance, fromAccount);
+        publish();
+    }
+
+    // Posted by the end-of-day job
+    void creditInterest(long amount, long timestamp) throws IllegalArgumentException {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Interest amount must be positive.");
+        }
+        balance = Money.add(balance, amount);
+        history.add(timestamp, TransactionLog.INTEREST, amount, balance);
+        publish();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder(64).append("Account #").append(accountNumber).append(": ")
+                .append(accountHolder).append("\nBalance: ");
+        return Money.append(text, balance).toString();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        accountNumber = fields.get("accountNumber", 0);
+        accountHolder = (String) fields.get("accountHolder", null);
+        history = (TransactionLog) fields.get("history", null);
+        try {
+            balance = Money.fromDouble(fields.get("balance", 0.0));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidObjectException(e.getMessage());
+        }
+        publish();
+    }
+}
@@ -0,0 +1,123 @@
+package banking;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+// Bank-wide dashboard behind the Reports tab, its export and --report. Everything comes from the
+// ledger's Aggregates and balance index, so building one costs the same however many accounts and
+// transactions there are. Figures are copied out when the report is built.
+final class BankReport {
+    // Volume columns shown per day, as TransactionLog type codes
+    private static final byte[] VOLUME_TYPES = {TransactionLog.CREATED, TransactionLog.DEPOSIT,
+            TransactionLog.WITHDRAW, TransactionLog.TRANSFER_OUT, TransactionLog.INTEREST};
+
+    final long generated;
+    final long accounts;
+    final long totalBalance;
+    final long[] bandCounts = new long[Aggregates.BAND_FLOORS.length];
+    final long[] bandBalances = new long[Aggregates.BAND_FLOORS.length];
+    // One row per day with postings: a count and an amount for each of VOLUME_TYPES
+    final List<LocalDate> dates = new ArrayList<>();
+    final List<long[]> volumes = new ArrayList<>();
+    final List<AccountIndex.BalanceEntry> top;
+    final List<String> topHolders = new ArrayList<>();
+
+    private BankReport(LedgerService ledger, int days, int topCount) {
+        Aggregates aggregates = ledger.aggregates();
+        generated = System.currentTimeMillis();
+        accounts = aggregates.accounts();
+        totalBalance = aggregates.totalBalance();
+        for (int band = 0; band < bandCounts.length; band++) {
+            bandCounts[band] = aggregates.bandCount(band);
+            bandBalances[band] = aggregates.bandBalance(band);
+        }
+        LocalDate today = LocalDate.now();
+        for (Aggregates.Day day : aggregates.days(today.minusDays(Math.max(days, 1) - 1), today)) {
+            long[] row = new long[VOLUME_TYPES.length * 2];
+            for (int i = 0; i < VOLUME_TYPES.length; i++) {
+                row[i * 2] = day.count(VOLUME_TYPES[i]);
+                row[i * 2 + 1] = day.amount(VOLUME_TYPES[i]);
+            }
+            dates.add(day.date);
+            volumes.add(row);
+        }
+        top = topCount > 0 ? ledger.topBalances(topCount) : new ArrayList<>();
+        for (AccountIndex.BalanceEntry entry : top) {
+            // Accounts are never removed, so the lookup cannot miss
+            topHolders.add(ledger.find(entry.accountNumber).getAccountHolder());
+        }
+    }
+
+    // Daily volume covers the last days calendar days including today; topCount 0 leaves out the
+    // top balances, which would otherwise build the balance index on first use
+    static BankReport build(LedgerService ledger, int days, int topCount) {
+        return new BankReport(ledger, days, topCount);
+    }
+
+    String format() {
+        StringBuilder text = new StringBuilder();
+        text.append("Bank Report ").append(TransactionLog.timestamp(generated)).append("\n\n");
+        text.append("Accounts: ").append(accounts).append('\n');
+        Money.append(text.append("Total Deposits: "), totalBalance).append('\n');
+        Money.append(text.append("Average Balance: "), accounts == 0 ? 0 : totalBalance / accounts).append("\n\n");
+
+        text.append("Accounts by Balance\n");
+        text.append(String.format("%-32s %10s %20s%n", "Band", "Accounts", "Total"));
+        for (int band = 0; band < bandCounts.length; band++) {
+            text.append(String.format("%-32s %10d %20s%n", bandName(band), bandCounts[band],
+                    Money.format(bandBalances[band])));
+        }
+
+        text.append("\nDaily Volume\n");
+        text.append(String.format("%-10s %8s %10s %20s %10s %20s %10s %20s %10s %16s%n", "Date", "Opened",
+                "Deposits", "Amount", "Withdraws", "Amount", "Transfers", "Amount", "Interest", "Amount"));
+        for (int i = 0; i < dates.size(); i++) {
+            long[] row = volumes.get(i);
+            text.append(String.format("%-10s %8d %10d %20s %10d %20s %10d %20s %10d %16s%n", dates.get(i), row[0],
+                    row[2], Money.format(row[3]), row[4], Money.format(row[5]), row[6], Money.format(row[7]),
+                    row[8], Money.format(row[9])));
+        }
+        if (dates.isEmpty()) {
+            text.append("No postings in this period.\n");
+        }
+
+        if (!top.isEmpty()) {
+            text.append("\nTop ").append(top.size()).append(" Balances\n");
+            for (int i = 0; i < top.size(); i++) {
+                AccountIndex.BalanceEntry entry = top.get(i);
+                text.append(String.format("%3d. Account #%-10d %-30s %20s%n", i + 1, entry.accountNumber,
+                        topHolders.get(i), Money.format(entry.balance)));
+            }
+        }
+        return text.toString();
+    }
+
+    static String bandName(int band) {
+        long[] floors = Aggregates.BAND_FLOORS;
+        if (band == floors.length - 1) {
+            return Money.format(floors[band]) + " and above";
+        }
+        return Money.format(floors[band]) + " to under " + Money.format(floors[band + 1]);
+    }
+
+    // Written through a temporary file so a reader never sees half a report
+    void export(File file) throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null) {
+            dir.mkdirs();
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8)) {
+            out.write(format());
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,350 @@
+package banking;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+// Headless HTTP front end over the same ledger, journal and transaction files as the GUI.
+// Parameters come from the query string or a form-encoded body; responses are JSON, with amounts
+// as strings like "10.50" so they stay exact. A posting is answered once it is on disk.
+//
+//   POST /login     user, password            -> {"token": ...}; send it as "Authorization: Bearer <token>"
+//   POST /logout
+//   POST /accounts  account, holder
+//   POST /deposit   account, amount
+//   POST /withdraw  account, amount
+//   POST /transfer  from, to, amount
+//   GET  /balance   account
+//   GET  /history   account, offset, limit    -> newest entries last, at most MAX_HISTORY_PAGE per call
+final class BankServer implements AutoCloseable {
+    private static final int MAX_HISTORY_PAGE = 1000;
+
+    // Thrown by handlers to answer with an HTTP error and a JSON message
+    @SuppressWarnings("serial")
+    private static final class HttpError extends RuntimeException {
+        final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private interface Handler {
+        String handle(HttpExchange exchange, Map<String, String> params) throws IOException;
+    }
+
+    private final LedgerService ledger;
+    private final PersistencePipeline persistence;
+    private final CredentialStore credentials;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final SecureRandom random = new SecureRandom();
+    // Each login runs the full key derivation, so only a few may run at once; the rest are turned away
+    private final Semaphore logins = new Semaphore(Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    // Session token -> user name; sessions last until logout or shutdown
+    private final Map<String, String> sessions = new ConcurrentHashMap<>();
+
+    BankServer(LedgerService ledger, PersistencePipeline persistence, CredentialStore credentials,
+               InetSocketAddress address, int backlog, int threads) throws IOException {
+        this.ledger = ledger;
+        this.persistence = persistence;
+        this.credentials = credentials;
+        this.server = HttpServer.create(address, backlog);
+        this.executor = requestExecutor(threads);
+        server.setExecutor(executor);
+        route("/login", "POST", false, this::login);
+        route("/logout", "POST", true, (exchange, params) -> {
+            sessions.remove(token(exchange));
+            return "{}";
+        });
+        route("/accounts", "POST", true, this::createAccount);
+        route("/deposit", "POST", true, (exchange, params) -> post(
+                ledger.postDeposit(intParam(params, "account"), amountParam(params, "amount"))));
+        route("/withdraw", "POST", true, (exchange, params) -> post(
+                ledger.postWithdraw(intParam(params, "account"), amountParam(params, "amount"))));
+        route("/transfer", "POST", true, this::transfer);
+        route("/balance", "GET", true, (exchange, params) -> {
+            int accountNumber = intParam(params, "account");
+            return balanceJson(new StringBuilder(), accountNumber, ledger.getBalance(accountNumber)).toString();
+        });
+        route("/history", "GET", true, this::history);
+    }
+
+    // A virtual thread per request when the runtime has them (Java 21+), so blocked clients cost no
+    // platform threads; otherwise a fixed pool of that many daemon platform threads, with further
+    // requests queued until one is free
+    static ExecutorService requestExecutor(int threads) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(threads, r -> {
+                Thread thread = new Thread(r, "bank-server");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    void start() {
+        server.start();
+    }
+
+    InetSocketAddress address() {
+        return server.getAddress();
+    }
+
+    // Stops accepting requests and waits briefly for those in progress
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void route(String path, String method, boolean authenticated, Handler handler) {
+        server.createContext(path, exchange -> {
+            int status = 200;
+            String body;
+            try {
+                if (!exchange.getRequestURI().getPath().equals(path)) {
+                    throw new HttpError(404, "Not found.");
+                }
+                if (!exchange.getRequestMethod().equals(method)) {
+                    exchange.getResponseHeaders().set("Allow", method);
+                    throw new HttpError(405, "Use " + method + ".");
+                }
+                if (authenticated && !sessions.containsKey(token(exchange))) {
+                    throw new HttpError(401, "Login required.");
+                }
+                body = handler.handle(exchange, params(exchange));
+            } catch (HttpError e) {
+                status = e.status;
+                body = error(e.getMessage());
+            } catch (IllegalArgumentException e) {
+                // Validation failures from the ledger, with the same messages the GUI shows
+                status = e.getMessage() != null && e.getMessage().equals("Account not found.") ? 404 : 400;
+                body = error(e.getMessage());
+            } catch (IOException | RuntimeException e) {
+                status = 500;
+                body = error("Internal error: " + e.getMessage());
+            }
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+    }
+
+    private String login(HttpExchange exchange, Map<String, String> params) throws IOException {
+        String user = param(params, "user");
+        char[] password = param(params, "password").toCharArray();
+        if (!logins.tryAcquire()) {
+            throw new HttpError(503, "Too many logins in progress; try again shortly.");
+        }
+        try {
+            if (!credentials.verify(user, password)) {
+                throw new HttpError(401, "Invalid username or password.");
+            }
+        } finally {
+            logins.release();
+        }
+        byte[] bytes = new byte[16];
+        random.nextBytes(bytes);
+        StringBuilder token = new StringBuilder(32);
+        for (byte b : bytes) {
+            token.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        sessions.put(token.toString(), user);
+        return "{\"token\":\"" + token + "\"}";
+    }
+
+    private String createAccount(HttpExchange exchange, Map<String, String> params) throws IOException {
+        int accountNumber = intParam(params, "account");
+        String holder = param(params, "holder");
+        LedgerService.Posting posting = ledger.postCreate(accountNumber, holder);
+        await(persistence.submit(posting));
+        StringBuilder json = new StringBuilder("{\"account\":").append(accountNumber).append(",\"holder\":");
+        return quote(json, holder).append(",\"balance\":\"0.00\"}").toString();
+    }
+
+    private String transfer(HttpExchange exchange, Map<String, String> params) throws IOException {
+        List<LedgerService.Posting> postings = ledger.postTransfer(intParam(params, "from"),
+                intParam(params, "to"), amountParam(params, "amount"));
+        List<CompletableFuture<Long>> acks = new ArrayList<>(postings.size());
+        for (LedgerService.Posting posting : postings) {
+            acks.add(persistence.submit(posting));
+        }
+        StringBuilder json = new StringBuilder("{\"accounts\":[");
+        for (int i = 0; i < postings.size(); i++) {
+            await(acks.get(i));
+            LedgerService.Posting posting = postings.get(i);
+            balanceJson(json.append(i == 0 ? "" : ","), posting.accountNumber, posting.balance);
+        }
+        return json.append("]}").toString();
+    }
+
+    private String post(LedgerService.Posting posting) throws IOException {
+        await(persistence.submit(posting));
+        return balanceJson(new StringBuilder(), posting.accountNumber, posting.balance).toString();
+    }
+
+    private String history(HttpExchange exchange, Map<String, String> params) throws IOException {
+        int accountNumber = intParam(params, "account");
+        int offset = params.containsKey("offset") ? intParam(params, "offset") : 0;
+        int limit = params.containsKey("limit") ? intParam(params, "limit") : 100;
+        if (offset < 0 || limit < 0 || limit > MAX_HISTORY_PAGE) {
+            throw new HttpError(400, "offset must be >= 0 and limit between 0 and " + MAX_HISTORY_PAGE + ".");
+        }
+        // Read from the latest view without the account lock, like a page of the GUI's history table
+        TransactionLog.View log = ledger.view(accountNumber).history;
+        int end = (int) Math.min(log.size(), (long) offset + limit);
+        StringBuilder json = new StringBuilder(128 + Math.max(0, end - offset) * 128);
+        json.append("{\"account\":").append(accountNumber).append(",\"total\":").append(log.size())
+                .append(",\"offset\":").append(offset).append(",\"entries\":[");
+        for (int i = offset; i < end; i++) {
+            json.append(i == offset ? "{" : ",{").append("\"index\":").append(i);
+            byte type = log.type(i);
+            if (type == TransactionLog.NOTE) {
+                quote(json.append(",\"text\":"), log.format(i));
+            } else {
+                quote(json.append(",\"time\":"), TransactionLog.timestamp(log.time(i)));
+                quote(json.append(",\"type\":"), TransactionLog.typeName(type));
+                Money.append(json.append(",\"amount\":\""), log.amount(i)).append('"');
+                Money.append(json.append(",\"balance\":\""), log.balance(i)).append('"');
+                if (log.counterparty(i) != 0) {
+                    json.append(",\"counterparty\":").append(log.counterparty(i));
+                }
+            }
+            json.append('}');
+        }
+        return json.append("]}").toString();
+    }
+
+    private static void await(CompletableFuture<Long> ack) throws IOException {
+        try {
+            ack.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while saving.", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Error saving data: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private static String token(HttpExchange exchange) {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        return header != null && header.startsWith("Bearer ") ? header.substring(7).trim() : "";
+    }
+
+    private static Map<String, String> params(HttpExchange exchange) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        decode(exchange.getRequestURI().getRawQuery(), params);
+        String type = exchange.getRequestHeaders().getFirst("Content-Type");
+        if (type != null && type.startsWith("application/x-www-form-urlencoded")) {
+            try (InputStream in = exchange.getRequestBody()) {
+                decode(new String(in.readAllBytes(), StandardCharsets.UTF_8), params);
+            }
+        }
+        return params;
+    }
+
+    private static void decode(String text, Map<String, String> params) {
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+        for (String pair : text.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static String param(Map<String, String> params, String name) {
+        String value = params.get(name);
+        if (value == null) {
+            throw new HttpError(400, "Missing parameter: " + name);
+        }
+        return value;
+    }
+
+    private static int intParam(Map<String, String> params, String name) {
+        try {
+            return Integer.parseInt(param(params, name).trim());
+        } catch (NumberFormatException e) {
+            throw new HttpError(400, "Invalid " + name + ".");
+        }
+    }
+
+    private static long amountParam(Map<String, String> params, String name) {
+        try {
+            return Money.parse(param(params, name).trim());
+        } catch (NumberFormatException e) {
+            throw new HttpError(400, "Invalid " + name + ".");
+        }
+    }
+
+    private static StringBuilder balanceJson(StringBuilder json, int accountNumber, long balance) {
+        json.append("{\"account\":").append(accountNumber).append(",\"balance\":\"");
+        return Money.append(json, balance).append("\"}");
+    }
+
+    private static String error(String message) {
+        return quote(new StringBuilder("{\"error\":"), message == null ? "" : message).append('}').toString();
+    }
+
+    private static StringBuilder quote(StringBuilder json, String text) {
+        json.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        return json.append('"');
+    }
+}
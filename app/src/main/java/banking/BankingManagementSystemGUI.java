@@ -0,0 +1,1191 @@
+package banking;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.*;
+import javax.swing.table.DefaultTableModel;
+import javax.swing.text.BadLocationException;
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@SuppressWarnings("serial")
+public class BankingManagementSystemGUI extends JFrame {
+    private CardLayout cardLayout;
+    private JPanel mainPanel;
+    private JPanel loginPanel;
+    private JPanel bankingPanel;
+    private JTabbedPane tabbedPane;
+    private JTextArea outputArea;
+    private HistoryTableModel historyModel;
+    private SwingWorker<int[], Void> historyLoader;
+    private LedgerService ledger;
+    private CredentialStore credentials;
+    private String currentUser;
+    private TransactionFileWriter transactionFiles;
+    private ChangeFeed changes;
+    private PersistencePipeline persistence;
+    private final AtomicBoolean persistenceClosed = new AtomicBoolean();
+    private JLabel saveStatusLabel;
+    private static final String ACCOUNTS_FILE = "accounts.dat";
+    private static final String JOURNAL_FILE = "accounts.journal";
+    // Plaintext credentials written by older versions; migrated into USERS_LOG on first start
+    private static final String USERS_FILE = "users.dat";
+    private static final String USERS_LOG = "users.log";
+    private static final String TRANSACTIONS_DIR = "transactions";
+    private static final String REPORTS_DIR = "reports";
+    // Journal tuning: bank.journal.sync=NONE|EVERY_COMMIT|GROUP, group window in microseconds,
+    // and the journal size at which it is compacted into a fresh accounts.dat snapshot
+    private static final AccountJournal.SyncMode JOURNAL_SYNC =
+            AccountJournal.SyncMode.valueOf(System.getProperty("bank.journal.sync", "EVERY_COMMIT"));
+    private static final long GROUP_COMMIT_MICROS = Long.getLong("bank.journal.groupCommitMicros", 200);
+    private static final long CHECKPOINT_BYTES = Long.getLong("bank.journal.checkpointBytes", 8L << 20);
+    private static final int MAX_OPEN_TRANSACTION_FILES = Integer.getInteger("bank.transactions.maxOpenFiles", 64);
+    // Balance changes the downstream consumers may fall behind by before postings wait
+    private static final int CHANGE_FEED_CAPACITY = Integer.getInteger("bank.changes.capacity", 64 * 1024);
+    // Snapshot history entries kept in memory across all accounts; the rest is paged in on demand
+    private static final long HISTORY_CACHE_ENTRIES = Long.getLong("bank.history.cacheEntries", 1_000_000);
+    // Recent entries each history keeps in accounts.dat; older ones are sealed into archive/ (0 turns this off)
+    private static final int HISTORY_WINDOW = Integer.getInteger("bank.history.window", 10_000);
+    private static final int MAX_OUTPUT_LINES = Integer.getInteger("bank.console.maxLines", 1000);
+    // PBKDF2 iterations for new and upgraded password hashes
+    private static final int AUTH_ITERATIONS = Integer.getInteger("bank.auth.iterations", 310_000);
+
+    public BankingManagementSystemGUI() {
+        loadUserCredentials();
+        loadAccounts();
+
+        // Create transactions directory if it doesn't exist
+        new File(TRANSACTIONS_DIR).mkdirs();
+        transactionFiles = new TransactionFileWriter(new File(TRANSACTIONS_DIR), MAX_OPEN_TRANSACTION_FILES);
+
+        // Disk writes, metrics and the console all follow the ledger's change feed on their own threads;
+        // flush them before the JVM goes away
+        changes = new ChangeFeed(CHANGE_FEED_CAPACITY);
+        persistence = new PersistencePipeline(ledger, transactionFiles, changes);
+        changes.subscribe("metrics", Metrics::count);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::closePersistence, "persistence-shutdown"));
+
+        setTitle("Banking Management System - Login");
+        setSize(600, 500);
+        setDefaultCloseOperation(EXIT_ON_CLOSE);
+        setLocationRelativeTo(null);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                closePersistence();
+            }
+        });
+
+        cardLayout = new CardLayout();
+        mainPanel = new JPanel(cardLayout);
+
+        createLoginPanel();
+        createBankingPanel();
+        changes.subscribe("console", this::showChanges);
+        ledger.publishTo(changes);
+
+        mainPanel.add(loginPanel, "login");
+        mainPanel.add(bankingPanel, "banking");
+
+        add(mainPanel);
+        cardLayout.show(mainPanel, "login");
+    }
+
+    private void loadUserCredentials() {
+        try {
+            credentials = CredentialStore.open(new File(USERS_LOG), new File(USERS_FILE), AUTH_ITERATIONS);
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(this, "Error loading user data: " + e.getMessage(),
+                    "Error", JOptionPane.ERROR_MESSAGE);
+            System.exit(1);
+        }
+    }
+
+    // State is the accounts.dat snapshot plus every journal record logged after it
+    private void loadAccounts() {
+        try {
+            ledger = LedgerService.open(new File(ACCOUNTS_FILE), new File(JOURNAL_FILE),
+                    JOURNAL_SYNC, GROUP_COMMIT_MICROS, CHECKPOINT_BYTES, HISTORY_CACHE_ENTRIES, HISTORY_WINDOW);
+        } catch (IOException e) {
+            // Carrying on with an empty ledger would overwrite accounts.dat at the next checkpoint
+            JOptionPane.showMessageDialog(this, "Error loading accounts: " + e.getMessage(),
+                    "Error", JOptionPane.ERROR_MESSAGE);
+            System.exit(1);
+        }
+    }
+
+    private void closePersistence() {
+        if (!persistenceClosed.compareAndSet(false, true)) {
+            return;
+        }
+        persistence.close();
+        changes.close();
+        transactionFiles.close();
+        try {
+            ledger.close();
+        } catch (IOException e) {
+            System.err.println("Error closing account journal: " + e.getMessage());
+        }
+    }
+
+    // Shows the outcome of a background write in the status label
+    private void trackSave(CompletableFuture<Long> ack) {
+        updateSaveStatus();
+        ack.whenComplete((sequence, error) -> SwingUtilities.invokeLater(() -> {
+            if (error != null) {
+                saveStatusLabel.setText("Save failed");
+                JOptionPane.showMessageDialog(this, "Error saving data: " + error.getMessage(),
+                        "Error", JOptionPane.ERROR_MESSAGE);
+            } else {
+                updateSaveStatus();
+            }
+        }));
+    }
+
+    private void updateSaveStatus() {
+        int backlog = persistence.backlog();
+        saveStatusLabel.setText(backlog == 0 ? "All changes saved" : "Saving... (" + backlog + " pending)");
+    }
+
+    private void createLoginPanel() {
+        loginPanel = new JPanel(new GridBagLayout());
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.insets = new Insets(10, 10, 10, 10);
+
+        JLabel userLabel = new JLabel("Username:");
+        JLabel passLabel = new JLabel("Password:");
+
+        JTextField userField = new JTextField(15);
+        JPasswordField passField = new JPasswordField(15);
+
+        JButton loginButton = new JButton("Login");
+        JButton registerButton = new JButton("Register");
+
+        gbc.gridx = 0;
+        gbc.gridy = 0;
+        loginPanel.add(userLabel, gbc);
+
+        gbc.gridx = 1;
+        gbc.gridy = 0;
+        loginPanel.add(userField, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 1;
+        loginPanel.add(passLabel, gbc);
+
+        gbc.gridx = 1;
+        gbc.gridy = 1;
+        loginPanel.add(passField, gbc);
+
+        gbc.gridwidth = 1;
+        gbc.gridx = 0;
+        gbc.gridy = 2;
+        loginPanel.add(loginButton, gbc);
+
+        gbc.gridx = 1;
+        gbc.gridy = 2;
+        loginPanel.add(registerButton, gbc);
+
+        // Password hashing is deliberately slow, so both checks run off the EDT
+        loginButton.addActionListener(e -> {
+            String username = userField.getText().trim();
+            char[] password = passField.getPassword();
+            loginButton.setEnabled(false);
+            registerButton.setEnabled(false);
+            new SwingWorker<Boolean, Void>() {
+                @Override
+                protected Boolean doInBackground() throws IOException {
+                    try {
+                        return credentials.verify(username, password);
+                    } finally {
+                        Arrays.fill(password, '\0');
+                    }
+                }
+
+                @Override
+                protected void done() {
+                    loginButton.setEnabled(true);
+                    registerButton.setEnabled(true);
+                    boolean valid;
+                    try {
+                        valid = get();
+                    } catch (InterruptedException | ExecutionException ex) {
+                        Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                        JOptionPane.showMessageDialog(BankingManagementSystemGUI.this,
+                                "Error checking login: " + cause.getMessage(), "Login Failed", JOptionPane.ERROR_MESSAGE);
+                        return;
+                    }
+                    if (valid) {
+                        currentUser = username;
+                        JOptionPane.showMessageDialog(BankingManagementSystemGUI.this, "Login successful! Welcome " + username);
+                        setTitle("Banking Management System - User: " + username);
+                        userField.setText("");
+                        passField.setText("");
+                        outputArea.setText("");
+                        historyModel.clear();
+                        cardLayout.show(mainPanel, "banking");
+                    } else {
+                        JOptionPane.showMessageDialog(BankingManagementSystemGUI.this, "Invalid username or password.",
+                                "Login Failed", JOptionPane.ERROR_MESSAGE);
+                    }
+                }
+            }.execute();
+        });
+
+        registerButton.addActionListener(e -> {
+            String username = userField.getText().trim();
+            char[] password = passField.getPassword();
+
+            if (username.isEmpty() || password.length == 0) {
+                JOptionPane.showMessageDialog(this, "Username and password cannot be empty.",
+                        "Registration Failed", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+
+            if (credentials.exists(username)) {
+                JOptionPane.showMessageDialog(this, "Username already exists.",
+                        "Registration Failed", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            loginButton.setEnabled(false);
+            registerButton.setEnabled(false);
+            new SwingWorker<Boolean, Void>() {
+                @Override
+                protected Boolean doInBackground() throws IOException {
+                    try {
+                        return credentials.register(username, password);
+                    } finally {
+                        Arrays.fill(password, '\0');
+                    }
+                }
+
+                @Override
+                protected void done() {
+                    loginButton.setEnabled(true);
+                    registerButton.setEnabled(true);
+                    try {
+                        if (get()) {
+                            JOptionPane.showMessageDialog(BankingManagementSystemGUI.this,
+                                    "Registration successful! You can now login.");
+                            userField.setText("");
+                            passField.setText("");
+                        } else {
+                            JOptionPane.showMessageDialog(BankingManagementSystemGUI.this, "Username already exists.",
+                                    "Registration Failed", JOptionPane.ERROR_MESSAGE);
+                        }
+                    } catch (InterruptedException | ExecutionException ex) {
+                        Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                        JOptionPane.showMessageDialog(BankingManagementSystemGUI.this,
+                                "Error saving user data: " + cause.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                    }
+                }
+            }.execute();
+        });
+    }
+
+    private void createBankingPanel() {
+        bankingPanel = new JPanel(new BorderLayout());
+
+        tabbedPane = new JTabbedPane();
+
+        tabbedPane.addTab("Create Account", createAccountPanel());
+        tabbedPane.addTab("Deposit", depositPanel());
+        tabbedPane.addTab("Withdraw", withdrawPanel());
+        tabbedPane.addTab("Transfer", transferPanel());
+        tabbedPane.addTab("Check Balance", balancePanel());
+        tabbedPane.addTab("Transaction History", transactionHistoryPanel());
+        tabbedPane.addTab("Search", searchPanel());
+        tabbedPane.addTab("Metrics", metricsPanel());
+        tabbedPane.addTab("Reports", reportsPanel());
+
+        outputArea = new JTextArea(10, 50);
+        outputArea.setEditable(false);
+        JScrollPane scrollPane = new JScrollPane(outputArea);
+
+        JButton logoutButton = new JButton("Logout");
+        logoutButton.addActionListener(e -> {
+            int confirm = JOptionPane.showConfirmDialog(this,
+                    "Are you sure you want to logout?", "Confirm Logout",
+                    JOptionPane.YES_NO_OPTION);
+            if (confirm == JOptionPane.YES_OPTION) {
+                setTitle("Banking Management System - Login");
+                currentUser = null;
+                cardLayout.show(mainPanel, "login");
+            }
+        });
+
+        JPanel topPanel = new JPanel(new BorderLayout());
+        topPanel.add(logoutButton, BorderLayout.WEST);
+        topPanel.add(new JLabel("Logged in as: " + currentUser), BorderLayout.CENTER);
+        saveStatusLabel = new JLabel("All changes saved");
+        topPanel.add(saveStatusLabel, BorderLayout.EAST);
+
+        bankingPanel.add(topPanel, BorderLayout.NORTH);
+        bankingPanel.add(tabbedPane, BorderLayout.CENTER);
+        bankingPanel.add(scrollPane, BorderLayout.SOUTH);
+    }
+
+    private JPanel createAccountPanel() {
+        JPanel panel = new JPanel(new GridLayout(4, 2, 10, 10));
+
+        JLabel accNumLabel = new JLabel("Account Number:");
+        JTextField accNumField = new JTextField();
+        JLabel accHolderLabel = new JLabel("Account Holder Name:");
+        JTextField accHolderField = new JTextField();
+        JButton createButton = new JButton("Create Account");
+
+        // Input filtering to allow only digits
+        accNumField.addKeyListener(new KeyAdapter() {
+            public void keyTyped(KeyEvent e) {
+                char c = e.getKeyChar();
+                if (!Character.isDigit(c)) {
+                    e.consume(); // Ignore non-digit input
+                    JOptionPane.showMessageDialog(panel, 
+                        "Only numbers (0-9) are allowed in Account Number.",
+                        "Invalid Input", JOptionPane.WARNING_MESSAGE);
+                }
+            }
+        });
+
+        createButton.addActionListener(e -> {
+            String accNumText = accNumField.getText().trim();
+            String accHolder = accHolderField.getText().trim();
+
+            // Validate Account Number
+            if (accNumText.isEmpty()) {
+                JOptionPane.showMessageDialog(this,
+                    "Account number cannot be empty.", "Error",
+                    JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+
+            // Additional check for numeric (redundant but safe)
+            if (!accNumText.matches("\\d+")) {
+                JOptionPane.showMessageDialog(this,
+                    "Account number must contain only numbers (0-9).", "Error",
+                    JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+
+            try {
+                int accNum = Integer.parseInt(accNumText);
+
+                // Validate positive number
+                if (accNum <= 0) {
+                    JOptionPane.showMessageDialog(this,
+                        "Account number must be a positive number.", "Error",
+                        JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+
+                // Validate Account Holder Name
+                if (accHolder.isEmpty()) {
+                    JOptionPane.showMessageDialog(this,
+                        "Account Holder name cannot be empty.", "Error",
+                        JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+
+                // Check for duplicate account
+                if (findAccount(accNum) != null) {
+                    JOptionPane.showMessageDialog(this,
+                        "Account number already exists.", "Error",
+                        JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+
+                // Create account if all validations pass
+                trackSave(persistence.submit(ledger.postCreate(accNum, accHolder)));
+
+                // Clear fields
+                accNumField.setText("");
+                accHolderField.setText("");
+
+            } catch (NumberFormatException ex) {
+                JOptionPane.showMessageDialog(this,
+                    "Invalid Account Number format.", "Error",
+                    JOptionPane.ERROR_MESSAGE);
+            } catch (IllegalArgumentException ex) {
+                JOptionPane.showMessageDialog(this, ex.getMessage(), "Error",
+                    JOptionPane.ERROR_MESSAGE);
+            }
+        });
+
+        panel.add(accNumLabel);
+        panel.add(accNumField);
+        panel.add(accHolderLabel);
+        panel.add(accHolderField);
+        panel.add(new JLabel());
+        panel.add(createButton);
+
+        return panel;
+    }
+    private JPanel depositPanel() {
+        JPanel panel = new JPanel(new GridLayout(4, 2, 10, 10));
+
+        JLabel accNumLabel = new JLabel("Account Number:");
+        JTextField accNumField = new JTextField();
+        JLabel amountLabel = new JLabel("Amount to Deposit:");
+        JTextField amountField = new JTextField();
+        JButton depositButton = new JButton("Deposit");
+
+        depositButton.addActionListener(e -> {
+            try {
+                int accNum = Integer.parseInt(accNumField.getText().trim());
+                long amount = Money.parse(amountField.getText().trim());
+
+                BankAccount acc = findAccount(accNum);
+                if (acc == null) {
+                    JOptionPane.showMessageDialog(this,
+                            "Account not found.", "Error", JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+                LedgerService.Posting posting = ledger.postDeposit(accNum, amount);
+                trackSave(persistence.submit(posting));
+                accNumField.setText("");
+                amountField.setText("");
+            } catch (NumberFormatException ex) {
+                JOptionPane.showMessageDialog(this, "Invalid input. Please enter numeric values.", "Error",
+                        JOptionPane.ERROR_MESSAGE);
+            } catch (IllegalArgumentException ex) {
+                JOptionPane.showMessageDialog(this, ex.getMessage(), "Error",
+                        JOptionPane.ERROR_MESSAGE);
+            }
+        });
+
+        panel.add(accNumLabel);
+        panel.add(accNumField);
+        panel.add(amountLabel);
+        panel.add(amountField);
+        panel.add(new JLabel());
+        panel.add(depositButton);
+
+        return panel;
+    }
+
+    private JPanel withdrawPanel() {
+        JPanel panel = new JPanel(new GridLayout(4, 2, 10, 10));
+
+        JLabel accNumLabel = new JLabel("Account Number:");
+        JTextField accNumField = new JTextField();
+        JLabel amountLabel = new JLabel("Amount to Withdraw:");
+        JTextField amountField = new JTextField();
+        JButton withdrawButton = new JButton("Withdraw");
+
+        withdrawButton.addActionListener(e -> {
+            try {
+                int accNum = Integer.parseInt(accNumField.getText().trim());
+                long amount = Money.parse(amountField.getText().trim());
+
+                BankAccount acc = findAccount(accNum);
+                if (acc == null) {
+                    JOptionPane.showMessageDialog(this,
+                            "Account not found.", "Error",
+                            JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+                LedgerService.Posting posting = ledger.postWithdraw(accNum, amount);
+                trackSave(persistence.submit(posting));
+                accNumField.setText("");
+                amountField.setText("");
+            } catch (NumberFormatException ex) {
+                JOptionPane.showMessageDialog(this, "Invalid input. Please enter numeric values.", "Error",
+                        JOptionPane.ERROR_MESSAGE);
+            } catch (IllegalArgumentException ex) {
+                JOptionPane.showMessageDialog(this, ex.getMessage(), "Error",
+                        JOptionPane.ERROR_MESSAGE);
+            }
+        });
+
+        panel.add(accNumLabel);
+        panel.add(accNumField);
+        panel.add(amountLabel);
+        panel.add(amountField);
+        panel.add(new JLabel());
+        panel.add(withdrawButton);
+
+        return panel;
+    }
+
+    private JPanel transferPanel() {
+        JPanel panel = new JPanel(new GridLayout(5, 2, 10, 10));
+
+        JLabel fromLabel = new JLabel("From Account Number:");
+        JTextField fromField = new JTextField();
+        JLabel toLabel = new JLabel("To Account Number:");
+        JTextField toField = new JTextField();
+        JLabel amountLabel = new JLabel("Amount to Transfer:");
+        JTextField amountField = new JTextField();
+        JButton transferButton = new JButton("Transfer");
+
+        transferButton.addActionListener(e -> {
+            try {
+                int fromAcc = Integer.parseInt(fromField.getText().trim());
+                int toAcc = Integer.parseInt(toField.getText().trim());
+                long amount = Money.parse(amountField.getText().trim());
+
+                if (findAccount(fromAcc) == null || findAccount(toAcc) == null) {
+                    JOptionPane.showMessageDialog(this,
+                            "Account not found.", "Error",
+                            JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+                // Both accounts share the posting's journal record; each gets its own file update
+                for (LedgerService.Posting posting : ledger.postTransfer(fromAcc, toAcc, amount)) {
+                    trackSave(persistence.submit(posting));
+                }
+                fromField.setText("");
+                toField.setText("");
+                amountField.setText("");
+            } catch (NumberFormatException ex) {
+                JOptionPane.showMessageDialog(this, "Invalid input. Please enter numeric values.", "Error",
+                        JOptionPane.ERROR_MESSAGE);
+            } catch (IllegalArgumentException ex) {
+                JOptionPane.showMessageDialog(this, ex.getMessage(), "Error",
+                        JOptionPane.ERROR_MESSAGE);
+            }
+        });
+
+        panel.add(fromLabel);
+        panel.add(fromField);
+        panel.add(toLabel);
+        panel.add(toField);
+        panel.add(amountLabel);
+        panel.add(amountField);
+        panel.add(new JLabel());
+        panel.add(transferButton);
+
+        return panel;
+    }
+
+    private JPanel balancePanel() {
+        JPanel panel = new JPanel(new GridLayout(3, 2, 10, 10));
+
+        JLabel accNumLabel = new JLabel("Account Number:");
+        JTextField accNumField = new JTextField();
+        JButton checkBalanceButton = new JButton("Check Balance");
+
+        checkBalanceButton.addActionListener(e -> {
+            try {
+                int accNum = Integer.parseInt(accNumField.getText().trim());
+                BankAccount acc = findAccount(accNum);
+                if (acc == null) {
+                    JOptionPane.showMessageDialog(this,
+                            "Account not found.", "Error",
+                            JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+                // The latest view; never waits for a posting in progress
+                appendOutput(acc.view() + "\n\n");
+                accNumField.setText("");
+            } catch (NumberFormatException ex) {
+                JOptionPane.showMessageDialog(this,
+                        "Invalid Account Number.", "Error",
+                        JOptionPane.ERROR_MESSAGE);
+            }
+        });
+
+        panel.add(accNumLabel);
+        panel.add(accNumField);
+        panel.add(new JLabel());
+        panel.add(checkBalanceButton);
+
+        return panel;
+    }
+
+    private JPanel transactionHistoryPanel() {
+        JPanel panel = new JPanel(new BorderLayout(10, 10));
+        JPanel form = new JPanel(new GridLayout(3, 4, 10, 10));
+
+        JLabel accNumLabel = new JLabel("Account Number:");
+        JTextField accNumField = new JTextField();
+        JComboBox<String> typeBox = new JComboBox<>(new String[]{"All", "Created", "Deposit", "Withdraw",
+                "Transfer Out", "Transfer In", "Interest"});
+        JTextField fromField = new JTextField();
+        JTextField toField = new JTextField();
+        JButton viewHistoryButton = new JButton("View Transaction History");
+        JButton saveHistoryButton = new JButton("Save to File");
+        JLabel summaryLabel = new JLabel(" ");
+
+        // Rows are copied out of the account a page at a time as the table scrolls
+        historyModel = new HistoryTableModel();
+        JTable historyTable = new JTable(historyModel);
+        historyTable.setFillsViewportHeight(true);
+        historyTable.getColumnModel().getColumn(0).setPreferredWidth(60);
+        historyTable.getColumnModel().getColumn(1).setPreferredWidth(160);
+
+        viewHistoryButton.addActionListener(e -> {
+            int accNum;
+            long fromTime;
+            long toTime;
+            try {
+                accNum = Integer.parseInt(accNumField.getText().trim());
+                fromTime = parseDate(fromField.getText(), Long.MIN_VALUE, false);
+                toTime = parseDate(toField.getText(), Long.MAX_VALUE, true);
+            } catch (NumberFormatException ex) {
+                JOptionPane.showMessageDialog(this,
+                        "Invalid Account Number.", "Error",
+                        JOptionPane.ERROR_MESSAGE);
+                return;
+            } catch (DateTimeParseException ex) {
+                JOptionPane.showMessageDialog(this,
+                        "Invalid date. Use yyyy-MM-dd.", "Error",
+                        JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            BankAccount acc = findAccount(accNum);
+            if (acc == null) {
+                JOptionPane.showMessageDialog(this,
+                        "Account not found.", "Error",
+                        JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            // Combo order matches the TransactionLog type codes
+            byte type = typeBox.getSelectedIndex() == 0 ? HistoryTableModel.ALL_TYPES
+                    : (byte) typeBox.getSelectedIndex();
+            boolean filtered = type != HistoryTableModel.ALL_TYPES
+                    || fromTime != Long.MIN_VALUE || toTime != Long.MAX_VALUE;
+
+            if (historyLoader != null) {
+                historyLoader.cancel(true);
+            }
+            summaryLabel.setText("Loading history for Account #" + accNum + "...");
+            // One view backs the header, the filter and every page, so they all show the same point in time
+            // while postings carry on; filtering a long history happens off the EDT
+            BankAccount.View view = acc.view();
+            String header = "Account #" + accNum + ": " + view.holder
+                    + "   Current Balance: " + Money.format(view.balance);
+            SwingWorker<int[], Void> loader = new SwingWorker<>() {
+                @Override
+                protected int[] doInBackground() throws IOException {
+                    return filtered ? HistoryTableModel.scan(view.history, fromTime, toTime, type) : null;
+                }
+
+                @Override
+                protected void done() {
+                    if (isCancelled()) {
+                        return;
+                    }
+                    try {
+                        int[] matches = get();
+                        historyModel.show(view.history, matches);
+                        summaryLabel.setText(header + "   Showing " + historyModel.getRowCount()
+                                + " of " + view.version + " transactions");
+                    } catch (InterruptedException | ExecutionException ex) {
+                        historyModel.clear();
+                        summaryLabel.setText(" ");
+                        Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                        JOptionPane.showMessageDialog(BankingManagementSystemGUI.this, cause.getMessage(),
+                                "Error", JOptionPane.ERROR_MESSAGE);
+                    }
+                }
+            };
+            historyLoader = loader;
+            loader.execute();
+        });
+
+        saveHistoryButton.addActionListener(e -> {
+            try {
+                int accNum = Integer.parseInt(accNumField.getText().trim());
+                BankAccount acc = findAccount(accNum);
+                if (acc == null) {
+                    JOptionPane.showMessageDialog(this,
+                            "Account not found.", "Error",
+                            JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+                CompletableFuture<Long> ack = persistence.export(accNum);
+                trackSave(ack);
+                ack.thenRun(() -> SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(this,
+                        "Transaction history saved to file: account_" + accNum + ".txt",
+                        "Success", JOptionPane.INFORMATION_MESSAGE)));
+            } catch (NumberFormatException ex) {
+                JOptionPane.showMessageDialog(this,
+                        "Invalid Account Number.", "Error",
+                        JOptionPane.ERROR_MESSAGE);
+            }
+        });
+
+        form.add(accNumLabel);
+        form.add(accNumField);
+        form.add(new JLabel("Type:"));
+        form.add(typeBox);
+        form.add(new JLabel("From (yyyy-MM-dd):"));
+        form.add(fromField);
+        form.add(new JLabel("To (yyyy-MM-dd):"));
+        form.add(toField);
+        form.add(new JLabel());
+        form.add(new JLabel());
+        form.add(viewHistoryButton);
+        form.add(saveHistoryButton);
+
+        panel.add(form, BorderLayout.NORTH);
+        panel.add(new JScrollPane(historyTable), BorderLayout.CENTER);
+        panel.add(summaryLabel, BorderLayout.SOUTH);
+
+        return panel;
+    }
+
+    private JPanel searchPanel() {
+        JPanel panel = new JPanel(new BorderLayout(10, 10));
+        JPanel form = new JPanel(new GridLayout(3, 4, 10, 10));
+
+        JComboBox<String> modeBox = new JComboBox<>(new String[]{"Holder name starts with", "Balance between"});
+        JTextField nameField = new JTextField();
+        JTextField minField = new JTextField();
+        JTextField maxField = new JTextField();
+        JButton searchButton = new JButton("Search");
+        JButton previousButton = new JButton("Previous");
+        JButton nextButton = new JButton("Next");
+        JLabel pageLabel = new JLabel(" ");
+        previousButton.setEnabled(false);
+        nextButton.setEnabled(false);
+
+        SearchTableModel model = new SearchTableModel();
+        JTable table = new JTable(model);
+        table.setFillsViewportHeight(true);
+
+        // The first search builds the indexes, and every page is read off the EDT
+        java.util.function.IntConsumer loadPage = number -> {
+            SearchTableModel.Query query = model.query();
+            Object start = model.startOf(number);
+            searchButton.setEnabled(false);
+            previousButton.setEnabled(false);
+            nextButton.setEnabled(false);
+            pageLabel.setText("Searching...");
+            new SwingWorker<SearchTableModel.Page, Void>() {
+                @Override
+                protected SearchTableModel.Page doInBackground() {
+                    return query.fetch(start);
+                }
+
+                @Override
+                protected void done() {
+                    searchButton.setEnabled(true);
+                    try {
+                        if (query != model.query()) {
+                            return;
+                        }
+                        SearchTableModel.Page page = get();
+                        model.show(number, page);
+                        previousButton.setEnabled(number > 0);
+                        nextButton.setEnabled(model.hasNext());
+                        int first = number * SearchTableModel.PAGE_SIZE;
+                        pageLabel.setText(page.accounts.isEmpty() ? "No matching accounts"
+                                : "Page " + (number + 1) + ": results " + (first + 1) + "-"
+                                + (first + page.accounts.size()) + (model.hasNext() ? "" : " (last page)"));
+                    } catch (InterruptedException | ExecutionException ex) {
+                        pageLabel.setText(" ");
+                        Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                        JOptionPane.showMessageDialog(BankingManagementSystemGUI.this, cause.getMessage(),
+                                "Error", JOptionPane.ERROR_MESSAGE);
+                    }
+                }
+            }.execute();
+        };
+
+        searchButton.addActionListener(e -> {
+            SearchTableModel.Query query;
+            if (modeBox.getSelectedIndex() == 0) {
+                String prefix = nameField.getText().trim();
+                if (prefix.isEmpty()) {
+                    JOptionPane.showMessageDialog(this, "Enter the start of a holder name.", "Error",
+                            JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+                query = SearchTableModel.byHolder(ledger, prefix);
+            } else {
+                try {
+                    // A blank bound is open-ended
+                    long min = minField.getText().isBlank() ? Long.MIN_VALUE : Money.parse(minField.getText().trim());
+                    long max = maxField.getText().isBlank() ? Long.MAX_VALUE : Money.parse(maxField.getText().trim());
+                    query = SearchTableModel.byBalance(ledger, min, max);
+                } catch (NumberFormatException ex) {
+                    JOptionPane.showMessageDialog(this, "Invalid input. Please enter numeric values.", "Error",
+                            JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+            }
+            model.reset(query);
+            loadPage.accept(0);
+        });
+        previousButton.addActionListener(e -> loadPage.accept(model.pageNumber() - 1));
+        nextButton.addActionListener(e -> loadPage.accept(model.pageNumber() + 1));
+
+        form.add(new JLabel("Search by:"));
+        form.add(modeBox);
+        form.add(new JLabel("Holder name:"));
+        form.add(nameField);
+        form.add(new JLabel("Min balance:"));
+        form.add(minField);
+        form.add(new JLabel("Max balance:"));
+        form.add(maxField);
+        form.add(searchButton);
+        form.add(previousButton);
+        form.add(nextButton);
+        form.add(new JLabel());
+
+        panel.add(form, BorderLayout.NORTH);
+        panel.add(new JScrollPane(table), BorderLayout.CENTER);
+        panel.add(pageLabel, BorderLayout.SOUTH);
+
+        return panel;
+    }
+
+    // Blank means unbounded; the end date is inclusive, so it resolves to the start of the next day
+    private static long parseDate(String text, long unbounded, boolean end) {
+        text = text.trim();
+        if (text.isEmpty()) {
+            return unbounded;
+        }
+        LocalDate date = LocalDate.parse(text);
+        return (end ? date.plusDays(1) : date).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    // Change feed consumer: one console update per batch of balance changes, whichever thread made them
+    private void showChanges(ChangeFeed feed, long from, long to) {
+        StringBuilder text = new StringBuilder();
+        for (long event = from; event <= to; event++) {
+            int accNum = feed.accountNumber(event);
+            String amount = Money.format(Math.abs(feed.amount(event)));
+            switch (feed.type(event)) {
+                case AccountJournal.CREATE:
+                    text.append("Account created successfully:\nAccount #").append(accNum).append(": ")
+                            .append(ledger.find(accNum).getAccountHolder()).append("\nBalance: ");
+                    break;
+                case AccountJournal.DEPOSIT:
+                    text.append("Deposited ").append(amount).append(" to Account #").append(accNum)
+                            .append("\nNew Balance: ");
+                    break;
+                case AccountJournal.WITHDRAW:
+                    text.append("Withdrew ").append(amount).append(" from Account #").append(accNum)
+                            .append("\nNew Balance: ");
+                    break;
+                case AccountJournal.TRANSFER:
+                    text.append("Transferred ").append(amount).append(feed.amount(event) < 0 ? " out of" : " into")
+                            .append(" Account #").append(accNum).append("\nNew Balance: ");
+                    break;
+                case AccountJournal.INTEREST:
+                    text.append("Interest credited: ").append(amount).append(" to Account #").append(accNum)
+                            .append("\nNew Balance: ");
+                    break;
+                default:
+                    // Exports change no balance
+                    continue;
+            }
+            text.append(Money.format(feed.balance(event))).append("\n\n");
+        }
+        if (text.length() > 0) {
+            String shown = text.toString();
+            SwingUtilities.invokeLater(() -> appendOutput(shown));
+        }
+    }
+
+    // The console keeps only the most recent MAX_OUTPUT_LINES lines
+    private void appendOutput(String text) {
+        outputArea.append(text);
+        int excess = outputArea.getLineCount() - MAX_OUTPUT_LINES;
+        if (excess > 0) {
+            try {
+                outputArea.replaceRange("", 0, outputArea.getLineEndOffset(excess - 1));
+            } catch (BadLocationException e) {
+                outputArea.setText("");
+            }
+        }
+    }
+
+    // Latency of the instrumented ledger paths, refreshed every second while the tab is showing
+    private JPanel metricsPanel() {
+        JPanel panel = new JPanel(new BorderLayout(10, 10));
+        String[] columns = {"Operation", "Count", "Mean (\u00b5s)", "p50 (\u00b5s)", "p99 (\u00b5s)",
+                "p999 (\u00b5s)", "Max (\u00b5s)"};
+        DefaultTableModel model = new DefaultTableModel(columns, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        JTable table = new JTable(model);
+        table.setFillsViewportHeight(true);
+
+        JButton resetButton = new JButton("Reset");
+        resetButton.addActionListener(e -> {
+            Metrics.reset();
+            refreshMetrics(model);
+        });
+        new Timer(1000, e -> {
+            if (panel.isShowing()) {
+                refreshMetrics(model);
+            }
+        }).start();
+
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttons.add(resetButton);
+        panel.add(new JScrollPane(table), BorderLayout.CENTER);
+        panel.add(buttons, BorderLayout.SOUTH);
+        refreshMetrics(model);
+        return panel;
+    }
+
+    // Bank-wide dashboard from the ledger's running aggregates, refreshed every second while the tab is
+    // showing. The first report with top balances builds the balance index, so reports are built off the EDT.
+    private JPanel reportsPanel() {
+        JPanel panel = new JPanel(new BorderLayout(10, 10));
+        JPanel form = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        JTextField daysField = new JTextField("7", 4);
+        JTextField topField = new JTextField("10", 4);
+        JButton refreshButton = new JButton("Refresh");
+        JButton exportButton = new JButton("Export");
+        JTextArea reportArea = new JTextArea();
+        reportArea.setEditable(false);
+        reportArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        // Most recently built report and whether a build is running; both touched only on the EDT
+        BankReport[] latest = new BankReport[1];
+        boolean[] building = new boolean[1];
+
+        Runnable refresh = () -> {
+            if (building[0]) {
+                return;
+            }
+            int days;
+            int top;
+            try {
+                days = Integer.parseInt(daysField.getText().trim());
+                top = Integer.parseInt(topField.getText().trim());
+            } catch (NumberFormatException ex) {
+                return;
+            }
+            building[0] = true;
+            new SwingWorker<BankReport, Void>() {
+                @Override
+                protected BankReport doInBackground() {
+                    return BankReport.build(ledger, days, Math.max(top, 0));
+                }
+
+                @Override
+                protected void done() {
+                    building[0] = false;
+                    try {
+                        latest[0] = get();
+                        int caret = reportArea.getCaretPosition();
+                        reportArea.setText(latest[0].format());
+                        reportArea.setCaretPosition(Math.min(caret, reportArea.getDocument().getLength()));
+                    } catch (InterruptedException | ExecutionException ex) {
+                        Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                        reportArea.setText("Report failed: " + cause.getMessage());
+                    }
+                }
+            }.execute();
+        };
+        refreshButton.addActionListener(e -> refresh.run());
+        exportButton.addActionListener(e -> {
+            if (latest[0] == null) {
+                return;
+            }
+            File file = new File(REPORTS_DIR, "report_" + LocalDate.now() + ".txt");
+            try {
+                latest[0].export(file);
+                JOptionPane.showMessageDialog(this, "Report saved to file: " + file.getPath(),
+                        "Success", JOptionPane.INFORMATION_MESSAGE);
+            } catch (IOException ex) {
+                JOptionPane.showMessageDialog(this, "Error saving report: " + ex.getMessage(), "Error",
+                        JOptionPane.ERROR_MESSAGE);
+            }
+        });
+        new Timer(1000, e -> {
+            if (panel.isShowing()) {
+                refresh.run();
+            }
+        }).start();
+
+        form.add(new JLabel("Days:"));
+        form.add(daysField);
+        form.add(new JLabel("Top balances:"));
+        form.add(topField);
+        form.add(refreshButton);
+        form.add(exportButton);
+        panel.add(form, BorderLayout.NORTH);
+        panel.add(new JScrollPane(reportArea), BorderLayout.CENTER);
+        return panel;
+    }
+
+    private static void refreshMetrics(DefaultTableModel model) {
+        model.setRowCount(0);
+        for (Metrics.Timer timer : Metrics.timers()) {
+            LatencyHistogram.Snapshot s = timer.snapshot();
+            model.addRow(new Object[]{timer.name, s.count, micros(s.meanNanos()), micros(s.percentileNanos(0.5)),
+                    micros(s.percentileNanos(0.99)), micros(s.percentileNanos(0.999)), micros(s.maxNanos)});
+        }
+    }
+
+    private static String micros(double nanos) {
+        return String.format("%.1f", nanos / 1e3);
+    }
+
+    private BankAccount findAccount(int accountNumber) {
+        return ledger.find(accountNumber);
+    }
+
+    // Metrics are always on and visible over JMX; bank.metrics.dumpFile also appends a text
+    // report to that file every bank.metrics.dumpSeconds seconds
+    private static void startMetrics() {
+        Metrics.registerMBean();
+        String dumpFile = System.getProperty("bank.metrics.dumpFile");
+        if (dumpFile != null) {
+            Metrics.startDump(new File(dumpFile), Long.getLong("bank.metrics.dumpSeconds", 60));
+        }
+    }
+
+    // Headless bulk posting: --post <file.csv> [workers]
+    private static void postBatch(String[] args) {
+        File input = new File(args[1]);
+        int workers = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        new File(TRANSACTIONS_DIR).mkdirs();
+        boolean stopped = false;
+        try (LedgerService ledger = LedgerService.open(new File(ACCOUNTS_FILE), new File(JOURNAL_FILE),
+                     JOURNAL_SYNC, GROUP_COMMIT_MICROS, CHECKPOINT_BYTES, HISTORY_CACHE_ENTRIES, HISTORY_WINDOW);
+             TransactionFileWriter transactionFiles = new TransactionFileWriter(new File(TRANSACTIONS_DIR),
+                     MAX_OPEN_TRANSACTION_FILES)) {
+            BatchPoster.Result result = new BatchPoster(ledger, transactionFiles, workers)
+                    .post(input, new File(args[1] + ".rejects.csv"));
+            System.out.println(result);
+            System.out.print(Metrics.report());
+            stopped = result.failure != null;
+        } catch (IOException e) {
+            System.err.println("Batch posting failed: " + e.getMessage());
+            System.exit(1);
+        }
+        if (stopped) {
+            // Part of the file was posted and saved; the report lists every line that was not
+            System.err.println("Batch posting stopped part way; only the lines counted as posted were saved.");
+            System.exit(1);
+        }
+    }
+
+    // Headless HTTP server on the GUI's data files: --server [port]. Binds to bank.server.host,
+    // loopback unless set, and runs until the process is stopped. Without virtual threads (Java 21+)
+    // requests share a pool of bank.server.threads platform threads.
+    private static void serve(String[] args) {
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+        String host = System.getProperty("bank.server.host", "127.0.0.1");
+        new File(TRANSACTIONS_DIR).mkdirs();
+        try {
+            CredentialStore credentials = CredentialStore.open(new File(USERS_LOG), new File(USERS_FILE),
+                    AUTH_ITERATIONS);
+            LedgerService ledger = LedgerService.open(new File(ACCOUNTS_FILE), new File(JOURNAL_FILE),
+                    JOURNAL_SYNC, GROUP_COMMIT_MICROS, CHECKPOINT_BYTES, HISTORY_CACHE_ENTRIES, HISTORY_WINDOW);
+            TransactionFileWriter transactionFiles = new TransactionFileWriter(new File(TRANSACTIONS_DIR),
+                    MAX_OPEN_TRANSACTION_FILES);
+            ChangeFeed changes = new ChangeFeed(CHANGE_FEED_CAPACITY);
+            PersistencePipeline persistence = new PersistencePipeline(ledger, transactionFiles, changes);
+            changes.subscribe("metrics", Metrics::count);
+            ledger.publishTo(changes);
+            BankServer server = new BankServer(ledger, persistence, credentials, new InetSocketAddress(host, port),
+                    Integer.getInteger("bank.server.backlog", 1024), Integer.getInteger("bank.server.threads", 64));
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                server.close();
+                persistence.close();
+                changes.close();
+                transactionFiles.close();
+                try {
+                    ledger.close();
+                    credentials.close();
+                } catch (IOException e) {
+                    System.err.println("Error closing data files: " + e.getMessage());
+                }
+            }, "server-shutdown"));
+            server.start();
+            System.out.println("Serving on http://" + host + ":" + server.address().getPort());
+        } catch (IOException e) {
+            System.err.println("Server failed to start: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    // Load test with the GUI's storage settings in a separate data directory:
+    // --simulate [key=value ...], see WorkloadSimulator.Config
+    private static void simulate(String[] args) {
+        WorkloadSimulator.Config config = new WorkloadSimulator.Config();
+        config.syncMode = JOURNAL_SYNC;
+        config.groupCommitMicros = GROUP_COMMIT_MICROS;
+        config.checkpointBytes = CHECKPOINT_BYTES;
+        config.historyCacheEntries = HISTORY_CACHE_ENTRIES;
+        config.historyWindow = HISTORY_WINDOW;
+        config.maxOpenTransactionFiles = MAX_OPEN_TRANSACTION_FILES;
+        config.changeFeedCapacity = CHANGE_FEED_CAPACITY;
+        try {
+            System.out.print(new WorkloadSimulator(config.parse(args, 1)).run());
+        } catch (IllegalArgumentException | IOException e) {
+            System.err.println("Simulation failed: " + e.getMessage());
+            System.exit(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Interest accrual and monthly statements on the GUI's data files: --end-of-day [key=value ...],
+    // see EndOfDayJob.Config. Run it again with the same date to finish an interrupted run; a date that
+    // already finished is skipped, so a repeated run never credits interest twice.
+    private static void endOfDay(String[] args) {
+        EndOfDayJob.Config config = new EndOfDayJob.Config();
+        config.rateBasisPoints = Integer.getInteger("bank.interest.rateBasisPoints", config.rateBasisPoints);
+        config.maxOpenFiles = MAX_OPEN_TRANSACTION_FILES;
+        try (LedgerService ledger = LedgerService.open(new File(ACCOUNTS_FILE), new File(JOURNAL_FILE),
+                JOURNAL_SYNC, GROUP_COMMIT_MICROS, CHECKPOINT_BYTES, HISTORY_CACHE_ENTRIES, HISTORY_WINDOW)) {
+            System.out.println(new EndOfDayJob(ledger, config.parse(args, 1)).run());
+            System.out.print(Metrics.report());
+        } catch (IllegalArgumentException | DateTimeParseException | IOException e) {
+            System.err.println("End of day failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    // Writes the bank-wide report for the GUI's data files to stdout: --report [days] [top].
+    // Reads the files without writing to them, so it can run while the GUI or server has them open.
+    private static void report(String[] args) {
+        int days = args.length > 1 ? Integer.parseInt(args[1]) : 7;
+        int top = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        try (LedgerService ledger = LedgerService.openReadOnly(new File(ACCOUNTS_FILE), new File(JOURNAL_FILE),
+                HISTORY_CACHE_ENTRIES)) {
+            System.out.print(BankReport.build(ledger, days, top).format());
+        } catch (IOException e) {
+            System.err.println("Report failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    public static void main(String args[]) {
+        startMetrics();
+        if (args.length >= 2 && args[0].equals("--post")) {
+            postBatch(args);
+            return;
+        }
+        if (args.length >= 1 && args[0].equals("--server")) {
+            serve(args);
+            return;
+        }
+        if (args.length >= 1 && args[0].equals("--simulate")) {
+            simulate(args);
+            return;
+        }
+        if (args.length >= 1 && args[0].equals("--end-of-day")) {
+            endOfDay(args);
+            return;
+        }
+        if (args.length >= 1 && args[0].equals("--report")) {
+            report(args);
+            return;
+        }
+        SwingUtilities.invokeLater(() -> {
+            BankingManagementSystemGUI app = new BankingManagementSystemGUI();
+            app.setVisible(true);
+        });
+    }
+}
\ No newline at end of file
@@ -0,0 +1,310 @@
+package banking;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+// Posts a CSV of "account,type,amount" records in bulk.
+// Lines are streamed, partitioned by account number across worker threads (so each account's
+// records keep their order), validated by BankAccount exactly like single postings, and
+// committed to the journal in groups rather than per line, with a checkpoint at the end.
+// A batch is not all or nothing: if a worker fails, every worker stops posting, what was posted
+// until then is kept and saved, and the result says so with every line left unposted in the report.
+class BatchPoster {
+    private static final int QUEUE_CAPACITY = 1024;
+    // Postings per worker between journal commits; bounds the records the journal holds in memory
+    private static final int COMMIT_INTERVAL = 8192;
+
+    private static final class Line {
+        final long number;
+        final int accountNumber;
+        final boolean deposit;
+        final long amount;
+        final String text;
+
+        Line(long number, int accountNumber, boolean deposit, long amount, String text) {
+            this.number = number;
+            this.accountNumber = accountNumber;
+            this.deposit = deposit;
+            this.amount = amount;
+            this.text = text;
+        }
+    }
+
+    private static final Line END = new Line(-1, 0, false, 0, null);
+
+    private static final class Reject {
+        final long line;
+        final String reason;
+        final String text;
+
+        Reject(long line, String reason, String text) {
+            this.line = line;
+            this.reason = reason;
+            this.text = text;
+        }
+    }
+
+    static final class Result {
+        final long lines;
+        final long posted;
+        final long rejected;
+        final long elapsedMillis;
+        final File rejectReport;
+        // Why the batch stopped early, null if every line was read and handled
+        final IOException failure;
+
+        Result(long lines, long posted, long rejected, long elapsedMillis, File rejectReport, IOException failure) {
+            this.lines = lines;
+            this.posted = posted;
+            this.rejected = rejected;
+            this.elapsedMillis = elapsedMillis;
+            this.rejectReport = rejectReport;
+            this.failure = failure;
+        }
+
+        @Override
+        public String toString() {
+            if (failure != null) {
+                return String.format("Stopped after %d lines in %d ms: %s%n%d posted and saved, %d rejected or "
+                                + "not posted (report: %s); lines after line %d were not read",
+                        lines, elapsedMillis, failure.getMessage(), posted, rejected, rejectReport, lines);
+            }
+            return String.format("Processed %d lines in %d ms: %d posted, %d rejected (report: %s)",
+                    lines, elapsedMillis, posted, rejected, rejectReport);
+        }
+    }
+
+    private final LedgerService ledger;
+    private final TransactionFileWriter transactionFiles;
+    private final int workers;
+    // Set by the first worker that fails so the reader stops handing out lines and every worker stops posting
+    private volatile boolean failed;
+
+    public BatchPoster(LedgerService ledger, TransactionFileWriter transactionFiles, int workers) {
+        this.ledger = ledger;
+        this.transactionFiles = transactionFiles;
+        this.workers = Math.max(1, workers);
+    }
+
+    // Throws if the input cannot be opened or the final save fails. A failure part way through is reported
+    // in the result instead, with the postings made before it saved.
+    public Result post(File input, File rejectReport) throws IOException {
+        long start = System.currentTimeMillis();
+        failed = false;
+        List<BlockingQueue<Line>> queues = new ArrayList<>(workers);
+        List<Worker> pool = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++) {
+            BlockingQueue<Line> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+            Worker worker = new Worker(queue);
+            queues.add(queue);
+            pool.add(worker);
+            worker.thread.start();
+        }
+
+        List<Reject> parseRejects = new ArrayList<>();
+        long lines = 0;
+        IOException failure = null;
+        long failedLine = Long.MAX_VALUE;
+        try (BufferedReader reader = new BufferedReader(new FileReader(input), 1 << 16)) {
+            String text;
+            while (!failed && (text = reader.readLine()) != null) {
+                lines++;
+                if (text.trim().isEmpty() || (lines == 1 && isHeader(text))) {
+                    continue;
+                }
+                Line line;
+                try {
+                    line = parse(lines, text);
+                } catch (IllegalArgumentException e) {
+                    parseRejects.add(new Reject(lines, e.getMessage(), text));
+                    continue;
+                }
+                put(queues.get(partition(line.accountNumber)), line);
+            }
+        } catch (IOException e) {
+            if (lines == 0) {
+                throw e;
+            }
+            failed = true;
+            failure = new IOException("Reading stopped after line " + lines + ": " + e.getMessage(), e);
+            failedLine = lines;
+        } finally {
+            for (BlockingQueue<Line> queue : queues) {
+                put(queue, END);
+            }
+            for (Worker worker : pool) {
+                join(worker.thread);
+            }
+        }
+
+        // Reported at the earliest line it happened
+        for (Worker worker : pool) {
+            if (worker.failure != null && (failure == null || worker.failedLine < failedLine)) {
+                failure = worker.failure;
+                failedLine = worker.failedLine;
+            }
+        }
+        // Saves the last group and compacts the journal, then each touched account's transaction file once
+        ledger.checkpoint();
+        long posted = 0;
+        List<Reject> rejects = new ArrayList<>(parseRejects);
+        for (Worker worker : pool) {
+            posted += worker.posted;
+            rejects.addAll(worker.rejects);
+        }
+        if (transactionFiles != null) {
+            for (Worker worker : pool) {
+                for (int accountNumber : worker.touched) {
+                    transactionFiles.append(ledger.view(accountNumber));
+                }
+            }
+        }
+
+        rejects.sort(Comparator.comparingLong(r -> r.line));
+        writeRejects(rejectReport, rejects);
+        return new Result(lines, posted, rejects.size(), System.currentTimeMillis() - start, rejectReport, failure);
+    }
+
+    private final class Worker implements Runnable {
+        final BlockingQueue<Line> queue;
+        final Thread thread;
+        final List<Reject> rejects = new ArrayList<>();
+        final Set<Integer> touched = new HashSet<>();
+        long posted;
+        IOException failure;
+        long failedLine = Long.MAX_VALUE;
+
+        Worker(BlockingQueue<Line> queue) {
+            this.queue = queue;
+            this.thread = new Thread(this, "batch-poster");
+        }
+
+        // Runs until END even after a failure, so the reader never blocks on a full queue; lines taken
+        // once any worker has failed are reported as not posted
+        @Override
+        public void run() {
+            while (true) {
+                Line line;
+                try {
+                    line = queue.take();
+                } catch (InterruptedException e) {
+                    fail(new IOException("Batch posting interrupted."), Long.MAX_VALUE);
+                    continue;
+                }
+                if (line == END) {
+                    return;
+                }
+                if (failed) {
+                    rejects.add(new Reject(line.number, "Not posted: the batch stopped after a failure.", line.text));
+                    continue;
+                }
+                LedgerService.Posting posting;
+                try {
+                    posting = line.deposit
+                            ? ledger.postDeposit(line.accountNumber, line.amount)
+                            : ledger.postWithdraw(line.accountNumber, line.amount);
+                } catch (IllegalArgumentException e) {
+                    rejects.add(new Reject(line.number, e.getMessage(), line.text));
+                    continue;
+                } catch (RuntimeException e) {
+                    rejects.add(new Reject(line.number, "Not posted: " + e.getMessage(), line.text));
+                    fail(new IOException("Batch posting failed at line " + line.number + ": " + e.getMessage(), e),
+                            line.number);
+                    continue;
+                }
+                touched.add(line.accountNumber);
+                if (++posted % COMMIT_INTERVAL == 0) {
+                    try {
+                        ledger.commit(posting.sequence);
+                    } catch (IOException | RuntimeException e) {
+                        fail(new IOException("Saving the batch failed after line " + line.number + ": "
+                                + e.getMessage(), e), line.number);
+                    }
+                }
+            }
+        }
+
+        private void fail(IOException e, long line) {
+            if (failure == null) {
+                failure = e;
+                failedLine = line;
+            }
+            failed = true;
+        }
+    }
+
+    private static boolean isHeader(String text) {
+        String first = text.split(",", 2)[0].trim();
+        return !first.isEmpty() && !Character.isDigit(first.charAt(0));
+    }
+
+    private static Line parse(long number, String text) {
+        String[] fields = text.split(",");
+        if (fields.length != 3) {
+            throw new IllegalArgumentException("Expected account,type,amount.");
+        }
+        int accountNumber;
+        long amount;
+        try {
+            accountNumber = Integer.parseInt(fields[0].trim());
+            amount = Money.parse(fields[2].trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid input. Please enter numeric values.");
+        }
+        String type = fields[1].trim().toUpperCase();
+        boolean deposit;
+        if (type.equals("DEPOSIT") || type.equals("D")) {
+            deposit = true;
+        } else if (type.equals("WITHDRAW") || type.equals("W")) {
+            deposit = false;
+        } else {
+            throw new IllegalArgumentException("Unknown transaction type: " + fields[1].trim());
+        }
+        return new Line(number, accountNumber, deposit, amount, text);
+    }
+
+    private int partition(int accountNumber) {
+        int h = accountNumber * 0x9E3779B9;
+        return ((h ^ (h >>> 16)) & Integer.MAX_VALUE) % workers;
+    }
+
+    private static void writeRejects(File report, List<Reject> rejects) throws IOException {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(report))) {
+            writer.write("line,reason,record");
+            writer.newLine();
+            for (Reject reject : rejects) {
+                writer.write(reject.line + ",\"" + reject.reason.replace("\"", "\"\"") + "\"," + reject.text);
+                writer.newLine();
+            }
+        }
+    }
+
+    private static void put(BlockingQueue<Line> queue, Line line) throws IOException {
+        try {
+            queue.put(line);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Batch posting interrupted.");
+        }
+    }
+
+    private static void join(Thread thread) throws IOException {
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Batch posting interrupted.");
+        }
+    }
+}
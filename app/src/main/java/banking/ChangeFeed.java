@@ -0,0 +1,451 @@
+package banking;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+// Ring of balance-change events between the ledger and everything downstream of it.
+// Each posting publishes its changes once into preallocated slots; every consumer runs on its own thread
+// and takes all events published since its last batch in one go, so consumers never slow the posting
+// threads or each other. A consumer may be placed after others (transaction files after the journal),
+// and posting threads only wait when the slowest consumer is a full ring behind. A consumer others are
+// placed after retries a batch its handler throws on until it goes through, so they never see an event
+// it failed on; one nobody follows reports the failure and moves on.
+final class ChangeFeed implements AutoCloseable {
+    // Event types are the journal's record types; EXPORT asks for an account's file to be rewritten in full
+    static final byte EXPORT = 0;
+
+    interface Handler {
+        // Events [from, to] in order; read them with the feed's accessors before returning
+        void onEvents(ChangeFeed feed, long from, long to) throws Exception;
+    }
+
+    private static final class Waiter {
+        final long sequence;
+        final CompletableFuture<Long> done;
+
+        Waiter(long sequence, CompletableFuture<Long> done) {
+            this.sequence = sequence;
+            this.done = done;
+        }
+    }
+
+    // Pause before retrying a failed batch, doubling up to the maximum while it keeps failing
+    private static final long RETRY_MIN_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long RETRY_MAX_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static final class Failure {
+        final long from;
+        final long to;
+        final Throwable cause;
+
+        Failure(long from, long to, Throwable cause) {
+            this.from = from;
+            this.to = to;
+            this.cause = cause;
+        }
+    }
+
+    final class Consumer implements AutoCloseable {
+        final String name;
+        private final Handler handler;
+        private final Consumer[] after;
+        private final Thread thread;
+        private final PriorityQueue<Waiter> waiters = new PriorityQueue<>(Comparator.comparingLong(w -> w.sequence));
+        // Last event handled
+        private volatile long sequence;
+        private volatile long stopAt = Long.MAX_VALUE;
+        private volatile boolean sleeping;
+        // Set once another consumer is placed after this one; failed batches are then retried
+        private volatile boolean followed;
+        // Most recent batch the handler threw on, so waiters registered late still see it; cleared when
+        // a retry of it goes through
+        private volatile Failure failure;
+
+        private Consumer(String name, Handler handler, Consumer[] after, long sequence) {
+            this.name = name;
+            this.handler = handler;
+            this.after = after;
+            this.sequence = sequence;
+            this.thread = new Thread(this::run, "change-" + name);
+            thread.setDaemon(true);
+        }
+
+        long sequence() {
+            return sequence;
+        }
+
+        long lag() {
+            return claimed.get() - sequence;
+        }
+
+        // Completes once this consumer has handled the event, exceptionally if its batch failed
+        CompletableFuture<Long> whenProcessed(long event) {
+            CompletableFuture<Long> done = new CompletableFuture<>();
+            synchronized (this) {
+                waiters.add(new Waiter(event, done));
+            }
+            // A batch being retried has failed already as far as its waiters are concerned
+            Failure failed = failure;
+            settle(failed != null ? Math.max(sequence, failed.to) : sequence);
+            if (!thread.isAlive() && stopAt != Long.MAX_VALUE) {
+                failPending();
+            }
+            return done;
+        }
+
+        private void run() {
+            long next = sequence + 1;
+            long retryNanos = 0;
+            while (true) {
+                long available = available(next);
+                if (available >= next) {
+                    try {
+                        handler.onEvents(ChangeFeed.this, next, available);
+                    } catch (Exception e) {
+                        failure = new Failure(next, available, e);
+                        System.err.println("Change consumer " + name + " failed on events " + next + "-"
+                                + available + ": " + e);
+                        if (followed) {
+                            // Consumers after this one must not see the batch, so it is retried until it
+                            // goes through; its waiters hear of the failure now. Closing gives up on it, and
+                            // consumers being closed behind it are woken so they stop waiting for it.
+                            settle(available);
+                            if (sleepers.get() > 0) {
+                                wake();
+                            }
+                            if (stopAt != Long.MAX_VALUE) {
+                                return;
+                            }
+                            retryNanos = Math.min(Math.max(retryNanos * 2, RETRY_MIN_NANOS), RETRY_MAX_NANOS);
+                            LockSupport.parkNanos(this, retryNanos);
+                            continue;
+                        }
+                    }
+                    sequence = available;
+                    Failure failed = failure;
+                    if (failed != null && failed.from >= next && failed.to <= available && retryNanos > 0) {
+                        failure = null;
+                    }
+                    retryNanos = 0;
+                    settle(available);
+                    advance();
+                    if (sleepers.get() > 0) {
+                        wake();
+                    }
+                    next = available + 1;
+                } else if (stopped(next)) {
+                    return;
+                } else {
+                    idle(next);
+                }
+            }
+        }
+
+        // Past the last event to handle, or closing while an upstream consumer is stuck retrying a batch
+        // this one would have to wait for
+        private boolean stopped(long next) {
+            if (next > stopAt) {
+                return true;
+            }
+            if (stopAt == Long.MAX_VALUE) {
+                return false;
+            }
+            for (Consumer upstream : after) {
+                if (upstream.retrying()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean retrying() {
+            Failure failed = failure;
+            return failed != null && failed.from > sequence;
+        }
+
+        private long available(long next) {
+            long limit = claimed.get();
+            if (after.length > 0) {
+                // Whatever an upstream consumer has handled was published
+                for (Consumer upstream : after) {
+                    limit = Math.min(limit, upstream.sequence);
+                }
+                return limit;
+            }
+            long upTo = next - 1;
+            while (upTo < limit && published.get((int) (upTo + 1) & mask) == upTo + 1) {
+                upTo++;
+            }
+            return upTo;
+        }
+
+        // Parks until a producer or an upstream consumer moves on. The flag is raised before the last
+        // look, and publishers set the slot before checking for sleepers, so no wake-up is missed.
+        private void idle(long next) {
+            sleepers.incrementAndGet();
+            sleeping = true;
+            try {
+                if (available(next) < next && !stopped(next)) {
+                    LockSupport.park(this);
+                }
+            } finally {
+                sleeping = false;
+                sleepers.decrementAndGet();
+            }
+        }
+
+        private void settle(long upTo) {
+            while (true) {
+                Waiter waiter;
+                synchronized (this) {
+                    waiter = waiters.peek();
+                    if (waiter == null || waiter.sequence > upTo) {
+                        return;
+                    }
+                    waiters.poll();
+                }
+                Failure failed = failure;
+                if (failed != null && waiter.sequence >= failed.from && waiter.sequence <= failed.to) {
+                    waiter.done.completeExceptionally(failed.cause);
+                } else {
+                    waiter.done.complete(waiter.sequence);
+                }
+            }
+        }
+
+        private void failPending() {
+            settle(sequence);
+            while (true) {
+                Waiter waiter;
+                synchronized (this) {
+                    waiter = waiters.poll();
+                }
+                if (waiter == null) {
+                    return;
+                }
+                waiter.done.completeExceptionally(new IOException("Change consumer " + name + " is closed."));
+            }
+        }
+
+        // Handles everything published so far, then stops and stops holding the ring back; safe to call
+        // more than once. Consumers placed after this one must be closed first. A batch still failing is
+        // tried once more and then given up, its waiters failed.
+        @Override
+        public void close() {
+            stopAt = Math.min(stopAt, claimed.get());
+            LockSupport.unpark(thread);
+            boolean interrupted = false;
+            while (thread.isAlive()) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            remove(this);
+            failPending();
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private final int mask;
+    private final byte[] types;
+    private final int[] accounts;
+    private final long[] amounts;
+    private final long[] balances;
+    private final long[] journalSequences;
+    private final long[] times;
+    // Sequence each slot was last published with
+    private final AtomicLongArray published;
+    private final AtomicLong claimed = new AtomicLong();
+    // Slots not yet claimed or already handled by every consumer
+    private final Semaphore free;
+    private final AtomicInteger sleepers = new AtomicInteger();
+    private final Object gate = new Object();
+    private volatile Consumer[] consumers = new Consumer[0];
+    // Highest sequence whose slot has been handed back to free; guarded by gate
+    private long released;
+    private boolean closed;
+
+    // Capacity is rounded up to a power of two
+    ChangeFeed(int capacity) {
+        int size = Integer.highestOneBit(Math.max(16, capacity) * 2 - 1);
+        this.mask = size - 1;
+        this.types = new byte[size];
+        this.accounts = new int[size];
+        this.amounts = new long[size];
+        this.balances = new long[size];
+        this.journalSequences = new long[size];
+        this.times = new long[size];
+        this.published = new AtomicLongArray(size);
+        this.free = new Semaphore(size);
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+
+    // Last sequence claimed by a producer
+    long cursor() {
+        return claimed.get();
+    }
+
+    // Makes room for the events a posting is about to publish. Called before the posting takes any ledger
+    // lock: consumers lock accounts too, so waiting for them while holding one could wait forever.
+    void reserve(int events) {
+        if (events > capacity()) {
+            throw new IllegalArgumentException("A posting cannot publish more than " + capacity() + " changes.");
+        }
+        free.acquireUninterruptibly(events);
+    }
+
+    // Gives back room reserved for a posting that was rejected
+    void cancel(int events) {
+        free.release(events);
+    }
+
+    // Publishes one event into reserved room and returns its sequence. Callers publishing changes to one
+    // account do so under that account's lock, so the feed has them in the order they were applied.
+    long publish(byte type, int accountNumber, long amount, long balance, long journalSequence, long time) {
+        long sequence = claimed.incrementAndGet();
+        int slot = (int) sequence & mask;
+        types[slot] = type;
+        accounts[slot] = accountNumber;
+        amounts[slot] = amount;
+        balances[slot] = balance;
+        journalSequences[slot] = journalSequence;
+        times[slot] = time;
+        published.set(slot, sequence);
+        if (sleepers.get() > 0) {
+            wake();
+        }
+        if (consumers.length == 0) {
+            advance();
+        }
+        return sequence;
+    }
+
+    // For callers that hold no ledger lock
+    long offer(byte type, int accountNumber, long amount, long balance, long journalSequence, long time) {
+        reserve(1);
+        return publish(type, accountNumber, amount, balance, journalSequence, time);
+    }
+
+    byte type(long sequence) {
+        return types[(int) sequence & mask];
+    }
+
+    int accountNumber(long sequence) {
+        return accounts[(int) sequence & mask];
+    }
+
+    // Signed change to the balance
+    long amount(long sequence) {
+        return amounts[(int) sequence & mask];
+    }
+
+    // Balance after the change
+    long balance(long sequence) {
+        return balances[(int) sequence & mask];
+    }
+
+    long journalSequence(long sequence) {
+        return journalSequences[(int) sequence & mask];
+    }
+
+    long time(long sequence) {
+        return times[(int) sequence & mask];
+    }
+
+    // Starts a consumer at the oldest event still in the ring; it sees each event only after every consumer
+    // in after has handled it
+    Consumer subscribe(String name, Handler handler, Consumer... after) {
+        Consumer consumer;
+        synchronized (gate) {
+            if (closed) {
+                throw new IllegalStateException("Change feed is closed.");
+            }
+            consumer = new Consumer(name, handler, after.clone(), released);
+            for (Consumer upstream : after) {
+                upstream.followed = true;
+            }
+            Consumer[] grown = Arrays.copyOf(consumers, consumers.length + 1);
+            grown[consumers.length] = consumer;
+            consumers = grown;
+        }
+        consumer.thread.start();
+        return consumer;
+    }
+
+    private void remove(Consumer consumer) {
+        synchronized (gate) {
+            Consumer[] current = consumers;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i] == consumer) {
+                    Consumer[] shrunk = new Consumer[current.length - 1];
+                    System.arraycopy(current, 0, shrunk, 0, i);
+                    System.arraycopy(current, i + 1, shrunk, i, current.length - i - 1);
+                    consumers = shrunk;
+                    break;
+                }
+            }
+        }
+        advance();
+    }
+
+    // Hands the slots every consumer is done with back to producers; with no consumers, everything published
+    private void advance() {
+        synchronized (gate) {
+            Consumer[] current = consumers;
+            long upTo;
+            if (current.length == 0) {
+                upTo = released;
+                long limit = claimed.get();
+                while (upTo < limit && published.get((int) (upTo + 1) & mask) == upTo + 1) {
+                    upTo++;
+                }
+            } else {
+                upTo = Long.MAX_VALUE;
+                for (Consumer consumer : current) {
+                    upTo = Math.min(upTo, consumer.sequence);
+                }
+            }
+            if (upTo > released) {
+                free.release((int) (upTo - released));
+                released = upTo;
+            }
+        }
+    }
+
+    private void wake() {
+        for (Consumer consumer : consumers) {
+            if (consumer.sleeping) {
+                LockSupport.unpark(consumer.thread);
+            }
+        }
+    }
+
+    // Drains and stops every consumer, latest subscribed first
+    @Override
+    public void close() {
+        Consumer[] current;
+        synchronized (gate) {
+            closed = true;
+            current = consumers;
+        }
+        for (int i = current.length - 1; i >= 0; i--) {
+            current[i].close();
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package banking;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+// Salted PBKDF2 password hashes kept in an append-only log.
+// Each record is [length][crc32][name][iterations][salt][hash]; a later record for the same user
+// replaces the earlier one, and a torn tail is dropped on load.
+// Hashing is deliberately slow, so callers should keep verify() and register() off the EDT.
+class CredentialStore implements AutoCloseable {
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+    private static final int RECORD_HEADER = 8;
+
+    private static final class Credential {
+        final int iterations;
+        final byte[] salt;
+        final byte[] hash;
+
+        Credential(int iterations, byte[] salt, byte[] hash) {
+            this.iterations = iterations;
+            this.salt = salt;
+            this.hash = hash;
+        }
+    }
+
+    private final FileChannel channel;
+    private final int iterations;
+    private final SecureRandom random = new SecureRandom();
+    private final Map<String, Credential> users = new ConcurrentHashMap<>();
+    private final CRC32 crc = new CRC32(); // guarded by this
+    // Checked against when the user does not exist so failures take the same time either way
+    private final Credential decoy;
+
+    private CredentialStore(FileChannel channel, int iterations) {
+        this.channel = channel;
+        this.iterations = iterations;
+        this.decoy = hash(new char[0], iterations);
+    }
+
+    // Opens the log, migrating a plaintext users.dat the first time. The plaintext file is deleted
+    // once every password in it has been hashed into the log.
+    static CredentialStore open(File log, File legacy, int iterations) throws IOException {
+        if (iterations < 1) {
+            throw new IllegalArgumentException("Iterations must be positive.");
+        }
+        boolean fresh = !log.exists() || log.length() == 0;
+        if (fresh && legacy.exists()) {
+            migrate(legacy, log, iterations);
+        }
+        FileChannel channel = FileChannel.open(log.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        CredentialStore store = new CredentialStore(channel, iterations);
+        try {
+            store.load();
+            if (fresh && !legacy.exists() && store.users.isEmpty()) {
+                // First run - create default users
+                store.register("user1", "pass1".toCharArray());
+                store.register("admin", "admin123".toCharArray());
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        if (legacy.exists()) {
+            Files.delete(legacy.toPath());
+        }
+        return store;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void migrate(File legacy, File log, int iterations) throws IOException {
+        HashMap<String, String> plain;
+        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(legacy))) {
+            plain = (HashMap<String, String>) ois.readObject();
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Unreadable users file: " + e.getMessage(), e);
+        }
+        // Hashing dominates, so spread it over every core
+        SecureRandom random = new SecureRandom();
+        byte[][] records = plain.entrySet().parallelStream()
+                .map(entry -> {
+                    byte[] salt = new byte[SALT_BYTES];
+                    random.nextBytes(salt);
+                    Credential credential = new Credential(iterations, salt,
+                            pbkdf2(entry.getValue().toCharArray(), salt, iterations));
+                    return encode(entry.getKey(), credential, new CRC32());
+                })
+                .toArray(byte[][]::new);
+
+        File tmp = new File(log.getPath() + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (byte[] record : records) {
+                ByteBuffer buf = ByteBuffer.wrap(record);
+                while (buf.hasRemaining()) {
+                    out.write(buf);
+                }
+            }
+            out.force(true);
+        }
+        Files.move(tmp.toPath(), log.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void load() throws IOException {
+        long size = channel.size();
+        ByteBuffer data = ByteBuffer.allocate((int) Math.min(size, Integer.MAX_VALUE));
+        while (data.hasRemaining() && channel.read(data, data.position()) > 0) {
+            // keep reading
+        }
+        data.flip();
+        long valid = 0;
+        while (data.remaining() >= RECORD_HEADER) {
+            int length = data.getInt();
+            int checksum = data.getInt();
+            if (length < 0 || length > data.remaining()) {
+                break;
+            }
+            crc.reset();
+            crc.update(data.array(), data.position(), length);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            ByteBuffer record = data.slice(data.position(), length);
+            data.position(data.position() + length);
+            byte[] name = new byte[record.getShort() & 0xFFFF];
+            record.get(name);
+            int recordIterations = record.getInt();
+            byte[] salt = new byte[record.get() & 0xFF];
+            record.get(salt);
+            byte[] hash = new byte[record.get() & 0xFF];
+            record.get(hash);
+            users.put(new String(name, StandardCharsets.UTF_8), new Credential(recordIterations, salt, hash));
+            valid = data.position();
+        }
+        if (valid < size) {
+            // Torn or corrupt tail from a crash mid-append
+            channel.truncate(valid);
+        }
+        channel.position(valid);
+    }
+
+    boolean exists(String username) {
+        return users.containsKey(username);
+    }
+
+    int size() {
+        return users.size();
+    }
+
+    // Returns false if the username is already taken
+    boolean register(String username, char[] password) throws IOException {
+        if (username.getBytes(StandardCharsets.UTF_8).length > 0xFFFF) {
+            throw new IllegalArgumentException("Username is too long.");
+        }
+        if (users.containsKey(username)) {
+            return false;
+        }
+        Credential credential = hash(password, iterations);
+        synchronized (this) {
+            if (users.putIfAbsent(username, credential) != null) {
+                return false;
+            }
+            try {
+                append(username, credential);
+            } catch (IOException | RuntimeException e) {
+                users.remove(username, credential);
+                throw e;
+            }
+        }
+        return true;
+    }
+
+    // Hashes stored with fewer iterations than the current setting are upgraded on a successful login
+    boolean verify(String username, char[] password) throws IOException {
+        Credential credential = users.get(username);
+        if (credential == null) {
+            MessageDigest.isEqual(decoy.hash, pbkdf2(password, decoy.salt, decoy.iterations));
+            return false;
+        }
+        if (!MessageDigest.isEqual(credential.hash, pbkdf2(password, credential.salt, credential.iterations))) {
+            return false;
+        }
+        if (credential.iterations < iterations) {
+            Credential upgraded = hash(password, iterations);
+            synchronized (this) {
+                if (users.replace(username, credential, upgraded)) {
+                    append(username, upgraded);
+                }
+            }
+        }
+        return true;
+    }
+
+    private Credential hash(char[] password, int cost) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        return new Credential(cost, salt, pbkdf2(password, salt, cost));
+    }
+
+    private static byte[] pbkdf2(char[] password, byte[] salt, int cost) {
+        PBEKeySpec spec = new PBEKeySpec(password, salt, cost, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    // Guarded by this
+    private void append(String username, Credential credential) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(encode(username, credential, crc));
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+        channel.force(false);
+    }
+
+    private static byte[] encode(String username, Credential credential, CRC32 crc) {
+        byte[] name = username.getBytes(StandardCharsets.UTF_8);
+        int length = 2 + name.length + 4 + 1 + credential.salt.length + 1 + credential.hash.length;
+        ByteBuffer buf = ByteBuffer.allocate(RECORD_HEADER + length);
+        buf.putInt(length);
+        buf.putInt(0);
+        buf.putShort((short) name.length);
+        buf.put(name);
+        buf.putInt(credential.iterations);
+        buf.put((byte) credential.salt.length);
+        buf.put(credential.salt);
+        buf.put((byte) credential.hash.length);
+        buf.put(credential.hash);
+        crc.reset();
+        crc.update(buf.array(), RECORD_HEADER, length);
+        buf.putInt(4, (int) crc.getValue());
+        return buf.array();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,480 @@
+package banking;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+// End-of-day batch: credits a day's interest to every account and writes each account's month-to-date
+// statement. The accounts are split into partitions of consecutive account numbers that a fork/join
+// pool works through in parallel. A partition is recorded as done in the state file once its interest
+// is durable and its statements are written, so a run that dies midway carries on where it stopped
+// when started again for the same date. Finished dates are appended to the completed file, and a run
+// for one of them credits nothing, so a retried or repeated run never pays a day's interest twice.
+final class EndOfDayJob {
+    // Settings; everything after --end-of-day is key=value, e.g. date=2026-10-16 rateBasisPoints=250
+    // threads=8 partitionSize=4096 maxOpenFiles=64
+    static final class Config {
+        LocalDate date = LocalDate.now();
+        // Annual rate; 100 basis points is 1%
+        int rateBasisPoints = 200;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int partitionSize = 4096;
+        // Statement files written at once, across all threads
+        int maxOpenFiles = 64;
+        File statementsDirectory = new File("statements");
+        File stateFile = new File("endofday.state");
+        File completedFile = new File("endofday.completed");
+
+        Config parse(String[] args, int from) {
+            for (int i = from; i < args.length; i++) {
+                int eq = args[i].indexOf('=');
+                if (eq < 0) {
+                    throw new IllegalArgumentException("Expected key=value: " + args[i]);
+                }
+                String key = args[i].substring(0, eq);
+                String value = args[i].substring(eq + 1);
+                switch (key) {
+                    case "date":
+                        date = LocalDate.parse(value);
+                        break;
+                    case "rateBasisPoints":
+                        rateBasisPoints = Integer.parseInt(value);
+                        break;
+                    case "threads":
+                        threads = Integer.parseInt(value);
+                        break;
+                    case "partitionSize":
+                        partitionSize = Integer.parseInt(value);
+                        break;
+                    case "maxOpenFiles":
+                        maxOpenFiles = Integer.parseInt(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown setting: " + key);
+                }
+            }
+            if (rateBasisPoints < 0 || rateBasisPoints > MAX_RATE_BASIS_POINTS || threads < 1 || partitionSize < 1
+                    || maxOpenFiles < 1) {
+                throw new IllegalArgumentException("Need 0 <= rateBasisPoints <= " + MAX_RATE_BASIS_POINTS
+                        + ", threads >= 1, partitionSize >= 1 and maxOpenFiles >= 1.");
+            }
+            return this;
+        }
+    }
+
+    static final class Result {
+        LocalDate date;
+        // Set when an earlier run already finished the date; nothing else is filled in then
+        boolean alreadyCompleted;
+        int partitions;
+        int partitionsAlreadyDone;
+        long accounts;
+        long credited;
+        long interest;
+        long elapsedNanos;
+
+        @Override
+        public String toString() {
+            if (alreadyCompleted) {
+                return "End of day " + date + " was already completed; nothing was credited.";
+            }
+            StringBuilder text = new StringBuilder(160).append("End of day ").append(date).append(": credited ");
+            Money.append(text, interest).append(" interest to ").append(credited).append(" accounts, wrote ")
+                    .append(accounts).append(" statements in ")
+                    .append(String.format("%.1f s", elapsedNanos / 1e9));
+            if (partitionsAlreadyDone > 0) {
+                text.append(" (").append(partitionsAlreadyDone).append(" of ").append(partitions)
+                        .append(" partitions done by the interrupted run)");
+            }
+            return text.toString();
+        }
+    }
+
+    // Caps dailyInterest's intermediate products well inside a long
+    private static final int MAX_RATE_BASIS_POINTS = 100_000;
+
+    private final LedgerService ledger;
+    private final Config config;
+    private final Charset charset = Charset.defaultCharset();
+    private final Semaphore openFiles;
+    private final LongAdder accounts = new LongAdder();
+    private final LongAdder credited = new LongAdder();
+    private final LongAdder interest = new LongAdder();
+    private final LongAdder alreadyDone = new LongAdder();
+
+    // Set up by run()
+    private State state;
+    private int[] numbers;
+    private long since;
+    private File statementsDirectory;
+    private long periodStart;
+
+    EndOfDayJob(LedgerService ledger, Config config) {
+        this.ledger = ledger;
+        this.config = config;
+        this.openFiles = new Semaphore(config.maxOpenFiles);
+    }
+
+    Result run() throws IOException {
+        long start = System.nanoTime();
+        Set<LocalDate> completed = completedDates(config.completedFile);
+        if (config.stateFile.exists()) {
+            state = State.load(config.stateFile);
+            if (completed.contains(state.date)) {
+                // Left behind by a run that stopped between recording its date and removing the state
+                state.close();
+                Files.delete(config.stateFile.toPath());
+                state = null;
+            }
+        }
+        if (completed.contains(config.date)) {
+            Result result = new Result();
+            result.date = config.date;
+            result.alreadyCompleted = true;
+            result.elapsedNanos = System.nanoTime() - start;
+            return result;
+        }
+        numbers = ledger.accountNumbers();
+        if (state != null) {
+            if (!state.date.equals(config.date)) {
+                state.close();
+                throw new IOException("The end-of-day run for " + state.date + " was interrupted; finish it with date="
+                        + state.date + " before running " + config.date + ".");
+            }
+            // Accounts credited by the interrupted run carry an interest entry from after it started
+            since = state.started;
+        } else {
+            state = State.create(config.stateFile, config.date, config.rateBasisPoints, System.currentTimeMillis(),
+                    bounds(numbers, config.partitionSize));
+            since = Long.MAX_VALUE;
+        }
+
+        YearMonth month = YearMonth.from(state.date);
+        periodStart = month.atDay(1).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        statementsDirectory = new File(config.statementsDirectory, month.toString());
+        Files.createDirectories(statementsDirectory.toPath());
+
+        ForkJoinPool pool = new ForkJoinPool(config.threads);
+        try {
+            if (state.bounds.length > 0) {
+                pool.invoke(new Partitions(0, state.bounds.length));
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            pool.shutdown();
+            state.close();
+        }
+        markCompleted(config.completedFile, state.date);
+        Files.delete(config.stateFile.toPath());
+
+        Result result = new Result();
+        result.date = state.date;
+        result.partitions = state.bounds.length;
+        result.partitionsAlreadyDone = alreadyDone.intValue();
+        result.accounts = accounts.sum();
+        result.credited = credited.sum();
+        result.interest = interest.sum();
+        result.elapsedNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    // endofday.completed: one finished date per line, each forced to disk before the state file goes.
+    // A line cut off by an interruption is ignored; its state file is still there to finish the run.
+    private static Set<LocalDate> completedDates(File file) throws IOException {
+        Set<LocalDate> dates = new HashSet<>();
+        if (!file.exists()) {
+            return dates;
+        }
+        String text = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        for (String line : text.substring(0, text.lastIndexOf('\n') + 1).split("\n")) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            try {
+                dates.add(LocalDate.parse(line));
+            } catch (DateTimeParseException e) {
+                throw new IOException("Unreadable end-of-day history in " + file + ": " + line, e);
+            }
+        }
+        return dates;
+    }
+
+    private static void markCompleted(File file, LocalDate date) throws IOException {
+        try (FileChannel out = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND)) {
+            State.writeFully(out, date + "\n");
+            out.force(false);
+        }
+    }
+
+    // First account number of each partition; the first partition starts at 1 and the last runs to the
+    // highest possible number, so accounts created later still fall in exactly one partition
+    private static int[] bounds(int[] numbers, int partitionSize) {
+        int[] bounds = new int[(numbers.length + partitionSize - 1) / partitionSize];
+        for (int i = 0; i < bounds.length; i++) {
+            bounds[i] = i == 0 ? 1 : numbers[i * partitionSize];
+        }
+        return bounds;
+    }
+
+    @SuppressWarnings("serial")
+    private final class Partitions extends RecursiveAction {
+        private final int from;
+        private final int to;
+
+        Partitions(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                try {
+                    runPartition(from);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new Partitions(from, middle), new Partitions(middle, to));
+        }
+    }
+
+    private void runPartition(int partition) throws IOException {
+        if (state.isDone(partition)) {
+            alreadyDone.increment();
+            return;
+        }
+        int first = lowerBound(numbers, state.bounds[partition]);
+        int end = partition + 1 < state.bounds.length ? lowerBound(numbers, state.bounds[partition + 1])
+                : numbers.length;
+        int daysInYear = state.date.lengthOfYear();
+        long[] accrued = new long[1];
+        long last = 0;
+        for (int i = first; i < end; i++) {
+            LedgerService.Posting posting = ledger.postInterest(numbers[i], since, balance -> {
+                accrued[0] = dailyInterest(balance, state.rateBasisPoints, daysInYear);
+                return accrued[0];
+            });
+            if (posting != null) {
+                last = Math.max(last, posting.sequence);
+                credited.increment();
+                interest.add(accrued[0]);
+            }
+        }
+        if (last > 0) {
+            ledger.commit(last);
+        }
+        for (int i = first; i < end; i++) {
+            writeStatement(numbers[i]);
+        }
+        accounts.add(end - first);
+        state.markDone(partition);
+    }
+
+    private static int lowerBound(int[] sorted, int key) {
+        int index = Arrays.binarySearch(sorted, key);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    // One day's interest, rounded down: balance * rate / (10000 * daysInYear), split so that no
+    // intermediate product overflows
+    static long dailyInterest(long balance, int rateBasisPoints, int daysInYear) {
+        if (balance <= 0) {
+            return 0;
+        }
+        long divisor = 10_000L * daysInYear;
+        return balance / divisor * rateBasisPoints + balance % divisor * rateBasisPoints / divisor;
+    }
+
+    // The entries come from one view of the account, read without its lock, and are written through a
+    // temporary file so a statement left behind by an interrupted run is replaced whole
+    private void writeStatement(int accountNumber) throws IOException {
+        List<String> lines = new ArrayList<>();
+        long[] balances = new long[2];
+        BankAccount.View account = ledger.view(accountNumber);
+        TransactionLog.View history = account.history;
+        int first = history.size();
+        while (first > 0 && history.time(first - 1) >= periodStart) {
+            first--;
+        }
+        long change = 0;
+        for (int i = first; i < history.size(); i++) {
+            change += signedAmount(history, i);
+            lines.add(history.format(i));
+        }
+        balances[1] = account.balance;
+        balances[0] = balances[1] - change;
+        String holder = account.holder;
+
+        File file = new File(statementsDirectory, "account_" + accountNumber + ".txt");
+        File temp = new File(statementsDirectory, file.getName() + ".tmp");
+        openFiles.acquireUninterruptibly();
+        try (BufferedWriter out = Files.newBufferedWriter(temp.toPath(), charset)) {
+            out.write("Monthly Statement for Account #" + accountNumber);
+            out.newLine();
+            out.write("Account Holder: " + holder);
+            out.newLine();
+            out.write("Period: " + YearMonth.from(state.date).atDay(1) + " to " + state.date);
+            out.newLine();
+            out.write(Money.append(new StringBuilder("Opening Balance: "), balances[0]).toString());
+            out.newLine();
+            out.newLine();
+            out.write("Transactions:");
+            out.newLine();
+            for (String line : lines) {
+                out.write(line);
+                out.newLine();
+            }
+            out.newLine();
+            out.write(Money.append(new StringBuilder("Closing Balance: "), balances[1]).toString());
+            out.newLine();
+        } finally {
+            openFiles.release();
+        }
+        Metrics.STATEMENT_BYTES.add(temp.length());
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static long signedAmount(TransactionLog.View history, int index) {
+        switch (history.type(index)) {
+            case TransactionLog.DEPOSIT:
+            case TransactionLog.TRANSFER_IN:
+            case TransactionLog.INTEREST:
+                return history.amount(index);
+            case TransactionLog.WITHDRAW:
+            case TransactionLog.TRANSFER_OUT:
+                return -history.amount(index);
+            default:
+                return 0;
+        }
+    }
+
+    // endofday.state: a header of date, rate, start time and partition bounds, then a "done=" line per
+    // finished partition, each forced to disk before the next partition can be recorded
+    private static final class State implements AutoCloseable {
+        final LocalDate date;
+        final int rateBasisPoints;
+        final long started;
+        final int[] bounds;
+        private final BitSet done;
+        private final FileChannel channel;
+
+        private State(LocalDate date, int rateBasisPoints, long started, int[] bounds, BitSet done,
+                      FileChannel channel) {
+            this.date = date;
+            this.rateBasisPoints = rateBasisPoints;
+            this.started = started;
+            this.bounds = bounds;
+            this.done = done;
+            this.channel = channel;
+        }
+
+        static State create(File file, LocalDate date, int rateBasisPoints, long started, int[] bounds)
+                throws IOException {
+            StringBuilder header = new StringBuilder(64 + bounds.length * 8)
+                    .append("date=").append(date).append('\n')
+                    .append("rateBasisPoints=").append(rateBasisPoints).append('\n')
+                    .append("started=").append(started).append('\n')
+                    .append("bounds=");
+            for (int i = 0; i < bounds.length; i++) {
+                header.append(i == 0 ? "" : ",").append(bounds[i]);
+            }
+            header.append('\n');
+            // The header appears whole or not at all
+            File temp = new File(file.getPath() + ".tmp");
+            try (FileChannel out = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                writeFully(out, header.toString());
+                out.force(true);
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            return new State(date, rateBasisPoints, started, bounds, new BitSet(),
+                    FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND));
+        }
+
+        static State load(File file) throws IOException {
+            String text = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+            // A line cut off by the interruption is dropped; its partition simply runs again
+            int complete = text.lastIndexOf('\n') + 1;
+            String[] lines = text.substring(0, complete).split("\n");
+            if (lines.length < 4) {
+                throw new IOException("Unreadable end-of-day state in " + file);
+            }
+            try {
+                LocalDate date = LocalDate.parse(value(lines[0], "date"));
+                int rate = Integer.parseInt(value(lines[1], "rateBasisPoints"));
+                long started = Long.parseLong(value(lines[2], "started"));
+                String boundsText = value(lines[3], "bounds");
+                int[] bounds = boundsText.isEmpty() ? new int[0]
+                        : Arrays.stream(boundsText.split(",")).mapToInt(Integer::parseInt).toArray();
+                BitSet done = new BitSet(bounds.length);
+                for (int i = 4; i < lines.length; i++) {
+                    done.set(Integer.parseInt(value(lines[i], "done")));
+                }
+                FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE);
+                channel.truncate(complete);
+                channel.position(complete);
+                return new State(date, rate, started, bounds, done, channel);
+            } catch (RuntimeException e) {
+                throw new IOException("Unreadable end-of-day state in " + file + ": " + e.getMessage(), e);
+            }
+        }
+
+        private static String value(String line, String key) {
+            if (!line.startsWith(key + "=")) {
+                throw new IllegalArgumentException("Expected " + key + " in: " + line);
+            }
+            return line.substring(key.length() + 1);
+        }
+
+        private static void writeFully(FileChannel channel, String text) throws IOException {
+            ByteBuffer buf = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+        }
+
+        synchronized boolean isDone(int partition) {
+            return done.get(partition);
+        }
+
+        synchronized void markDone(int partition) throws IOException {
+            writeFully(channel, "done=" + partition + "\n");
+            channel.force(false);
+            done.set(partition);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
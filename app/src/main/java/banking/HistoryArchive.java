@@ -0,0 +1,335 @@
+package banking;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Cold tier of the account histories. Checkpoints seal each account's oldest entries out of its live
+// history into immutable segment files, archive/segment-N.dat, at most one new file per checkpoint.
+// A segment is a run of chunks, each framed as [length][raw length][crc32][deflated columns] with times
+// and balances delta-encoded. The snapshot keeps only the live entries plus each account's chunk list,
+// so its size stays flat however long the histories grow. Chunks are decoded one at a time on demand.
+final class HistoryArchive implements AutoCloseable {
+    // Entries per chunk at most, so decoding one never needs much heap
+    static final int CHUNK_ENTRIES = 16 * 1024;
+
+    private static final int FRAME_HEADER = 12;
+    private static final String PREFIX = "segment-";
+    private static final String SUFFIX = ".dat";
+
+    // Decoded entries [first, first + count) of one history
+    static final class Chunk {
+        final int first;
+        final int count;
+        final long[] times;
+        final long[] amounts;
+        final long[] balances;
+        final int[] counterparties;
+        final byte[] types;
+        // Verbatim legacy notes by history index
+        Map<Integer, String> notes;
+
+        Chunk(int first, int count) {
+            this.first = first;
+            this.count = count;
+            times = new long[count];
+            amounts = new long[count];
+            balances = new long[count];
+            counterparties = new int[count];
+            types = new byte[count];
+        }
+
+        void addNote(int index, String text) {
+            if (notes == null) {
+                notes = new HashMap<>();
+            }
+            notes.put(index, text);
+        }
+    }
+
+    private static final class Sealed {
+        final TransactionLog history;
+        final int end;
+        final long offset;
+        final int length;
+
+        Sealed(TransactionLog history, int end, long offset, int length) {
+            this.history = history;
+            this.end = end;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private final File directory;
+    private final int maxOpenFiles;
+    private final LinkedHashMap<Long, FileChannel> open;
+    // Ids only grow, so a segment left behind by a failed checkpoint is never overwritten
+    private long nextId;
+
+    HistoryArchive(File directory, int maxOpenFiles) {
+        this.directory = directory;
+        this.maxOpenFiles = maxOpenFiles;
+        this.open = new LinkedHashMap<Long, FileChannel>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, FileChannel> eldest) {
+                if (size() > HistoryArchive.this.maxOpenFiles) {
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+        String[] names = directory.list();
+        if (names != null) {
+            for (String name : names) {
+                if (name.startsWith(PREFIX) && name.endsWith(SUFFIX)) {
+                    try {
+                        long id = Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+                        nextId = Math.max(nextId, id + 1);
+                    } catch (NumberFormatException e) {
+                        // Not one of ours
+                    }
+                }
+            }
+        }
+    }
+
+    File fileFor(long id) {
+        return new File(directory, PREFIX + id + SUFFIX);
+    }
+
+    // Seals every history with more than 2 * window live entries down to its newest window entries and
+    // returns the number of entries sealed. The segment is synced before any history points into it.
+    // Called by checkpoint with every writer excluded; a window of 0 or less turns archiving off.
+    long seal(AccountStore accounts, int window) throws IOException {
+        if (window <= 0) {
+            return 0;
+        }
+        List<Sealed> sealed = new ArrayList<>();
+        long entries = 0;
+        long id = nextId;
+        File target = fileFor(id);
+        File tmp = new File(target.getPath() + ".tmp");
+        FileChannel channel = null;
+        try {
+            long position = 0;
+            for (BankAccount account : accounts) {
+                TransactionLog history = account.getTransactionLog();
+                if (history.size() - history.archived() <= 2L * window) {
+                    continue;
+                }
+                if (channel == null) {
+                    Files.createDirectories(directory.toPath());
+                    channel = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                            StandardOpenOption.TRUNCATE_EXISTING);
+                }
+                int to = history.size() - window;
+                for (int from = history.archived(); from < to; from += CHUNK_ENTRIES) {
+                    int end = Math.min(to, from + CHUNK_ENTRIES);
+                    ByteBuffer frame = encode(history.copy(from, end));
+                    int length = frame.remaining();
+                    while (frame.hasRemaining()) {
+                        position += channel.write(frame, position);
+                    }
+                    sealed.add(new Sealed(history, end, position - length, length));
+                }
+                entries += to - history.archived();
+            }
+            if (channel == null) {
+                return 0;
+            }
+            channel.force(true);
+            Metrics.ARCHIVE_BYTES.add(position);
+        } finally {
+            if (channel != null) {
+                channel.close();
+            }
+        }
+        Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        SnapshotFile.syncDirectory(directory);
+        nextId = id + 1;
+        for (Sealed chunk : sealed) {
+            chunk.history.archiveTo(chunk.end, this, id, chunk.offset, chunk.length);
+        }
+        return entries;
+    }
+
+    // Reads, checks and decodes the chunk holding entries [first, first + count)
+    Chunk read(long id, long offset, int length, int first, int count) throws IOException {
+        ByteBuffer frame = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        synchronized (this) {
+            FileChannel channel = open.get(id);
+            if (channel == null) {
+                channel = FileChannel.open(fileFor(id).toPath(), StandardOpenOption.READ);
+                open.put(id, channel);
+            }
+            while (frame.hasRemaining()) {
+                if (channel.read(frame, offset + frame.position()) < 0) {
+                    throw new IOException("Truncated chunk at " + offset + " in " + fileFor(id));
+                }
+            }
+        }
+        frame.flip();
+        CRC32 crc = new CRC32();
+        crc.update(frame.array(), FRAME_HEADER, length - FRAME_HEADER);
+        if (frame.getInt(0) != length - FRAME_HEADER || frame.getInt(8) != (int) crc.getValue()) {
+            throw new IOException("Corrupt chunk at " + offset + " in " + fileFor(id));
+        }
+        byte[] raw = new byte[frame.getInt(4)];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(frame.array(), FRAME_HEADER, length - FRAME_HEADER);
+            int n = 0;
+            while (n < raw.length && !inflater.finished()) {
+                int inflated = inflater.inflate(raw, n, raw.length - n);
+                if (inflated == 0 && inflater.needsInput()) {
+                    break;
+                }
+                n += inflated;
+            }
+            if (n != raw.length) {
+                throw new IOException("Corrupt chunk at " + offset + " in " + fileFor(id));
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt chunk at " + offset + " in " + fileFor(id) + ": " + e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+        Chunk chunk = decode(ByteBuffer.wrap(raw).order(ByteOrder.LITTLE_ENDIAN), first);
+        if (chunk.count != count) {
+            throw new IOException("Chunk at " + offset + " in " + fileFor(id) + " has " + chunk.count
+                    + " entries, expected " + count);
+        }
+        return chunk;
+    }
+
+    // Columns as [count][time deltas][amounts][balance deltas][counterparties][types][notes], deflated and framed
+    static ByteBuffer encode(Chunk chunk) {
+        int count = chunk.count;
+        List<byte[]> noteTexts = new ArrayList<>();
+        int notesLength = 4;
+        if (chunk.notes != null) {
+            for (String text : chunk.notes.values()) {
+                byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+                noteTexts.add(bytes);
+                notesLength += 8 + bytes.length;
+            }
+        }
+        ByteBuffer raw = ByteBuffer.allocate(4 + count * 29 + notesLength).order(ByteOrder.LITTLE_ENDIAN);
+        raw.putInt(count);
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            raw.putLong(chunk.times[i] - previous);
+            previous = chunk.times[i];
+        }
+        for (int i = 0; i < count; i++) {
+            raw.putLong(chunk.amounts[i]);
+        }
+        previous = 0;
+        for (int i = 0; i < count; i++) {
+            raw.putLong(chunk.balances[i] - previous);
+            previous = chunk.balances[i];
+        }
+        for (int i = 0; i < count; i++) {
+            raw.putInt(chunk.counterparties[i]);
+        }
+        raw.put(chunk.types);
+        raw.putInt(noteTexts.size());
+        if (chunk.notes != null) {
+            int n = 0;
+            for (Map.Entry<Integer, String> note : chunk.notes.entrySet()) {
+                byte[] bytes = noteTexts.get(n++);
+                raw.putInt(note.getKey() - chunk.first);
+                raw.putInt(bytes.length);
+                raw.put(bytes);
+            }
+        }
+
+        Deflater deflater = new Deflater();
+        byte[] out = new byte[FRAME_HEADER + raw.capacity() / 2 + 64];
+        int n = FRAME_HEADER;
+        try {
+            deflater.setInput(raw.array());
+            deflater.finish();
+            while (!deflater.finished()) {
+                if (n == out.length) {
+                    out = Arrays.copyOf(out, out.length * 2);
+                }
+                n += deflater.deflate(out, n, out.length - n);
+            }
+        } finally {
+            deflater.end();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(out, FRAME_HEADER, n - FRAME_HEADER);
+        ByteBuffer frame = ByteBuffer.wrap(out, 0, n).order(ByteOrder.LITTLE_ENDIAN);
+        frame.putInt(0, n - FRAME_HEADER);
+        frame.putInt(4, raw.capacity());
+        frame.putInt(8, (int) crc.getValue());
+        return frame;
+    }
+
+    private static Chunk decode(ByteBuffer raw, int first) {
+        Chunk chunk = new Chunk(first, raw.getInt());
+        long previous = 0;
+        for (int i = 0; i < chunk.count; i++) {
+            previous += raw.getLong();
+            chunk.times[i] = previous;
+        }
+        for (int i = 0; i < chunk.count; i++) {
+            chunk.amounts[i] = raw.getLong();
+        }
+        previous = 0;
+        for (int i = 0; i < chunk.count; i++) {
+            previous += raw.getLong();
+            chunk.balances[i] = previous;
+        }
+        for (int i = 0; i < chunk.count; i++) {
+            chunk.counterparties[i] = raw.getInt();
+        }
+        raw.get(chunk.types);
+        int noteCount = raw.getInt();
+        for (int i = 0; i < noteCount; i++) {
+            int index = raw.getInt();
+            byte[] text = new byte[raw.getInt()];
+            raw.get(text);
+            chunk.addNote(first + index, new String(text, StandardCharsets.UTF_8));
+        }
+        return chunk;
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Opened read-only, nothing to lose
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        for (Iterator<FileChannel> it = open.values().iterator(); it.hasNext(); ) {
+            closeQuietly(it.next());
+            it.remove();
+        }
+    }
+}
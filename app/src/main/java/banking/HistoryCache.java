@@ -0,0 +1,54 @@
+package banking;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Least-recently-used set of accounts whose snapshot history is paged into memory.
+// Bounded by the total number of entries held rather than the number of accounts.
+final class HistoryCache {
+    private final long capacity;
+    // Account number -> entries held when last touched, in access order
+    private final LinkedHashMap<Integer, Integer> loaded = new LinkedHashMap<>(64, 0.75f, true);
+    private long entries;
+
+    HistoryCache(long capacity) {
+        this.capacity = capacity;
+    }
+
+    // Records an access and returns the accounts that should give their history back;
+    // a weight of zero means the account holds nothing that can be evicted
+    synchronized List<Integer> touch(int accountNumber, int weight) {
+        Integer previous = weight > 0 ? loaded.put(accountNumber, weight) : loaded.remove(accountNumber);
+        if (previous != null) {
+            entries -= previous;
+        }
+        entries += weight;
+        if (entries <= capacity) {
+            return List.of();
+        }
+        List<Integer> victims = new ArrayList<>();
+        Iterator<Map.Entry<Integer, Integer>> it = loaded.entrySet().iterator();
+        while (entries > capacity && it.hasNext()) {
+            Map.Entry<Integer, Integer> eldest = it.next();
+            if (eldest.getKey() == accountNumber) {
+                continue;
+            }
+            entries -= eldest.getValue();
+            victims.add(eldest.getKey());
+            it.remove();
+        }
+        return victims;
+    }
+
+    // A victim that was touched again before it could be evicted stays loaded
+    synchronized boolean contains(int accountNumber) {
+        return loaded.containsKey(accountNumber);
+    }
+
+    synchronized long entries() {
+        return entries;
+    }
+}
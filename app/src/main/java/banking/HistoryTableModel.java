@@ -0,0 +1,161 @@
+package banking;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.swing.table.AbstractTableModel;
+
+// Table model over a point-in-time view of one account's history that copies rows out a page at a time
+// as the table scrolls, so only the visible part of a long history is ever turned into cells. Reading the
+// view takes no lock, so scrolling never holds up postings to the account.
+// Rows map straight onto history entries, or through a list of matching entries when filtered.
+@SuppressWarnings("serial")
+final class HistoryTableModel extends AbstractTableModel {
+    static final byte ALL_TYPES = -1;
+
+    private static final String[] COLUMNS = {"#", "Date", "Type", "Amount", "Balance", "Counterparty"};
+    private static final int PAGE_SIZE = 256;
+    private static final int MAX_PAGES = 64;
+    // Entries examined between checks for cancellation while filtering
+    private static final int SCAN_CHUNK = 64 * 1024;
+
+    private static final class Page {
+        final int[] entries;
+        final long[] times;
+        final byte[] types;
+        final long[] amounts;
+        final long[] balances;
+        final int[] counterparties;
+        final String[] notes;
+
+        Page(int length) {
+            entries = new int[length];
+            times = new long[length];
+            types = new byte[length];
+            amounts = new long[length];
+            balances = new long[length];
+            counterparties = new int[length];
+            notes = new String[length];
+        }
+    }
+
+    private static final class Matches {
+        int[] entries = new int[1024];
+        int size;
+
+        void add(int entry) {
+            if (size == entries.length) {
+                entries = Arrays.copyOf(entries, size * 2);
+            }
+            entries[size++] = entry;
+        }
+    }
+
+    private final Map<Integer, Page> pages = new LinkedHashMap<Integer, Page>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Page> eldest) {
+            return size() > MAX_PAGES;
+        }
+    };
+    private TransactionLog.View history;
+    private int rowCount;
+    // Matching entry indexes, or null to show every entry of the view
+    private int[] matches;
+
+    // Shows every entry of the view, or only those listed in matches
+    void show(TransactionLog.View history, int[] matches) {
+        this.history = history;
+        this.matches = matches;
+        this.rowCount = matches == null ? history.size() : matches.length;
+        pages.clear();
+        fireTableDataChanged();
+    }
+
+    void clear() {
+        history = null;
+        matches = null;
+        rowCount = 0;
+        pages.clear();
+        fireTableDataChanged();
+    }
+
+    // Finds the entries of the view that fall in [fromTime, toTime) and have the given type. Runs off the EDT.
+    static int[] scan(TransactionLog.View history, long fromTime, long toTime, byte type) throws IOException {
+        Matches found = new Matches();
+        int entryCount = history.size();
+        for (int i = 0; i < entryCount; i++) {
+            if (i % SCAN_CHUNK == 0 && Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("History filter cancelled");
+            }
+            long time = history.time(i);
+            if (time >= fromTime && time < toTime && (type == ALL_TYPES || history.type(i) == type)) {
+                found.add(i);
+            }
+        }
+        return Arrays.copyOf(found.entries, found.size);
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Page page = page(row / PAGE_SIZE);
+        int i = row % PAGE_SIZE;
+        boolean note = page.types[i] == TransactionLog.NOTE;
+        switch (column) {
+            case 0:
+                return page.entries[i] + 1;
+            case 1:
+                return note ? page.notes[i] : TransactionLog.timestamp(page.times[i]);
+            case 2:
+                return TransactionLog.typeName(page.types[i]);
+            case 3:
+                return note ? "" : Money.format(page.amounts[i]);
+            case 4:
+                return note || page.types[i] == TransactionLog.CREATED ? "" : Money.format(page.balances[i]);
+            default:
+                return page.counterparties[i] == 0 ? "" : "#" + page.counterparties[i];
+        }
+    }
+
+    private Page page(int index) {
+        Page page = pages.get(index);
+        if (page == null) {
+            page = load(index * PAGE_SIZE, Math.min(PAGE_SIZE, rowCount - index * PAGE_SIZE));
+            pages.put(index, page);
+        }
+        return page;
+    }
+
+    private Page load(int firstRow, int length) {
+        Page page = new Page(length);
+        for (int i = 0; i < length; i++) {
+            int entry = matches == null ? firstRow + i : matches[firstRow + i];
+            page.entries[i] = entry;
+            page.times[i] = history.time(entry);
+            page.types[i] = history.type(entry);
+            page.amounts[i] = history.amount(entry);
+            page.balances[i] = history.balance(entry);
+            page.counterparties[i] = history.counterparty(entry);
+            if (page.types[i] == TransactionLog.NOTE) {
+                page.notes[i] = history.format(entry);
+            }
+        }
+        return page;
+    }
+}
@@ -0,0 +1,751 @@
+package banking;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongUnaryOperator;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+
+// Headless account service that any number of threads may call at once.
+// Lookups are optimistic reads of the account table, each account is guarded by one of a fixed set
+// of striped locks, and every change is journaled inside its stripe so replay sees per-account order.
+class LedgerService implements AutoCloseable {
+    // Callback run while the account's stripe lock is held
+    interface AccountCallback<T> {
+        T apply(BankAccount account) throws IOException;
+    }
+
+    // Outcome of an applied and journaled operation
+    static final class Posting {
+        final int accountNumber;
+        final long balance;
+        final long sequence;
+        // Sequence of its change event, 0 when the ledger publishes to no feed
+        final long event;
+
+        Posting(int accountNumber, long balance, long sequence, long event) {
+            this.accountNumber = accountNumber;
+            this.balance = balance;
+            this.sequence = sequence;
+            this.event = event;
+        }
+    }
+
+    // One leg of a transfer batch
+    static final class Transfer {
+        final int fromAccount;
+        final int toAccount;
+        final long amount;
+
+        Transfer(int fromAccount, int toAccount, long amount) {
+            this.fromAccount = fromAccount;
+            this.toAccount = toAccount;
+            this.amount = amount;
+        }
+    }
+
+    private static final int ARCHIVE_OPEN_FILES = 16;
+    private static final int READ_ONLY_ATTEMPTS = 5;
+
+    private final File snapshotFile;
+    private final AccountJournal journal;
+    private final long checkpointBytes;
+    private final AccountStore accounts;
+    private final StampedLock tableLock = new StampedLock();
+    private final ReentrantLock[] stripes;
+    private final int stripeMask;
+    private final AtomicBoolean checkpointing = new AtomicBoolean();
+    private final HistoryCache histories;
+    private final HistoryArchive archive;
+    // Live entries kept per history; checkpoints seal older ones into the archive once there are twice as many
+    private final int historyWindow;
+    // Mapped snapshot that unloaded histories are paged in from; replaced by each checkpoint
+    private SnapshotFile snapshot;
+    // Built by the first search with every writer excluded; until then postings skip index upkeep
+    private volatile AccountIndex index;
+    // Where every balance change is published once applied; none until publishTo is called
+    private volatile ChangeFeed feed;
+    // Bank-wide figures, updated alongside each change under the same locks
+    private final Aggregates aggregates;
+
+    private LedgerService(File snapshotFile, SnapshotFile snapshot, AccountStore accounts, Aggregates aggregates,
+                          AccountJournal journal, long checkpointBytes, long historyCacheEntries,
+                          HistoryArchive archive, int historyWindow) {
+        this.snapshotFile = snapshotFile;
+        this.snapshot = snapshot;
+        this.accounts = accounts;
+        this.aggregates = aggregates;
+        this.journal = journal;
+        this.checkpointBytes = checkpointBytes;
+        this.histories = new HistoryCache(historyCacheEntries);
+        this.archive = archive;
+        this.historyWindow = historyWindow;
+        int count = Integer.highestOneBit(Math.max(16, Runtime.getRuntime().availableProcessors() * 16) * 2 - 1);
+        this.stripes = new ReentrantLock[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.stripeMask = count - 1;
+    }
+
+    // Rebuilds state as the snapshot plus every journal record logged after it.
+    // Account headers are loaded eagerly; at most historyCacheEntries snapshot history entries are kept
+    // in memory, least recently used accounts giving theirs back first. Histories beyond twice
+    // historyWindow entries are sealed into the archive directory next to the snapshot at each
+    // checkpoint (0 keeps everything in the snapshot).
+    public static LedgerService open(File snapshotFile, File journalFile, AccountJournal.SyncMode syncMode,
+                                     long groupCommitMicros, long checkpointBytes,
+                                     long historyCacheEntries, int historyWindow) throws IOException {
+        long start = System.nanoTime();
+        // Opened first: its lock keeps every other process away from the snapshot as well
+        AccountJournal journal = new AccountJournal(journalFile, syncMode, groupCommitMicros);
+        LedgerService ledger = load(snapshotFile, journal, checkpointBytes, historyCacheEntries, historyWindow);
+        try {
+            SnapshotFile.removeStale(snapshotFile);
+        } catch (IOException e) {
+            ledger.close();
+            throw e;
+        }
+        if (snapshotFile.exists() && SnapshotFile.current(snapshotFile).equals(snapshotFile)) {
+            // One-time migration to the current format and to generation files; the old file is kept
+            // alongside as accounts.dat.legacy, and the checkpoint deletes accounts.dat itself
+            Files.copy(snapshotFile.toPath(), new File(snapshotFile.getPath() + ".legacy").toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+            ledger.checkpoint();
+        } else if (journal.size() >= checkpointBytes) {
+            ledger.checkpoint();
+        }
+        Metrics.LOAD_ACCOUNTS.stop(start);
+        return ledger;
+    }
+
+    // The same state as open() without taking the journal lock or writing anything, so reports can run
+    // next to a live GUI or server. Postings and checkpoints are refused. Loading starts over if the
+    // owning process checkpoints meanwhile, since its journal may then be emptied under us and the
+    // generation we were reading deleted.
+    public static LedgerService openReadOnly(File snapshotFile, File journalFile, long historyCacheEntries)
+            throws IOException {
+        long start = System.nanoTime();
+        File pointer = SnapshotFile.pointerFor(snapshotFile);
+        for (int attempt = 0; attempt < READ_ONLY_ATTEMPTS; attempt++) {
+            Object before = Arrays.asList(fileVersion(pointer), fileVersion(snapshotFile));
+            LedgerService ledger;
+            try {
+                ledger = load(snapshotFile, new AccountJournal(journalFile), Long.MAX_VALUE, historyCacheEntries, 0);
+            } catch (NoSuchFileException e) {
+                continue;
+            }
+            if (Objects.equals(before, Arrays.asList(fileVersion(pointer), fileVersion(snapshotFile)))) {
+                Metrics.LOAD_ACCOUNTS.stop(start);
+                return ledger;
+            }
+            ledger.close();
+        }
+        throw new IOException(snapshotFile + " kept changing while it was read; try again.");
+    }
+
+    private static Object fileVersion(File file) throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
+        BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        return Arrays.asList(attributes.fileKey(), attributes.lastModifiedTime(), attributes.size());
+    }
+
+    // Snapshot plus journal replay; closes the journal if either cannot be read
+    private static LedgerService load(File snapshotFile, AccountJournal journal, long checkpointBytes,
+                                      long historyCacheEntries, int historyWindow) throws IOException {
+        AccountStore accounts = new AccountStore();
+        SnapshotFile snapshot = null;
+        long snapshotSequence = 0;
+        boolean legacy = false;
+        HistoryArchive archive = new HistoryArchive(
+                new File(snapshotFile.getAbsoluteFile().getParentFile(), "archive"), ARCHIVE_OPEN_FILES);
+        Aggregates aggregates = new Aggregates();
+        try {
+            File current = SnapshotFile.current(snapshotFile);
+            if (current.exists()) {
+                if (SnapshotFile.isSnapshot(current)) {
+                    snapshot = SnapshotFile.open(current, accounts, archive);
+                    snapshotSequence = snapshot.sequence();
+                } else {
+                    legacy = true;
+                    try (ObjectInputStream ois = new LegacyObjectInputStream(new BufferedInputStream(new FileInputStream(current)))) {
+                        accounts = readStore(ois.readObject());
+                        try {
+                            snapshotSequence = ois.readLong();
+                        } catch (EOFException e) {
+                            // Snapshot written before the journal existed
+                        }
+                    } catch (ClassNotFoundException e) {
+                        throw new IOException("Unreadable accounts file: " + e.getMessage(), e);
+                    }
+                }
+            }
+            if (snapshot != null) {
+                snapshot.readVolumes(aggregates);
+            }
+            journal.replay(accounts, snapshotSequence, aggregates);
+            if (legacy || snapshot != null && snapshot.version() < 5) {
+                // Written before daily volume was kept; the histories are the only record of it
+                aggregates.backfillVolumes(accounts);
+            }
+        } catch (IOException | RuntimeException e) {
+            if (snapshot != null) {
+                snapshot.close();
+            }
+            try {
+                journal.close();
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+        aggregates.countBalances(accounts);
+        return new LedgerService(snapshotFile, snapshot, accounts, aggregates, journal,
+                checkpointBytes, historyCacheEntries, archive, historyWindow);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static AccountStore readStore(Object data) {
+        if (data instanceof AccountStore) {
+            return (AccountStore) data;
+        }
+        // accounts.dat written before the hash-indexed store was introduced
+        return AccountStore.fromList((ArrayList<BankAccount>) data);
+    }
+
+    public BankAccount find(int accountNumber) {
+        long start = System.nanoTime();
+        BankAccount account = lookup(accountNumber);
+        Metrics.FIND_ACCOUNT.stop(start);
+        return account;
+    }
+
+    private BankAccount lookup(int accountNumber) {
+        long stamp = tableLock.tryOptimisticRead();
+        BankAccount account = accounts.get(accountNumber);
+        if (!tableLock.validate(stamp)) {
+            stamp = tableLock.readLock();
+            try {
+                account = accounts.get(accountNumber);
+            } finally {
+                tableLock.unlockRead(stamp);
+            }
+        }
+        return account;
+    }
+
+    public int size() {
+        long stamp = tableLock.readLock();
+        try {
+            return accounts.size();
+        } finally {
+            tableLock.unlockRead(stamp);
+        }
+    }
+
+    public BankAccount createAccount(int accountNumber, String holder) throws IOException {
+        Posting posting = postCreate(accountNumber, holder);
+        commit(posting.sequence);
+        return find(accountNumber);
+    }
+
+    // Returns the balance after the deposit
+    public long deposit(int accountNumber, long amount) throws IOException {
+        Posting posting = postDeposit(accountNumber, amount);
+        commit(posting.sequence);
+        return posting.balance;
+    }
+
+    // Returns the balance after the withdrawal
+    public long withdraw(int accountNumber, long amount) throws IOException {
+        Posting posting = postWithdraw(accountNumber, amount);
+        commit(posting.sequence);
+        return posting.balance;
+    }
+
+    // Returns the source account's balance after the transfer
+    public long transfer(int fromAccount, int toAccount, long amount) throws IOException {
+        List<Posting> postings = postTransfer(fromAccount, toAccount, amount);
+        commit(postings.get(0).sequence);
+        for (Posting posting : postings) {
+            if (posting.accountNumber == fromAccount) {
+                return posting.balance;
+            }
+        }
+        throw new IllegalStateException("No posting for account #" + fromAccount);
+    }
+
+    // Publishes every posting from now on to the feed, whose consumers take over the side effects.
+    // Set before the first posting that should reach them.
+    public void publishTo(ChangeFeed feed) {
+        this.feed = feed;
+    }
+
+    // The post* variants apply and journal an operation but return before it is durable;
+    // pass the posting's sequence to commit() or hand it to a PersistencePipeline.
+    // Room in the feed is reserved before any lock is taken and published under the account's lock.
+
+    public Posting postCreate(int accountNumber, String holder) {
+        writable();
+        if (accountNumber <= 0) {
+            throw new IllegalArgumentException("Account number must be a positive number.");
+        }
+        if (holder == null || holder.trim().isEmpty()) {
+            throw new IllegalArgumentException("Account Holder name cannot be empty.");
+        }
+        long now = System.currentTimeMillis();
+        BankAccount account = new BankAccount(accountNumber, holder, now);
+        ChangeFeed events = reserve(1);
+        Posting posting = null;
+        long stamp = tableLock.writeLock();
+        try {
+            if (!accounts.add(account)) {
+                throw new IllegalArgumentException("Account number already exists.");
+            }
+            AccountIndex current = index;
+            if (current != null) {
+                current.add(account);
+            }
+            aggregates.opened(now);
+            posting = post(events, AccountJournal.CREATE, accountNumber, 0, 0,
+                    journal.logCreate(accountNumber, holder, now), now);
+            return posting;
+        } finally {
+            tableLock.unlockWrite(stamp);
+            unreserve(events, posting == null ? 1 : 0);
+        }
+    }
+
+    public Posting postDeposit(int accountNumber, long amount) {
+        writable();
+        long start = System.nanoTime();
+        BankAccount account = require(accountNumber);
+        ReentrantLock lock = lockFor(accountNumber);
+        ChangeFeed events = reserve(1);
+        Posting posting = null;
+        lock.lock();
+        try {
+            long now = System.currentTimeMillis();
+            long before = account.getBalance();
+            account.deposit(amount, now);
+            balanceChanged(accountNumber, before, account.getBalance());
+            aggregates.record(TransactionLog.DEPOSIT, amount, now);
+            posting = post(events, AccountJournal.DEPOSIT, accountNumber, amount, account.getBalance(),
+                    journal.logDeposit(accountNumber, amount, now), now);
+            return posting;
+        } finally {
+            lock.unlock();
+            unreserve(events, posting == null ? 1 : 0);
+            Metrics.DEPOSIT.stop(start);
+        }
+    }
+
+    public Posting postWithdraw(int accountNumber, long amount) {
+        writable();
+        long start = System.nanoTime();
+        BankAccount account = require(accountNumber);
+        ReentrantLock lock = lockFor(accountNumber);
+        ChangeFeed events = reserve(1);
+        Posting posting = null;
+        lock.lock();
+        try {
+            long now = System.currentTimeMillis();
+            long before = account.getBalance();
+            account.withdraw(amount, now);
+            balanceChanged(accountNumber, before, account.getBalance());
+            aggregates.record(TransactionLog.WITHDRAW, amount, now);
+            posting = post(events, AccountJournal.WITHDRAW, accountNumber, -amount, account.getBalance(),
+                    journal.logWithdraw(accountNumber, amount, now), now);
+            return posting;
+        } finally {
+            lock.unlock();
+            unreserve(events, posting == null ? 1 : 0);
+            Metrics.WITHDRAW.stop(start);
+        }
+    }
+
+    public List<Posting> postTransfer(int fromAccount, int toAccount, long amount) {
+        return postTransfers(Collections.singletonList(new Transfer(fromAccount, toAccount, amount)));
+    }
+
+    // Applies every leg or none, in order, so a leg may spend what an earlier leg paid in.
+    // The stripes of all accounts involved are locked in index order, the same order checkpoint()
+    // uses, so concurrent batches cannot deadlock. All legs are journaled as one record.
+    // Returns one posting per account touched, in account number order, sharing one sequence.
+    public List<Posting> postTransfers(List<Transfer> transfers) {
+        writable();
+        long start = System.nanoTime();
+        int legs = transfers.size();
+        if (legs == 0) {
+            throw new IllegalArgumentException("No transfers given.");
+        }
+        int[] from = new int[legs];
+        int[] to = new int[legs];
+        long[] amounts = new long[legs];
+        int[] numbers = new int[legs * 2];
+        for (int i = 0; i < legs; i++) {
+            Transfer transfer = transfers.get(i);
+            if (transfer.amount <= 0) {
+                throw new IllegalArgumentException("Transfer amount must be positive.");
+            }
+            if (transfer.fromAccount == transfer.toAccount) {
+                throw new IllegalArgumentException("Cannot transfer to the same account.");
+            }
+            from[i] = transfer.fromAccount;
+            to[i] = transfer.toAccount;
+            amounts[i] = transfer.amount;
+            numbers[i * 2] = transfer.fromAccount;
+            numbers[i * 2 + 1] = transfer.toAccount;
+        }
+        numbers = distinct(numbers);
+        BankAccount[] involved = new BankAccount[numbers.length];
+        int[] stripeIndexes = new int[numbers.length];
+        for (int i = 0; i < numbers.length; i++) {
+            involved[i] = require(numbers[i]);
+            stripeIndexes[i] = stripeIndex(numbers[i]);
+        }
+        stripeIndexes = distinct(stripeIndexes);
+
+        ChangeFeed events = reserve(numbers.length);
+        List<Posting> postings = null;
+        for (int stripe : stripeIndexes) {
+            stripes[stripe].lock();
+        }
+        try {
+            // Dry run on copies of the balances so a rejected leg leaves every account untouched
+            long[] before = new long[numbers.length];
+            for (int i = 0; i < numbers.length; i++) {
+                before[i] = involved[i].getBalance();
+            }
+            long[] balances = before.clone();
+            for (int i = 0; i < legs; i++) {
+                int source = Arrays.binarySearch(numbers, from[i]);
+                int target = Arrays.binarySearch(numbers, to[i]);
+                if (amounts[i] > balances[source]) {
+                    throw new IllegalArgumentException("Insufficient balance in Account #" + from[i] + ".");
+                }
+                balances[source] -= amounts[i];
+                balances[target] = Money.add(balances[target], amounts[i]);
+            }
+
+            long now = System.currentTimeMillis();
+            for (int i = 0; i < legs; i++) {
+                involved[Arrays.binarySearch(numbers, from[i])].transferOut(amounts[i], to[i], now);
+                involved[Arrays.binarySearch(numbers, to[i])].transferIn(amounts[i], from[i], now);
+                aggregates.record(TransactionLog.TRANSFER_OUT, amounts[i], now);
+                aggregates.record(TransactionLog.TRANSFER_IN, amounts[i], now);
+            }
+            long sequence = journal.logTransfer(from, to, amounts, legs, now);
+            postings = new ArrayList<>(numbers.length);
+            for (int i = 0; i < numbers.length; i++) {
+                balanceChanged(numbers[i], before[i], balances[i]);
+                postings.add(post(events, AccountJournal.TRANSFER, numbers[i], balances[i] - before[i], balances[i],
+                        sequence, now));
+            }
+            return postings;
+        } finally {
+            for (int i = stripeIndexes.length - 1; i >= 0; i--) {
+                stripes[stripeIndexes[i]].unlock();
+            }
+            unreserve(events, postings == null ? numbers.length : 0);
+            Metrics.TRANSFER.stop(start);
+        }
+    }
+
+    // Credits the interest the accrual computes from the current balance, unless the account was
+    // already credited interest at or after since, so a restarted job never pays twice
+    // (Long.MAX_VALUE skips the check). Returns null when nothing was credited.
+    public Posting postInterest(int accountNumber, long since, LongUnaryOperator accrual) {
+        writable();
+        long start = System.nanoTime();
+        BankAccount account = require(accountNumber);
+        ReentrantLock lock = lockFor(accountNumber);
+        TransactionLog history = account.getTransactionLog();
+        int loaded;
+        ChangeFeed events = reserve(1);
+        Posting posting = null;
+        lock.lock();
+        try {
+            // Looking back may page the history in, so it is accounted for in the cache below
+            for (int i = history.size() - 1; i >= 0 && history.time(i) >= since; i--) {
+                if (history.type(i) == TransactionLog.INTEREST) {
+                    return null;
+                }
+            }
+            long before = account.getBalance();
+            long amount = accrual.applyAsLong(before);
+            if (amount <= 0) {
+                return null;
+            }
+            long now = System.currentTimeMillis();
+            account.creditInterest(amount, now);
+            balanceChanged(accountNumber, before, account.getBalance());
+            aggregates.record(TransactionLog.INTEREST, amount, now);
+            posting = post(events, AccountJournal.INTEREST, accountNumber, amount, account.getBalance(),
+                    journal.logInterest(accountNumber, amount, now), now);
+            return posting;
+        } finally {
+            loaded = history.pagedIn();
+            lock.unlock();
+            unreserve(events, posting == null ? 1 : 0);
+            releaseHistories(histories.touch(accountNumber, loaded));
+            Metrics.ACCRUE_INTEREST.stop(start);
+        }
+    }
+
+    // Every account number in ascending order, as of the call
+    public int[] accountNumbers() {
+        int[] numbers;
+        long stamp = tableLock.readLock();
+        try {
+            numbers = new int[accounts.size()];
+            int n = 0;
+            for (BankAccount account : accounts) {
+                numbers[n++] = account.getAccountNumber();
+            }
+        } finally {
+            tableLock.unlockRead(stamp);
+        }
+        Arrays.parallelSort(numbers);
+        return numbers;
+    }
+
+    private ChangeFeed reserve(int events) {
+        ChangeFeed current = feed;
+        if (current != null) {
+            current.reserve(events);
+        }
+        return current;
+    }
+
+    private static void unreserve(ChangeFeed events, int unused) {
+        if (events != null && unused > 0) {
+            events.cancel(unused);
+        }
+    }
+
+    // Called with the account's stripe held, after the change is journaled
+    private static Posting post(ChangeFeed events, byte type, int accountNumber, long amount, long balance,
+                                long sequence, long now) {
+        long event = events == null ? 0 : events.publish(type, accountNumber, amount, balance, sequence, now);
+        return new Posting(accountNumber, balance, sequence, event);
+    }
+
+    // Called with the account's stripe held
+    private void balanceChanged(int accountNumber, long before, long after) {
+        aggregates.balanceChanged(before, after);
+        AccountIndex current = index;
+        if (current != null) {
+            current.balanceChanged(accountNumber, before, after);
+        }
+    }
+
+    // Up to limit accounts whose holder name starts with the prefix, ignoring case, continuing after
+    // the last account of the previous page (null for the first)
+    public List<BankAccount> searchByHolder(String prefix, BankAccount after, int limit) {
+        return index().holdersStartingWith(prefix, after, limit);
+    }
+
+    // Up to limit accounts with min <= balance <= max in balance order, continuing after the last entry
+    // of the previous page (null for the first). Balances are as of the search.
+    public List<AccountIndex.BalanceEntry> searchByBalance(long min, long max, AccountIndex.BalanceEntry after,
+                                                           int limit) {
+        return index().balancesBetween(min, max, after, limit);
+    }
+
+    // Up to n accounts with the highest balances, highest first
+    public List<AccountIndex.BalanceEntry> topBalances(int n) {
+        return index().highestBalances(n);
+    }
+
+    // Live bank-wide figures; see Aggregates for what each read guarantees
+    Aggregates aggregates() {
+        return aggregates;
+    }
+
+    private AccountIndex index() {
+        AccountIndex current = index;
+        if (current != null) {
+            return current;
+        }
+        long stamp = lockAll();
+        try {
+            if (index == null) {
+                index = AccountIndex.build(accounts);
+            }
+            return index;
+        } finally {
+            unlockAll(stamp);
+        }
+    }
+
+    // Sorted copy without duplicates
+    private static int[] distinct(int[] values) {
+        int[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int n = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (n == 0 || sorted[i] != sorted[n - 1]) {
+                sorted[n++] = sorted[i];
+            }
+        }
+        return Arrays.copyOf(sorted, n);
+    }
+
+    // Reads of the latest view take no lock and never wait for postings
+
+    public long getBalance(int accountNumber) {
+        return view(accountNumber).balance;
+    }
+
+    public List<String> getTransactionHistory(int accountNumber) {
+        return view(accountNumber).history.lines();
+    }
+
+    // Balance and history of the account as of its latest change, stable however long it is read
+    public BankAccount.View view(int accountNumber) {
+        return require(accountNumber).view();
+    }
+
+    // Runs the callback with the account's lock held so it sees no concurrent changes
+    public <T> T withAccount(int accountNumber, AccountCallback<T> callback) throws IOException {
+        BankAccount account = require(accountNumber);
+        ReentrantLock lock = lockFor(accountNumber);
+        TransactionLog history = account.getTransactionLog();
+        int loaded;
+        lock.lock();
+        try {
+            return callback.apply(account);
+        } finally {
+            loaded = history.pagedIn();
+            lock.unlock();
+            releaseHistories(histories.touch(accountNumber, loaded));
+        }
+    }
+
+    // Called with no stripe held; each victim is evicted under its own stripe. The account is looked up
+    // first, as in require(): a lookup under the stripe could wait on checkpoint() while it waits for us.
+    private void releaseHistories(List<Integer> victims) {
+        for (int accountNumber : victims) {
+            BankAccount account = lookup(accountNumber);
+            ReentrantLock lock = lockFor(accountNumber);
+            lock.lock();
+            try {
+                if (!histories.contains(accountNumber)) {
+                    account.getTransactionLog().evictBase();
+                    account.publish();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void writable() {
+        if (journal.isReadOnly()) {
+            throw new IllegalStateException("Ledger is open read-only.");
+        }
+    }
+
+    // Accounts are never removed, so the lookup can happen before the stripe is locked;
+    // doing it under the stripe could deadlock against checkpoint()
+    private BankAccount require(int accountNumber) {
+        BankAccount account = lookup(accountNumber);
+        if (account == null) {
+            throw new IllegalArgumentException("Account not found.");
+        }
+        return account;
+    }
+
+    private ReentrantLock lockFor(int accountNumber) {
+        return stripes[stripeIndex(accountNumber)];
+    }
+
+    private int stripeIndex(int accountNumber) {
+        int h = accountNumber * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & stripeMask;
+    }
+
+    // Makes every operation up to the sequence durable, compacting the journal once it grows too large
+    public void commit(long sequence) throws IOException {
+        long start = System.nanoTime();
+        journal.commit(sequence);
+        Metrics.COMMIT.stop(start);
+        if (journal.size() >= checkpointBytes && checkpointing.compareAndSet(false, true)) {
+            try {
+                checkpoint();
+            } finally {
+                checkpointing.set(false);
+            }
+        }
+    }
+
+    // Compacts the journal: seals old history into the archive, writes a full snapshot as the next
+    // generation of accounts.dat, swaps it in, empties the journal and deletes the generation it replaced.
+    // Every stripe and the table are locked so the snapshot and its journal sequence agree.
+    public void checkpoint() throws IOException {
+        writable();
+        long start = System.nanoTime();
+        long stamp = lockAll();
+        try {
+            long sequence = journal.lastSequence();
+            archive.seal(accounts, historyWindow);
+            File previous = SnapshotFile.current(snapshotFile);
+            SnapshotFile written = SnapshotFile.write(snapshotFile, accounts, aggregates, sequence);
+            if (snapshot != null) {
+                snapshot.close();
+            }
+            snapshot = written;
+            journal.reset(sequence);
+            SnapshotFile.discard(previous);
+            // Views taken before still read correctly, but would keep the old tails reachable
+            for (BankAccount account : accounts) {
+                account.publish();
+            }
+        } finally {
+            unlockAll(stamp);
+            Metrics.SAVE_ACCOUNTS.stop(start);
+        }
+    }
+
+    // Excludes every writer: the table, then each stripe in index order
+    private long lockAll() {
+        long stamp = tableLock.writeLock();
+        for (ReentrantLock stripe : stripes) {
+            stripe.lock();
+        }
+        return stamp;
+    }
+
+    private void unlockAll(long stamp) {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            stripes[i].unlock();
+        }
+        tableLock.unlockWrite(stamp);
+    }
+
+    @Override
+    public void close() throws IOException {
+        journal.close();
+        archive.close();
+        if (snapshot != null) {
+            snapshot.close();
+        }
+    }
+}
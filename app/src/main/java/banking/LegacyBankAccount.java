@@ -0,0 +1,22 @@
+package banking;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+
+// Field layout of BankAccount as serialized by the original default-package class, which kept
+// its history as formatted strings; LegacyObjectInputStream reads such records into this class.
+@SuppressWarnings("serial")
+class LegacyBankAccount implements Serializable {
+    private static final long serialVersionUID = 423676730718307116L;
+
+    private int accountNumber;
+    private String accountHolder;
+    private double balance;
+    private ArrayList<String> transactionHistory;
+
+    private Object readResolve() {
+        TransactionLog history = TransactionLog.fromStrings(
+                transactionHistory != null ? transactionHistory : new ArrayList<String>());
+        return new BankAccount(accountNumber, accountHolder, Money.fromDouble(balance), history);
+    }
+}
@@ -0,0 +1,31 @@
+package banking;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+
+// Reads files written before the classes moved into the banking package.
+// Unqualified class names are mapped onto their current classes; BankAccount records that still
+// carry the original string history are routed to LegacyBankAccount, which converts them.
+class LegacyObjectInputStream extends ObjectInputStream {
+    public LegacyObjectInputStream(InputStream in) throws IOException {
+        super(in);
+    }
+
+    @Override
+    protected ObjectStreamClass readClassDescriptor() throws IOException, ClassNotFoundException {
+        ObjectStreamClass desc = super.readClassDescriptor();
+        switch (desc.getName()) {
+            case "BankAccount":
+                return ObjectStreamClass.lookup(desc.getField("transactionHistory") != null
+                        ? LegacyBankAccount.class : BankAccount.class);
+            case "AccountStore":
+                return ObjectStreamClass.lookup(AccountStore.class);
+            case "TransactionLog":
+                return ObjectStreamClass.lookup(TransactionLog.class);
+            default:
+                return desc;
+        }
+    }
+}
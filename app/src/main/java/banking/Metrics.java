@@ -0,0 +1,247 @@
+package banking;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// Process-wide latency timers for the ledger's hot paths, plus byte counters for each kind of file
+// written. Recording is lock-free; reading takes a snapshot. Exposed over JMX as banking:type=Metrics, in the GUI's Metrics tab, and optionally as a
+// text report appended to a file at a fixed interval.
+final class Metrics {
+    static final class Timer {
+        final String name;
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        private Timer(String name) {
+            this.name = name;
+        }
+
+        // Usage: long start = System.nanoTime(); ... timer.stop(start);
+        void stop(long startNanos) {
+            histogram.record(System.nanoTime() - startNanos);
+        }
+
+        LatencyHistogram.Snapshot snapshot() {
+            return histogram.snapshot();
+        }
+    }
+
+    static final class Counter {
+        final String name;
+        private final LongAdder total = new LongAdder();
+
+        private Counter(String name) {
+            this.name = name;
+        }
+
+        void add(long amount) {
+            total.add(amount);
+        }
+
+        long get() {
+            return total.sum();
+        }
+    }
+
+    static final Timer FIND_ACCOUNT = timer("findAccount");
+    static final Timer DEPOSIT = timer("deposit");
+    static final Timer WITHDRAW = timer("withdraw");
+    static final Timer TRANSFER = timer("transfer");
+    static final Timer ACCRUE_INTEREST = timer("accrueInterest");
+    static final Timer COMMIT = timer("commit");
+    static final Timer SAVE_ACCOUNTS = timer("saveAccounts");
+    static final Timer LOAD_ACCOUNTS = timer("loadAccounts");
+    static final Timer SAVE_TRANSACTION_FILE = timer("saveTransactionToFile");
+
+    static final Counter SNAPSHOT_BYTES = counter("accountsBytesWritten");
+    static final Counter JOURNAL_BYTES = counter("journalBytesWritten");
+    static final Counter TRANSACTION_FILE_BYTES = counter("transactionFileBytesWritten");
+    static final Counter STATEMENT_BYTES = counter("statementBytesWritten");
+    static final Counter ARCHIVE_BYTES = counter("archiveBytesWritten");
+    // Fed by a ChangeFeed consumer rather than the posting threads
+    static final Counter CHANGE_EVENTS = counter("changeEvents");
+    static final Counter CREDITED = counter("minorUnitsCredited");
+    static final Counter DEBITED = counter("minorUnitsDebited");
+
+    static final String OBJECT_NAME = "banking:type=Metrics";
+
+    // Created on first use because the timer constants above are initialized before it
+    private static Map<String, Timer> timers;
+    private static Map<String, Counter> counters;
+    private static ScheduledExecutorService dumper;
+
+    private Metrics() {
+    }
+
+    static synchronized Timer timer(String name) {
+        if (timers == null) {
+            timers = new LinkedHashMap<>();
+        }
+        return timers.computeIfAbsent(name, Timer::new);
+    }
+
+    static synchronized List<Timer> timers() {
+        return new ArrayList<>(timers.values());
+    }
+
+    static synchronized Counter counter(String name) {
+        if (counters == null) {
+            counters = new LinkedHashMap<>();
+        }
+        return counters.computeIfAbsent(name, Counter::new);
+    }
+
+    static synchronized List<Counter> counters() {
+        return new ArrayList<>(counters.values());
+    }
+
+    static void reset() {
+        for (Timer timer : timers()) {
+            timer.histogram.reset();
+        }
+        for (Counter counter : counters()) {
+            counter.total.reset();
+        }
+    }
+
+    // ChangeFeed handler counting balance changes and the money they moved
+    static void count(ChangeFeed feed, long from, long to) {
+        long credited = 0;
+        long debited = 0;
+        for (long event = from; event <= to; event++) {
+            long amount = feed.amount(event);
+            if (amount > 0) {
+                credited += amount;
+            } else {
+                debited -= amount;
+            }
+        }
+        CHANGE_EVENTS.add(to - from + 1);
+        CREDITED.add(credited);
+        DEBITED.add(debited);
+    }
+
+    // One line per timer; latencies in microseconds
+    static String report() {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("%-22s %12s %10s %10s %10s %10s %10s%n",
+                "operation", "count", "mean", "p50", "p99", "p999", "max"));
+        for (Timer timer : timers()) {
+            LatencyHistogram.Snapshot s = timer.snapshot();
+            text.append(String.format("%-22s %12d %10.1f %10.1f %10.1f %10.1f %10.1f%n", timer.name, s.count,
+                    s.meanNanos() / 1e3, s.percentileNanos(0.5) / 1e3, s.percentileNanos(0.99) / 1e3,
+                    s.percentileNanos(0.999) / 1e3, s.maxNanos / 1e3));
+        }
+        for (Counter counter : counters()) {
+            text.append(String.format("%-30s %16d%n", counter.name, counter.get()));
+        }
+        return text.toString();
+    }
+
+    static synchronized void registerMBean() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(new MetricsMXBeanImpl(), name);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register " + OBJECT_NAME, e);
+        }
+    }
+
+    // Appends a timestamped report to the file every period until the JVM exits
+    static synchronized void startDump(File file, long periodSeconds) {
+        if (dumper != null) {
+            return;
+        }
+        dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumper.scheduleAtFixedRate(() -> {
+            try (Writer out = new FileWriter(file, true)) {
+                out.write("# " + LocalDateTime.now() + System.lineSeparator() + report() + System.lineSeparator());
+            } catch (IOException e) {
+                System.err.println("Metrics dump failed: " + e.getMessage());
+            }
+        }, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    private static final class MetricsMXBeanImpl implements MetricsMXBean {
+        @Override
+        public Map<String, Long> getCounts() {
+            Map<String, Long> values = new LinkedHashMap<>();
+            for (Timer timer : timers()) {
+                values.put(timer.name, timer.snapshot().count);
+            }
+            return values;
+        }
+
+        @Override
+        public Map<String, Double> getMeanMicros() {
+            Map<String, Double> values = new LinkedHashMap<>();
+            for (Timer timer : timers()) {
+                values.put(timer.name, timer.snapshot().meanNanos() / 1e3);
+            }
+            return values;
+        }
+
+        @Override
+        public Map<String, Double> getP50Micros() {
+            return percentiles(0.5);
+        }
+
+        @Override
+        public Map<String, Double> getP99Micros() {
+            return percentiles(0.99);
+        }
+
+        @Override
+        public Map<String, Double> getP999Micros() {
+            return percentiles(0.999);
+        }
+
+        @Override
+        public Map<String, Long> getCounters() {
+            Map<String, Long> values = new LinkedHashMap<>();
+            for (Counter counter : counters()) {
+                values.put(counter.name, counter.get());
+            }
+            return values;
+        }
+
+        @Override
+        public String getReport() {
+            return report();
+        }
+
+        @Override
+        public void reset() {
+            Metrics.reset();
+        }
+
+        private static Map<String, Double> percentiles(double quantile) {
+            Map<String, Double> values = new LinkedHashMap<>();
+            for (Timer timer : timers()) {
+                values.put(timer.name, timer.snapshot().percentileNanos(quantile) / 1e3);
+            }
+            return values;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package banking;
+
+import java.util.Map;
+
+// JMX view of Metrics; public only because the MXBean introspector requires it. Latencies in microseconds.
+public interface MetricsMXBean {
+    Map<String, Long> getCounts();
+
+    Map<String, Double> getMeanMicros();
+
+    Map<String, Double> getP50Micros();
+
+    Map<String, Double> getP99Micros();
+
+    Map<String, Double> getP999Micros();
+
+    // Totals such as bytes written per file kind
+    Map<String, Long> getCounters();
+
+    String getReport();
+
+    void reset();
+}
@@ -0,0 +1,99 @@
+package banking;
+
+// Amounts are fixed-point longs counting minor units (cents). Parsing, formatting and arithmetic
+// here are exact and, apart from the String a caller asks for, do not allocate.
+final class Money {
+    static final int DECIMALS = 2;
+    static final long SCALE = 100;
+
+    private Money() {
+    }
+
+    // Accepts an optional sign, digits and at most DECIMALS fraction digits: "12", "12.5", "-0.75"
+    static long parse(CharSequence text) {
+        int length = text.length();
+        int i = 0;
+        boolean negative = false;
+        if (i < length && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+            negative = text.charAt(i) == '-';
+            i++;
+        }
+        long units = 0;
+        int digits = 0;
+        for (; i < length && text.charAt(i) != '.'; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw invalid(text);
+            }
+            if (units > (Long.MAX_VALUE / SCALE - 1 - digit) / 10) {
+                throw new NumberFormatException("Amount out of range: " + text);
+            }
+            units = units * 10 + digit;
+            digits++;
+        }
+        long fraction = 0;
+        int fractionDigits = 0;
+        if (i < length) {
+            for (i++; i < length; i++) {
+                int digit = text.charAt(i) - '0';
+                if (digit < 0 || digit > 9 || fractionDigits == DECIMALS) {
+                    throw invalid(text);
+                }
+                fraction = fraction * 10 + digit;
+                fractionDigits++;
+            }
+        }
+        if (digits + fractionDigits == 0) {
+            throw invalid(text);
+        }
+        for (int d = fractionDigits; d < DECIMALS; d++) {
+            fraction *= 10;
+        }
+        long minor = units * SCALE + fraction;
+        return negative ? -minor : minor;
+    }
+
+    private static NumberFormatException invalid(CharSequence text) {
+        return new NumberFormatException("Invalid amount: " + text);
+    }
+
+    static String format(long minor) {
+        return append(new StringBuilder(24), minor).toString();
+    }
+
+    // Writes the amount with exactly DECIMALS fraction digits, like "%.2f" in the root locale
+    static StringBuilder append(StringBuilder out, long minor) {
+        long whole = minor / SCALE;
+        long fraction = minor % SCALE;
+        if (minor < 0) {
+            out.append('-');
+            whole = -whole;
+            fraction = -fraction;
+        }
+        out.append(whole).append('.');
+        if (fraction < 10) {
+            out.append('0');
+        }
+        return out.append(fraction);
+    }
+
+    // Overflow is reported as a rejected amount rather than a silently wrapped balance
+    static long add(long a, long b) {
+        long sum = a + b;
+        if (((a ^ sum) & (b ^ sum)) < 0) {
+            throw new IllegalArgumentException("Amount exceeds the maximum balance.");
+        }
+        return sum;
+    }
+
+    // Converts amounts stored as double by older versions, rounding half-even to whole cents. Older
+    // versions accepted sub-cent amounts such as a 0.005 deposit, so a migrated balance or history
+    // entry may differ from the stored double by up to half a cent.
+    static long fromDouble(double value) {
+        double scaled = Math.rint(value * SCALE);
+        if (Double.isNaN(scaled) || scaled >= 0x1p63 || scaled < -0x1p63) {
+            throw new IllegalArgumentException("Amount out of range: " + value);
+        }
+        return (long) scaled;
+    }
+}
@@ -0,0 +1,95 @@
+package banking;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+// Makes ledger postings durable off the caller's thread as two consumers of the ledger's change feed.
+// The journal writer commits everything up to the newest journal sequence in its batch with one call;
+// the transaction-file writer runs behind it and brings each account touched in its batch up to date
+// with a single append, so files never show a change the journal could still lose. A failed commit is
+// retried by the feed until it goes through; the files wait for it.
+class PersistencePipeline implements AutoCloseable {
+    private final LedgerService ledger;
+    private final TransactionFileWriter transactionFiles;
+    private final ChangeFeed feed;
+    private final ChangeFeed.Consumer journalWriter;
+    private final ChangeFeed.Consumer fileWriter;
+
+    public PersistencePipeline(LedgerService ledger, TransactionFileWriter transactionFiles, ChangeFeed feed) {
+        this.ledger = ledger;
+        this.transactionFiles = transactionFiles;
+        this.feed = feed;
+        this.journalWriter = feed.subscribe("journal", this::commit);
+        this.fileWriter = feed.subscribe("transaction-files", this::write, journalWriter);
+    }
+
+    // Completes with the journal sequence once the posting and the account's transaction file are on disk
+    public CompletableFuture<Long> submit(LedgerService.Posting posting) {
+        if (posting.event == 0) {
+            CompletableFuture<Long> ack = new CompletableFuture<>();
+            ack.completeExceptionally(new IllegalStateException("The ledger does not publish to this pipeline."));
+            return ack;
+        }
+        return acknowledge(posting.event, posting.sequence);
+    }
+
+    // Completes once the account's transaction file has been rewritten in full
+    public CompletableFuture<Long> export(int accountNumber) {
+        return acknowledge(feed.offer(ChangeFeed.EXPORT, accountNumber, 0, 0, 0, System.currentTimeMillis()), 0);
+    }
+
+    // Events the transaction files have yet to catch up with
+    public int backlog() {
+        return (int) Math.min(Integer.MAX_VALUE, fileWriter.lag());
+    }
+
+    // The file writer only fails for itself, so a failed commit has to be reported separately
+    private CompletableFuture<Long> acknowledge(long event, long sequence) {
+        return journalWriter.whenProcessed(event).thenCombine(fileWriter.whenProcessed(event), (a, b) -> sequence);
+    }
+
+    private void commit(ChangeFeed feed, long from, long to) throws IOException {
+        long upTo = 0;
+        for (long event = from; event <= to; event++) {
+            upTo = Math.max(upTo, feed.journalSequence(event));
+        }
+        if (upTo > 0) {
+            ledger.commit(upTo);
+        }
+    }
+
+    private void write(ChangeFeed feed, long from, long to) throws IOException {
+        // Account number to whether it wants a full export, in first-seen order
+        Map<Integer, Boolean> touched = new LinkedHashMap<>();
+        for (long event = from; event <= to; event++) {
+            touched.merge(feed.accountNumber(event), feed.type(event) == ChangeFeed.EXPORT, Boolean::logicalOr);
+        }
+        IOException failed = null;
+        for (Map.Entry<Integer, Boolean> entry : touched.entrySet()) {
+            // The latest view covers every event in the batch, and writing it holds up no posting
+            BankAccount.View account = ledger.view(entry.getKey());
+            try {
+                if (entry.getValue()) {
+                    transactionFiles.export(account);
+                } else {
+                    transactionFiles.append(account);
+                }
+            } catch (IOException e) {
+                // The rest of the batch still gets written
+                failed = e;
+            }
+        }
+        if (failed != null) {
+            throw failed;
+        }
+    }
+
+    // Drains everything already published, then stops both writers; safe to call more than once
+    @Override
+    public void close() {
+        fileWriter.close();
+        journalWriter.close();
+    }
+}
@@ -0,0 +1,128 @@
+package banking;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.table.AbstractTableModel;
+
+// Table model for the Search tab: one page of accounts from LedgerService's secondary indexes at a time.
+// Pages are fetched off the EDT by a Query; each page remembers the index entry it ended on, which is
+// where the next page continues, so paging never rescans the results before it.
+@SuppressWarnings("serial")
+final class SearchTableModel extends AbstractTableModel {
+    static final int PAGE_SIZE = 100;
+
+    private static final String[] COLUMNS = {"Account", "Holder", "Balance"};
+
+    interface Query {
+        // Up to PAGE_SIZE results after the cursor (null for the first page)
+        Page fetch(Object after);
+    }
+
+    static final class Page {
+        final List<BankAccount> accounts = new ArrayList<>();
+        final List<Long> balances = new ArrayList<>();
+        Object last;
+        boolean hasMore;
+    }
+
+    private Query query;
+    // Cursor each page starts after; the first page's is null
+    private final List<Object> starts = new ArrayList<>();
+    private Page page = new Page();
+    private int pageNumber;
+
+    static Query byHolder(LedgerService ledger, String prefix) {
+        return after -> {
+            List<BankAccount> found = ledger.searchByHolder(prefix, (BankAccount) after, PAGE_SIZE + 1);
+            Page page = new Page();
+            for (int i = 0; i < Math.min(PAGE_SIZE, found.size()); i++) {
+                BankAccount account = found.get(i);
+                page.accounts.add(account);
+                page.balances.add(account.view().balance);
+                page.last = account;
+            }
+            page.hasMore = found.size() > PAGE_SIZE;
+            return page;
+        };
+    }
+
+    static Query byBalance(LedgerService ledger, long min, long max) {
+        return after -> {
+            List<AccountIndex.BalanceEntry> found = ledger.searchByBalance(min, max,
+                    (AccountIndex.BalanceEntry) after, PAGE_SIZE + 1);
+            Page page = new Page();
+            for (int i = 0; i < Math.min(PAGE_SIZE, found.size()); i++) {
+                AccountIndex.BalanceEntry entry = found.get(i);
+                page.accounts.add(ledger.find(entry.accountNumber));
+                page.balances.add(entry.balance);
+                page.last = entry;
+            }
+            page.hasMore = found.size() > PAGE_SIZE;
+            return page;
+        };
+    }
+
+    // Starts a new search with nothing shown until its first page arrives
+    void reset(Query query) {
+        this.query = query;
+        starts.clear();
+        starts.add(null);
+        page = new Page();
+        pageNumber = 0;
+        fireTableDataChanged();
+    }
+
+    Query query() {
+        return query;
+    }
+
+    // Cursor to fetch the given page from; only pages up to one past the current one are known
+    Object startOf(int number) {
+        return starts.get(number);
+    }
+
+    void show(int number, Page page) {
+        this.page = page;
+        this.pageNumber = number;
+        if (page.hasMore && starts.size() == number + 1) {
+            starts.add(page.last);
+        }
+        fireTableDataChanged();
+    }
+
+    int pageNumber() {
+        return pageNumber;
+    }
+
+    boolean hasNext() {
+        return page.hasMore;
+    }
+
+    @Override
+    public int getRowCount() {
+        return page.accounts.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        BankAccount account = page.accounts.get(row);
+        switch (column) {
+            case 0:
+                return account.getAccountNumber();
+            case 1:
+                return account.getAccountHolder();
+            default:
+                return Money.format(page.balances.get(row));
+        }
+    }
+}
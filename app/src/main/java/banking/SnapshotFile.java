@@ -0,0 +1,551 @@
+package banking;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Versioned binary snapshot of every account, read back through a memory mapping.
+// Layout: a fixed header, a fixed-width table with one entry per account, each account's live history
+// as a columnar segment, the archive directory listing each account's sealed chunks, the holder names,
+// then the bank's daily volume (see Aggregates). All values are little-endian.
+// An open snapshot stays mapped so histories can be paged in from it when first needed.
+// Each checkpoint writes a new generation, accounts.dat.<n>, and names it in accounts.dat.current; a mapped
+// file is never renamed over, which Windows refuses. A bare accounts.dat is the layout from before.
+final class SnapshotFile implements AutoCloseable {
+    static final int MAGIC = 0x53534B42; // "BKSS"
+    // Version 1 stored balances and history amounts as doubles; version 2 stores minor units as longs;
+    // version 3 adds the transfer counterparty column to each history segment; version 4 moves old
+    // entries out to the HistoryArchive and adds the archive directory; version 5 adds daily volume
+    static final int VERSION = 5;
+
+    // magic, version, journal sequence, account count, reserved, history offset, names offset, file length,
+    // directory offset (version 4), volumes offset (version 5)
+    private static final int HEADER_SIZE = 64;
+    // account number, live history count, name offset, name length, archived count (version 4), balance,
+    // history offset, history length, then from version 4 directory offset, chunk count and reserved
+    private static final int ENTRY_SIZE = 64;
+    private static final int OLD_ENTRY_SIZE = 48;
+    // segment id, offset, frame length, end index
+    private static final int CHUNK_REF_SIZE = 24;
+    // Upper bound for one mapping of the history region; segments never straddle two windows
+    private static final long WINDOW_SIZE = 1L << 30;
+
+    private final File file;
+    private final FileChannel channel;
+    private final int version;
+    private final int entrySize;
+    private final long sequence;
+    private final int count;
+    private final long historyOffset;
+    private final long directoryOffset;
+    private final long namesOffset;
+    private final long volumesOffset;
+    private final long fileLength;
+    private final MappedByteBuffer table;
+    private long[] windowStarts = new long[0];
+    private MappedByteBuffer[] windows = new MappedByteBuffer[0];
+
+    private SnapshotFile(File file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            fileLength = channel.size();
+            if (fileLength < HEADER_SIZE) {
+                throw new IOException("Truncated snapshot " + file);
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt(0) != MAGIC) {
+                throw new IOException("Not a snapshot file: " + file);
+            }
+            version = header.getInt(4);
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Unsupported snapshot version " + version + " in " + file);
+            }
+            entrySize = version >= 4 ? ENTRY_SIZE : OLD_ENTRY_SIZE;
+            sequence = header.getLong(8);
+            count = header.getInt(16);
+            historyOffset = header.getLong(24);
+            namesOffset = header.getLong(32);
+            directoryOffset = version >= 4 ? header.getLong(48) : namesOffset;
+            volumesOffset = version >= 5 ? header.getLong(56) : fileLength;
+            if (header.getLong(40) != fileLength || count < 0
+                    || historyOffset != HEADER_SIZE + (long) count * entrySize
+                    || directoryOffset < historyOffset || directoryOffset > namesOffset
+                    || namesOffset > volumesOffset || volumesOffset > fileLength
+                    || volumesOffset - namesOffset > Integer.MAX_VALUE
+                    || fileLength - volumesOffset > Integer.MAX_VALUE
+                    || namesOffset - directoryOffset > Integer.MAX_VALUE) {
+                throw new IOException("Corrupt snapshot header in " + file);
+            }
+            table = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, historyOffset - HEADER_SIZE);
+            table.order(ByteOrder.LITTLE_ENDIAN);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // True if the file starts with the binary snapshot magic rather than a Java serialization stream
+    static boolean isSnapshot(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            while (magic.hasRemaining()) {
+                if (channel.read(magic) < 0) {
+                    return false;
+                }
+            }
+            return magic.getInt(0) == MAGIC;
+        }
+    }
+
+    // Adds every account in the snapshot to the store. Only the table, archive directory and names are
+    // read here; each history stays on disk until something asks for it.
+    static SnapshotFile open(File file, AccountStore accounts, HistoryArchive archive) throws IOException {
+        SnapshotFile snapshot = new SnapshotFile(file);
+        try {
+            snapshot.bind(accounts, archive);
+        } catch (IOException | RuntimeException e) {
+            snapshot.close();
+            throw e;
+        }
+        return snapshot;
+    }
+
+    long sequence() {
+        return sequence;
+    }
+
+    // Older versions can be opened but are never written; callers checkpoint to upgrade them
+    int version() {
+        return version;
+    }
+
+    // Loads the daily volume section into the aggregates; snapshots before version 5 have none
+    void readVolumes(Aggregates aggregates) throws IOException {
+        if (version < 5) {
+            return;
+        }
+        ByteBuffer volumes = channel.map(FileChannel.MapMode.READ_ONLY, volumesOffset, fileLength - volumesOffset)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            aggregates.readVolumes(volumes);
+        } catch (IOException e) {
+            throw new IOException(e.getMessage() + " in snapshot " + file, e);
+        }
+    }
+
+    // Walks the table, mapping the history region in windows, and either creates the accounts (given
+    // the archive their sealed chunks live in) or points the existing ones at their segments in this file
+    private void bind(AccountStore accounts, HistoryArchive archive) throws IOException {
+        boolean create = archive != null;
+        MappedByteBuffer names = channel.map(FileChannel.MapMode.READ_ONLY, namesOffset, volumesOffset - namesOffset);
+        ByteBuffer directory = channel.map(FileChannel.MapMode.READ_ONLY, directoryOffset,
+                namesOffset - directoryOffset).order(ByteOrder.LITTLE_ENDIAN);
+        byte[] nameBytes = new byte[256];
+        long[] starts = new long[4];
+        MappedByteBuffer[] mapped = new MappedByteBuffer[4];
+        int windowCount = 0;
+        long windowEnd = 0;
+        int bytesPerEntry = version >= 3 ? 29 : 25;
+
+        for (int i = 0; i < count; i++) {
+            int entry = i * entrySize;
+            int accountNumber = table.getInt(entry);
+            int historyCount = table.getInt(entry + 4);
+            long nameOffset = table.getLong(entry + 8);
+            int nameLength = table.getInt(entry + 16);
+            int archivedCount = version >= 4 ? table.getInt(entry + 20) : 0;
+            long balance = version == 1 ? Money.fromDouble(table.getDouble(entry + 24)) : table.getLong(entry + 24);
+            long segmentOffset = table.getLong(entry + 32);
+            long segmentLength = table.getLong(entry + 40);
+            long chunksOffset = version >= 4 ? table.getLong(entry + 48) : directoryOffset;
+            int chunkCount = version >= 4 ? table.getInt(entry + 56) : 0;
+            if (nameOffset < 0 || nameLength < 0 || nameOffset + nameLength > names.capacity()
+                    || historyCount < 0 || segmentLength < historyCount * (long) bytesPerEntry + 4 || segmentLength > Integer.MAX_VALUE
+                    || segmentOffset < historyOffset || segmentOffset + segmentLength > directoryOffset
+                    || archivedCount < 0 || chunkCount < 0 || (archivedCount > 0) != (chunkCount > 0)
+                    || chunksOffset < directoryOffset
+                    || chunksOffset + (long) chunkCount * CHUNK_REF_SIZE > namesOffset) {
+                throw new IOException("Corrupt entry " + i + " in snapshot " + file);
+            }
+
+            if (windowCount == 0 || segmentOffset < starts[windowCount - 1] || segmentOffset + segmentLength > windowEnd) {
+                if (windowCount == starts.length) {
+                    starts = Arrays.copyOf(starts, windowCount * 2);
+                    mapped = Arrays.copyOf(mapped, windowCount * 2);
+                }
+                windowEnd = Math.min(namesOffset, segmentOffset + Math.max(WINDOW_SIZE, segmentLength));
+                starts[windowCount] = segmentOffset;
+                mapped[windowCount] = channel.map(FileChannel.MapMode.READ_ONLY, segmentOffset, windowEnd - segmentOffset);
+                windowCount++;
+            }
+
+            if (create) {
+                if (nameLength > nameBytes.length) {
+                    nameBytes = new byte[Math.max(nameLength, nameBytes.length * 2)];
+                }
+                names.get((int) nameOffset, nameBytes, 0, nameLength);
+                String holder = new String(nameBytes, 0, nameLength, StandardCharsets.UTF_8);
+                TransactionLog history;
+                if (version == 1) {
+                    // Converted up front; the columns cannot be paged in as they are
+                    ByteBuffer segment = mapped[windowCount - 1]
+                            .slice((int) (segmentOffset - starts[windowCount - 1]), (int) segmentLength)
+                            .order(ByteOrder.LITTLE_ENDIAN);
+                    history = TransactionLog.readDoubleColumns(segment, historyCount);
+                } else {
+                    long[] chunks = readChunks(directory, (int) (chunksOffset - directoryOffset), chunkCount,
+                            archivedCount, i);
+                    history = TransactionLog.onDisk(this, segmentOffset, (int) segmentLength, historyCount, archive,
+                            chunks, archivedCount);
+                }
+                if (!accounts.add(new BankAccount(accountNumber, holder, balance, history))) {
+                    throw new IOException("Duplicate account " + accountNumber + " in snapshot " + file);
+                }
+            } else {
+                BankAccount account = accounts.get(accountNumber);
+                if (account == null) {
+                    throw new IOException("Snapshot " + file + " has unknown account " + accountNumber);
+                }
+                account.getTransactionLog().rebind(this, segmentOffset, (int) segmentLength, historyCount);
+            }
+        }
+        windowStarts = Arrays.copyOf(starts, windowCount);
+        windows = Arrays.copyOf(mapped, windowCount);
+    }
+
+    // Chunk references in the form TransactionLog keeps them; their end indexes must ascend to archivedCount
+    private long[] readChunks(ByteBuffer directory, int position, int chunkCount, int archivedCount, int entry)
+            throws IOException {
+        long[] chunks = new long[chunkCount * 3];
+        int previousEnd = 0;
+        for (int c = 0; c < chunkCount; c++) {
+            int ref = position + c * CHUNK_REF_SIZE;
+            int length = directory.getInt(ref + 16);
+            int end = directory.getInt(ref + 20);
+            if (end <= previousEnd || length <= 0) {
+                throw new IOException("Corrupt archive directory for entry " + entry + " in snapshot " + file);
+            }
+            chunks[c * 3] = directory.getLong(ref);
+            chunks[c * 3 + 1] = directory.getLong(ref + 8);
+            chunks[c * 3 + 2] = (long) length << 32 | end;
+            previousEnd = end;
+        }
+        if (previousEnd != archivedCount) {
+            throw new IOException("Corrupt archive directory for entry " + entry + " in snapshot " + file);
+        }
+        return chunks;
+    }
+
+    // A history segment as a little-endian buffer positioned at its first byte
+    ByteBuffer segment(long offset, int length) {
+        int window = Arrays.binarySearch(windowStarts, offset);
+        if (window < 0) {
+            window = -window - 2;
+        }
+        return windows[window].slice((int) (offset - windowStarts[window]), length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    // Writes the accounts as the next generation of the snapshot, syncs it and points accounts.dat.current
+    // at it, then returns the new file with every history rebound to it. The generation it replaces is
+    // left for the caller to delete once unmapped. Callers must exclude all writers.
+    static SnapshotFile write(File file, AccountStore accounts, Aggregates aggregates, long sequence)
+            throws IOException {
+        long generation = generation(file) + 1;
+        File target = generationFile(file, generation);
+        File tmp = new File(target.getPath() + ".tmp");
+        int count = accounts.size();
+        long historyOffset = HEADER_SIZE + (long) count * ENTRY_SIZE;
+        if (historyOffset > Integer.MAX_VALUE) {
+            throw new IOException("Too many accounts for one snapshot: " + count);
+        }
+        ByteBuffer table = ByteBuffer.allocate(count * ENTRY_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+        try (FileChannel channel = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Output out = new Output(channel, historyOffset);
+            for (BankAccount account : accounts) {
+                TransactionLog history = account.getTransactionLog();
+                long start = out.position();
+                history.writeColumns(out);
+                table.putInt(account.getAccountNumber());
+                table.putInt(history.size() - history.archived());
+                table.putLong(0L); // name offset, filled in below
+                table.putInt(0);
+                table.putInt(history.archived());
+                table.putLong(account.getBalance());
+                table.putLong(start);
+                table.putLong(out.position() - start);
+                table.putLong(0L); // directory offset, filled in below
+                table.putInt(history.chunks().length / 3);
+                table.putInt(0);
+            }
+
+            long directoryOffset = out.position();
+            int entry = 0;
+            for (BankAccount account : accounts) {
+                long[] chunks = account.getTransactionLog().chunks();
+                table.putLong(entry + 48, out.position());
+                for (int c = 0; c < chunks.length; c += 3) {
+                    out.putLong(chunks[c]);
+                    out.putLong(chunks[c + 1]);
+                    out.putInt((int) (chunks[c + 2] >>> 32));
+                    out.putInt((int) chunks[c + 2]);
+                }
+                entry += ENTRY_SIZE;
+            }
+
+            long namesOffset = out.position();
+            entry = 0;
+            for (BankAccount account : accounts) {
+                byte[] name = account.getAccountHolder().getBytes(StandardCharsets.UTF_8);
+                table.putLong(entry + 8, out.position() - namesOffset);
+                table.putInt(entry + 16, name.length);
+                out.putBytes(name, name.length);
+                entry += ENTRY_SIZE;
+            }
+            long volumesOffset = out.position();
+            aggregates.writeVolumes(out);
+            long fileLength = out.position();
+            out.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putLong(sequence);
+            header.putInt(count);
+            header.putInt(0);
+            header.putLong(historyOffset);
+            header.putLong(namesOffset);
+            header.putLong(fileLength);
+            header.putLong(directoryOffset);
+            header.putLong(volumesOffset);
+            header.clear();
+            table.flip();
+            writeFully(channel, header, 0);
+            writeFully(channel, table, HEADER_SIZE);
+            channel.force(true);
+            Metrics.SNAPSHOT_BYTES.add(fileLength);
+        }
+        // Nothing maps the new name yet; a leftover from a checkpoint that crashed before its pointer is replaced
+        Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        // Both renames must survive a crash before the caller empties the journal
+        publish(file, generation);
+
+        SnapshotFile snapshot = new SnapshotFile(target);
+        try {
+            snapshot.bind(accounts, null);
+        } catch (IOException | RuntimeException e) {
+            snapshot.close();
+            throw e;
+        }
+        return snapshot;
+    }
+
+    // Mapped windows stay readable until collected; only the channel is released here
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // The file holding the current generation number, a few bytes that are never mapped
+    static File pointerFor(File file) {
+        return new File(file.getPath() + ".current");
+    }
+
+    // The snapshot to load: the generation the pointer names, or the file itself if there is no pointer yet
+    static File current(File file) throws IOException {
+        long generation = generation(file);
+        if (generation == 0) {
+            return file;
+        }
+        File current = generationFile(file, generation);
+        if (!current.exists()) {
+            // Also seen by a reader that lost a race with a checkpoint deleting the generation it read
+            throw new NoSuchFileException(current.getPath(), null, "named by " + pointerFor(file) + " but missing");
+        }
+        return current;
+    }
+
+    // Removes generations and temporary files the pointer no longer names, left by a crash or by a
+    // platform that would not delete a file while it was still mapped. Only the owning process calls this.
+    static void removeStale(File file) throws IOException {
+        File current = current(file);
+        File directory = file.getAbsoluteFile().getParentFile();
+        String prefix = file.getName() + ".";
+        File[] candidates = directory.listFiles((dir, name) -> name.startsWith(prefix)
+                && name.substring(prefix.length()).matches("\\d+(\\.tmp)?|tmp|current\\.tmp"));
+        if (candidates == null) {
+            return;
+        }
+        for (File candidate : candidates) {
+            if (!candidate.getName().equals(current.getName())) {
+                discard(candidate);
+            }
+        }
+    }
+
+    // Best effort: Windows refuses while some mapping of the file is still reachable, in which case the
+    // next writable open removes it
+    static void discard(File file) {
+        try {
+            Files.deleteIfExists(file.toPath());
+        } catch (IOException e) {
+            // Left for removeStale()
+        }
+    }
+
+    private static long generation(File file) throws IOException {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(pointerFor(file).toPath());
+        } catch (NoSuchFileException e) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(new String(bytes, StandardCharsets.US_ASCII).trim());
+        } catch (NumberFormatException e) {
+            throw new IOException("Unreadable snapshot pointer " + pointerFor(file), e);
+        }
+    }
+
+    private static File generationFile(File file, long generation) {
+        return new File(file.getPath() + "." + generation);
+    }
+
+    // Replaces the pointer the same way snapshots used to be replaced; it is only ever read whole
+    private static void publish(File file, long generation) throws IOException {
+        File pointer = pointerFor(file);
+        File tmp = new File(pointer.getPath() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(channel, ByteBuffer.wrap((generation + "\n").getBytes(StandardCharsets.US_ASCII)), 0);
+            channel.force(true);
+        }
+        Files.move(tmp.toPath(), pointer.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(file.getAbsoluteFile().getParentFile());
+    }
+
+    // Forces the directory entries, so a file renamed into it stays renamed after a crash.
+    // Skipped where a directory cannot be opened for reading, as on Windows.
+    static void syncDirectory(File directory) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ);
+        } catch (IOException e) {
+            return;
+        }
+        try (channel) {
+            channel.force(true);
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            position += channel.write(buf, position);
+        }
+    }
+
+    // Buffered sequential writer used to lay out the history and name segments
+    static final class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+        private long position;
+
+        Output(FileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+        }
+
+        long position() {
+            return position + buf.position();
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(4);
+            buf.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(8);
+            buf.putLong(value);
+        }
+
+        void putInts(int[] values, int length) throws IOException {
+            int done = 0;
+            while (done < length) {
+                ensure(4);
+                int n = Math.min(length - done, buf.remaining() / 4);
+                buf.asIntBuffer().put(values, done, n);
+                buf.position(buf.position() + n * 4);
+                done += n;
+            }
+        }
+
+        void putZeros(long length) throws IOException {
+            while (length > 0) {
+                ensure(1);
+                int n = (int) Math.min(length, buf.remaining());
+                for (int i = 0; i < n; i++) {
+                    buf.put((byte) 0);
+                }
+                length -= n;
+            }
+        }
+
+        void putLongs(long[] values, int length) throws IOException {
+            int done = 0;
+            while (done < length) {
+                ensure(8);
+                int n = Math.min(length - done, buf.remaining() / 8);
+                buf.asLongBuffer().put(values, done, n);
+                buf.position(buf.position() + n * 8);
+                done += n;
+            }
+        }
+
+        // Copies a segment of an older snapshot without decoding it
+        void putBuffer(ByteBuffer src) throws IOException {
+            while (src.hasRemaining()) {
+                ensure(1);
+                int n = Math.min(src.remaining(), buf.remaining());
+                buf.put(src.slice(src.position(), n));
+                src.position(src.position() + n);
+            }
+        }
+
+        void putBytes(byte[] values, int length) throws IOException {
+            int done = 0;
+            while (done < length) {
+                ensure(1);
+                int n = Math.min(length - done, buf.remaining());
+                buf.put(values, done, n);
+                done += n;
+            }
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buf.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            buf.flip();
+            while (buf.hasRemaining()) {
+                position += channel.write(buf, position);
+            }
+            buf.clear();
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package banking;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Keeps transactions/account_N.txt current by appending only the entries written since the last call.
+// The balance line is a fixed-width field so it can be rewritten in place without touching the rest.
+// Files are written from account views, so callers need not hold the account's lock while the disk is busy.
+class TransactionFileWriter implements AutoCloseable {
+    private static final String LINE = System.lineSeparator();
+    private static final String BALANCE_PREFIX = "Current Balance: ";
+    private static final int BALANCE_WIDTH = 32;
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private final File directory;
+    private final int maxOpenFiles;
+    private final Charset charset = Charset.defaultCharset();
+    // Entries already on disk per account; the first touch in a session rewrites the file in full
+    private final Map<Integer, Integer> written = new HashMap<>();
+    private final LinkedHashMap<Integer, AccountFile> open;
+    private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+    private static final class AccountFile {
+        final FileChannel channel;
+        final long balancePosition;
+        long end;
+
+        AccountFile(FileChannel channel, long balancePosition, long end) {
+            this.channel = channel;
+            this.balancePosition = balancePosition;
+            this.end = end;
+        }
+    }
+
+    public TransactionFileWriter(File directory, int maxOpenFiles) {
+        this.directory = directory;
+        this.maxOpenFiles = maxOpenFiles;
+        this.open = new LinkedHashMap<Integer, AccountFile>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, AccountFile> eldest) {
+                if (size() > TransactionFileWriter.this.maxOpenFiles) {
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public File fileFor(int accountNumber) {
+        return new File(directory, "account_" + accountNumber + ".txt");
+    }
+
+    // Appends the view's entries not yet in the file and refreshes the balance field; a view older than
+    // the file is ignored
+    public synchronized void append(BankAccount.View account) throws IOException {
+        long start = System.nanoTime();
+        int accountNumber = account.accountNumber;
+        Integer done = written.get(accountNumber);
+        if (done != null && account.version < done) {
+            return;
+        }
+        String balance = Money.format(account.balance);
+        if (done == null || balance.length() > BALANCE_WIDTH) {
+            writeAll(account);
+            Metrics.SAVE_TRANSACTION_FILE.stop(start);
+            return;
+        }
+        AccountFile file = open.get(accountNumber);
+        if (file == null) {
+            FileChannel channel = FileChannel.open(fileFor(accountNumber).toPath(), StandardOpenOption.WRITE);
+            file = new AccountFile(channel, headerBalancePosition(account), channel.size());
+            open.put(accountNumber, file);
+        }
+        int count = account.version;
+        long previousEnd = file.end;
+        ByteBuffer buf = buffer;
+        try {
+            for (int i = done; i < count; i++) {
+                byte[] line = (account.history.format(i) + LINE).getBytes(charset);
+                if (line.length > buf.remaining()) {
+                    file.end += flush(file.channel, buf, file.end);
+                    if (line.length > buf.capacity()) {
+                        buf = buffer = ByteBuffer.allocate(line.length);
+                    }
+                }
+                buf.put(line);
+            }
+            file.end += flush(file.channel, buf, file.end);
+            write(file.channel, ByteBuffer.wrap(padBalance(balance).getBytes(charset)), file.balancePosition);
+        } catch (IOException | RuntimeException e) {
+            // Cut off what this call appended so a retry writes the same entries exactly once
+            file.end = previousEnd;
+            try {
+                file.channel.truncate(previousEnd);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+                // The file's end is unknown now; the next call rewrites it in full
+                open.remove(accountNumber);
+                closeQuietly(file);
+                written.remove(accountNumber);
+            }
+            throw e;
+        } finally {
+            // Never carry bytes meant for this file into the next account's
+            buffer.clear();
+        }
+        written.put(accountNumber, count);
+        Metrics.SAVE_TRANSACTION_FILE.stop(start);
+    }
+
+    // Rewrites the complete file: header followed by the entire history
+    public synchronized void export(BankAccount.View account) throws IOException {
+        long start = System.nanoTime();
+        writeAll(account);
+        Metrics.SAVE_TRANSACTION_FILE.stop(start);
+    }
+
+    private void writeAll(BankAccount.View account) throws IOException {
+        int accountNumber = account.accountNumber;
+        AccountFile previous = open.remove(accountNumber);
+        if (previous != null) {
+            closeQuietly(previous);
+        }
+        FileChannel channel = FileChannel.open(fileFor(accountNumber).toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        StringBuilder text = new StringBuilder(header(account));
+        int count = account.version;
+        long end = 0;
+        try {
+            for (int i = 0; i < count; i++) {
+                text.append(account.history.format(i)).append(LINE);
+                if (text.length() >= BUFFER_SIZE) {
+                    end += write(channel, ByteBuffer.wrap(text.toString().getBytes(charset)), end);
+                    text.setLength(0);
+                }
+            }
+            end += write(channel, ByteBuffer.wrap(text.toString().getBytes(charset)), end);
+        } catch (IOException | RuntimeException e) {
+            // The file is incomplete, so nothing may be appended to it; the next call starts over
+            written.remove(accountNumber);
+            try {
+                channel.close();
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+        open.put(accountNumber, new AccountFile(channel, headerBalancePosition(account), end));
+        written.put(accountNumber, count);
+    }
+
+    private String header(BankAccount.View account) {
+        return "Transaction History for Account #" + account.accountNumber + LINE
+                + "Account Holder: " + account.holder + LINE
+                + BALANCE_PREFIX + padBalance(Money.format(account.balance)) + LINE
+                + "\nTransactions:" + LINE;
+    }
+
+    private long headerBalancePosition(BankAccount.View account) {
+        String before = "Transaction History for Account #" + account.accountNumber + LINE
+                + "Account Holder: " + account.holder + LINE
+                + BALANCE_PREFIX;
+        return before.getBytes(charset).length;
+    }
+
+    private static String padBalance(String balance) {
+        StringBuilder field = new StringBuilder(BALANCE_WIDTH).append(balance);
+        while (field.length() < BALANCE_WIDTH) {
+            field.append(' ');
+        }
+        return field.toString();
+    }
+
+    private static int flush(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+        buf.flip();
+        int total = write(channel, buf, position);
+        buf.clear();
+        return total;
+    }
+
+    private static int write(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+        int total = 0;
+        while (buf.hasRemaining()) {
+            total += channel.write(buf, position + total);
+        }
+        Metrics.TRANSACTION_FILE_BYTES.add(total);
+        return total;
+    }
+
+    private static void closeQuietly(AccountFile file) {
+        try {
+            file.channel.close();
+        } catch (IOException e) {
+            // Every write is already handed to the OS, nothing is lost
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        for (Iterator<AccountFile> it = open.values().iterator(); it.hasNext(); ) {
+            closeQuietly(it.next());
+            it.remove();
+        }
+    }
+}
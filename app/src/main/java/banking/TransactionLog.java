@@ -0,0 +1,801 @@
+package banking;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Account history kept as parallel primitive columns; entries are only turned into text when displayed.
+// Entries live in three tiers, oldest first: chunks sealed into the HistoryArchive, a base in the
+// snapshot that stays in the file until something reads it, and an in-memory tail of entries added
+// since the snapshot. Indexes run across all three. Callers must hold the account's lock, except when
+// reading through a View.
+@SuppressWarnings("serial")
+class TransactionLog implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    static final byte NOTE = 0;
+    static final byte CREATED = 1;
+    static final byte DEPOSIT = 2;
+    static final byte WITHDRAW = 3;
+    static final byte TRANSFER_OUT = 4;
+    static final byte TRANSFER_IN = 5;
+    static final byte INTEREST = 6;
+
+    // DateTimeFormatter is immutable, so one instance serves every thread
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static final long[] NO_VALUES = new long[0];
+    private static final int[] NO_ACCOUNTS = new int[0];
+    private static final byte[] NO_TYPES = new byte[0];
+
+    // Point-in-time history of entries [0, size) that any thread may read without the account's lock, for
+    // as long as it likes. Entries never change once added, archive chunks and snapshot segments are
+    // immutable, and the log only appends past the used part of its column arrays or moves to new ones,
+    // so a view just keeps the references that were current when it was taken. Reads never page anything
+    // into the log: a base still on disk is read straight from the snapshot mapping.
+    static final class View {
+        private final int size;
+        private final int start;
+        private final int archived;
+        private final long[] chunks;
+        private final HistoryArchive archive;
+        private final SnapshotFile source;
+        private final long sourceOffset;
+        private final int sourceLength;
+        private final int baseFirst;
+        private final int baseCount;
+        private final long[] times;
+        private final long[] amounts;
+        private final long[] balances;
+        private final int[] counterparties;
+        private final byte[] types;
+        private final Map<Integer, String> notes;
+        // Decoded on first use; racing readers at worst decode the same thing twice
+        private volatile HistoryArchive.Chunk recent;
+        private volatile ByteBuffer segment;
+        private volatile Map<Integer, String> baseNotes;
+
+        private View(TransactionLog log) {
+            size = log.size;
+            start = log.start;
+            archived = log.archived;
+            chunks = log.chunks;
+            archive = log.archive;
+            source = log.source;
+            sourceOffset = log.sourceOffset;
+            sourceLength = log.sourceLength;
+            baseFirst = log.baseFirst;
+            baseCount = log.baseCount;
+            times = log.times;
+            amounts = log.amounts;
+            balances = log.balances;
+            counterparties = log.counterparties;
+            types = log.types;
+            notes = log.notes;
+        }
+
+        int size() {
+            return size;
+        }
+
+        long time(int index) {
+            if (index < archived) {
+                HistoryArchive.Chunk chunk = chunk(index);
+                return chunk.times[index - chunk.first];
+            }
+            if (index < start) {
+                return segment().getLong(baseSlot(index) * 8);
+            }
+            return times[tailSlot(index)];
+        }
+
+        byte type(int index) {
+            if (index < archived) {
+                HistoryArchive.Chunk chunk = chunk(index);
+                return chunk.types[index - chunk.first];
+            }
+            if (index < start) {
+                return segment().get(typesOffset() + baseSlot(index));
+            }
+            return types[tailSlot(index)];
+        }
+
+        long amount(int index) {
+            if (index < archived) {
+                HistoryArchive.Chunk chunk = chunk(index);
+                return chunk.amounts[index - chunk.first];
+            }
+            if (index < start) {
+                return segment().getLong((baseCount - baseFirst + baseSlot(index)) * 8);
+            }
+            return amounts[tailSlot(index)];
+        }
+
+        long balance(int index) {
+            if (index < archived) {
+                HistoryArchive.Chunk chunk = chunk(index);
+                return chunk.balances[index - chunk.first];
+            }
+            if (index < start) {
+                return segment().getLong((2 * (baseCount - baseFirst) + baseSlot(index)) * 8);
+            }
+            return balances[tailSlot(index)];
+        }
+
+        int counterparty(int index) {
+            if (index < archived) {
+                HistoryArchive.Chunk chunk = chunk(index);
+                return chunk.counterparties[index - chunk.first];
+            }
+            if (index < start) {
+                // Version 2 segments predate transfers and have no counterparty column
+                return source.version() >= 3 ? segment().getInt((baseCount - baseFirst) * 24 + baseSlot(index) * 4) : 0;
+            }
+            return counterparties[tailSlot(index)];
+        }
+
+        String format(int index) {
+            byte type = type(index);
+            if (type == NOTE) {
+                if (index < archived) {
+                    return chunk(index).notes.get(index);
+                }
+                return index < start ? baseNotes().get(index) : notes.get(index);
+            }
+            return TransactionLog.format(time(index), type, amount(index), balance(index), counterparty(index));
+        }
+
+        // Formats entries lazily; nothing is copied up front
+        List<String> lines() {
+            return new AbstractList<String>() {
+                @Override
+                public String get(int index) {
+                    return format(index);
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+
+        private int baseSlot(int index) {
+            if (index < 0) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+            }
+            return index - baseFirst;
+        }
+
+        private int tailSlot(int index) {
+            if (index >= size) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+            }
+            return index - start;
+        }
+
+        private int typesOffset() {
+            int n = baseCount - baseFirst;
+            return source.version() >= 3 ? n * 28 : n * 24;
+        }
+
+        private HistoryArchive.Chunk chunk(int index) {
+            HistoryArchive.Chunk chunk = recent;
+            if (chunk != null && index >= chunk.first && index < chunk.first + chunk.count) {
+                return chunk;
+            }
+            if (index < 0) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+            }
+            chunk = readChunk(archive, chunks, index);
+            recent = chunk;
+            return chunk;
+        }
+
+        private ByteBuffer segment() {
+            ByteBuffer current = segment;
+            if (current == null) {
+                current = source.segment(sourceOffset, sourceLength);
+                segment = current;
+            }
+            return current;
+        }
+
+        private Map<Integer, String> baseNotes() {
+            Map<Integer, String> current = baseNotes;
+            if (current == null) {
+                current = readNotes(source.segment(sourceOffset, sourceLength).position(typesOffset()
+                        + baseCount - baseFirst));
+                baseNotes = current;
+            }
+            return current;
+        }
+    }
+
+    // Columns hold entries [start, size); start is archived unless the base is still on disk.
+    // Amounts and balances are in minor units; counterparty is the other account of a transfer, else 0.
+    private transient long[] times;
+    private transient long[] amounts;
+    private transient long[] balances;
+    private transient int[] counterparties;
+    private transient byte[] types;
+    private transient int size;
+    private transient int start;
+    // Verbatim text of legacy entries that could not be parsed into columns. Never modified once set, so
+    // views share it; changes replace the whole map.
+    private transient Map<Integer, String> notes;
+
+    // Snapshot segment holding entries [baseFirst, baseCount); those below archived are no longer used
+    private transient SnapshotFile source;
+    private transient long sourceOffset;
+    private transient int sourceLength;
+    private transient int baseFirst;
+    private transient int baseCount;
+
+    // Entries [0, archived) are sealed in the archive. Three longs per chunk: segment id, offset, and
+    // frame length << 32 | end index, in entry order.
+    private transient HistoryArchive archive;
+    private transient long[] chunks;
+    private transient int archived;
+    // Most recently decoded chunk, kept for sequential reads
+    private transient HistoryArchive.Chunk recent;
+
+    public TransactionLog() {
+        allocate(8);
+        chunks = NO_VALUES;
+    }
+
+    private TransactionLog(SnapshotFile source, long offset, int length, int count, HistoryArchive archive,
+                           long[] chunks, int archived) {
+        this.archive = archive;
+        this.chunks = chunks;
+        this.archived = archived;
+        rebind(source, offset, length, count);
+    }
+
+    static TransactionLog onDisk(SnapshotFile source, long offset, int length, int count, HistoryArchive archive,
+                                 long[] chunks, int archived) {
+        return new TransactionLog(source, offset, length, count, archive, chunks, archived);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Taking a view is O(1) and copies nothing
+    View view() {
+        return new View(this);
+    }
+
+    int archived() {
+        return archived;
+    }
+
+    // Chunk references as laid out in the snapshot's archive directory
+    long[] chunks() {
+        return chunks;
+    }
+
+    // Appending never pages the base in
+    public void add(long time, byte type, long amount, long balance) {
+        add(time, type, amount, balance, 0);
+    }
+
+    public void add(long time, byte type, long amount, long balance, int counterparty) {
+        int slot = size - start;
+        if (slot == times.length) {
+            grow();
+        }
+        times[slot] = time;
+        types[slot] = type;
+        amounts[slot] = amount;
+        balances[slot] = balance;
+        counterparties[slot] = counterparty;
+        size++;
+    }
+
+    public long time(int index) {
+        if (index < archived) {
+            HistoryArchive.Chunk chunk = chunk(index);
+            return chunk.times[index - chunk.first];
+        }
+        int slot = slot(index);
+        return times[slot];
+    }
+
+    public byte type(int index) {
+        if (index < archived) {
+            HistoryArchive.Chunk chunk = chunk(index);
+            return chunk.types[index - chunk.first];
+        }
+        int slot = slot(index);
+        return types[slot];
+    }
+
+    public long amount(int index) {
+        if (index < archived) {
+            HistoryArchive.Chunk chunk = chunk(index);
+            return chunk.amounts[index - chunk.first];
+        }
+        int slot = slot(index);
+        return amounts[slot];
+    }
+
+    public long balance(int index) {
+        if (index < archived) {
+            HistoryArchive.Chunk chunk = chunk(index);
+            return chunk.balances[index - chunk.first];
+        }
+        int slot = slot(index);
+        return balances[slot];
+    }
+
+    public int counterparty(int index) {
+        if (index < archived) {
+            HistoryArchive.Chunk chunk = chunk(index);
+            return chunk.counterparties[index - chunk.first];
+        }
+        int slot = slot(index);
+        return counterparties[slot];
+    }
+
+    public String format(int index) {
+        if (index < archived) {
+            HistoryArchive.Chunk chunk = chunk(index);
+            int i = index - chunk.first;
+            return chunk.types[i] == NOTE ? chunk.notes.get(index) : format(chunk.times[i], chunk.types[i],
+                    chunk.amounts[i], chunk.balances[i], chunk.counterparties[i]);
+        }
+        int slot = slot(index);
+        if (types[slot] == NOTE) {
+            return notes.get(index);
+        }
+        return format(times[slot], types[slot], amounts[slot], balances[slot], counterparties[slot]);
+    }
+
+    private static String format(long time, byte type, long amount, long balance, int counterparty) {
+        StringBuilder text = new StringBuilder(80).append(timestamp(time)).append(" - ");
+        return appendMessage(text, type, amount, balance, counterparty).toString();
+    }
+
+    static String timestamp(long time) {
+        return TIMESTAMP.format(LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault()));
+    }
+
+    static String typeName(byte type) {
+        switch (type) {
+            case NOTE:
+                return "Note";
+            case CREATED:
+                return "Created";
+            case DEPOSIT:
+                return "Deposit";
+            case WITHDRAW:
+                return "Withdraw";
+            case TRANSFER_OUT:
+                return "Transfer Out";
+            case TRANSFER_IN:
+                return "Transfer In";
+            case INTEREST:
+                return "Interest";
+            default:
+                return "Unknown";
+        }
+    }
+
+    // True when the snapshot part of this history is in memory and could be dropped again
+    boolean isBaseLoaded() {
+        return source != null && start < baseCount;
+    }
+
+    // Entries paged in from the snapshot or the archive, which evictBase() would give back
+    int pagedIn() {
+        int loaded = isBaseLoaded() ? baseCount - start : 0;
+        return recent == null ? loaded : loaded + recent.count;
+    }
+
+    // Drops the in-memory copy of the base and any decoded archive chunk, keeping only the entries
+    // added since the snapshot
+    void evictBase() {
+        recent = null;
+        if (!isBaseLoaded()) {
+            return;
+        }
+        int from = baseCount - start;
+        int to = size - start;
+        boolean empty = from == to;
+        long[] tailTimes = empty ? NO_VALUES : Arrays.copyOfRange(times, from, to);
+        long[] tailAmounts = empty ? NO_VALUES : Arrays.copyOfRange(amounts, from, to);
+        long[] tailBalances = empty ? NO_VALUES : Arrays.copyOfRange(balances, from, to);
+        int[] tailCounterparties = empty ? NO_ACCOUNTS : Arrays.copyOfRange(counterparties, from, to);
+        byte[] tailTypes = empty ? NO_TYPES : Arrays.copyOfRange(types, from, to);
+        times = tailTimes;
+        amounts = tailAmounts;
+        balances = tailBalances;
+        counterparties = tailCounterparties;
+        types = tailTypes;
+        notes = null;
+        start = baseCount;
+    }
+
+    // Points the base at a newly written snapshot that holds every entry not in the archive
+    void rebind(SnapshotFile source, long offset, int length, int count) {
+        if (times != null && count != size - archived) {
+            throw new IllegalStateException("Snapshot has " + count + " entries, history has " + (size - archived));
+        }
+        this.source = source;
+        this.sourceOffset = offset;
+        this.sourceLength = length;
+        this.baseFirst = archived;
+        this.baseCount = archived + count;
+        if (times == null || start > archived) {
+            // Nothing is paged in, and any tail is now part of the base on disk
+            clearColumns();
+            start = baseCount;
+        }
+        size = baseCount;
+    }
+
+    // Records that entries [archived, end) are now the newest chunk in the archive and drops any
+    // in-memory copy of them. Called by HistoryArchive.seal once the chunk is durable.
+    void archiveTo(int end, HistoryArchive archive, long id, long offset, int length) {
+        int n = chunks.length;
+        chunks = Arrays.copyOf(chunks, n + 3);
+        chunks[n] = id;
+        chunks[n + 1] = offset;
+        chunks[n + 2] = (long) length << 32 | end;
+        this.archive = archive;
+        archived = end;
+        if (start < end) {
+            int drop = end - start;
+            int keep = Math.max(8, size - end);
+            times = Arrays.copyOfRange(times, drop, drop + keep);
+            amounts = Arrays.copyOfRange(amounts, drop, drop + keep);
+            balances = Arrays.copyOfRange(balances, drop, drop + keep);
+            counterparties = Arrays.copyOfRange(counterparties, drop, drop + keep);
+            types = Arrays.copyOfRange(types, drop, drop + keep);
+            start = end;
+        }
+        if (notes != null) {
+            Map<Integer, String> kept = new HashMap<>(notes);
+            kept.keySet().removeIf(index -> index < end);
+            notes = kept.isEmpty() ? null : Collections.unmodifiableMap(kept);
+        }
+    }
+
+    // Entries [from, to) for sealing into the archive, with from >= archived. An unloaded base is read
+    // straight from the snapshot mapping rather than paged in.
+    HistoryArchive.Chunk copy(int from, int to) {
+        HistoryArchive.Chunk chunk = new HistoryArchive.Chunk(from, to - from);
+        View view = view();
+        for (int i = from; i < to; i++) {
+            int k = i - from;
+            chunk.times[k] = view.time(i);
+            chunk.amounts[k] = view.amount(i);
+            chunk.balances[k] = view.balance(i);
+            chunk.counterparties[k] = view.counterparty(i);
+            chunk.types[k] = view.type(i);
+            if (chunk.types[k] == NOTE) {
+                chunk.addNote(i, view.format(i));
+            }
+        }
+        return chunk;
+    }
+
+    // The archive chunk holding the entry, decoded on first use
+    private HistoryArchive.Chunk chunk(int index) {
+        HistoryArchive.Chunk chunk = recent;
+        if (chunk != null && index >= chunk.first && index < chunk.first + chunk.count) {
+            return chunk;
+        }
+        if (index < 0) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+        }
+        chunk = readChunk(archive, chunks, index);
+        recent = chunk;
+        return chunk;
+    }
+
+    private static HistoryArchive.Chunk readChunk(HistoryArchive archive, long[] chunks, int index) {
+        // First chunk whose end lies beyond the index
+        int low = 0;
+        int high = chunks.length / 3 - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if ((int) chunks[middle * 3 + 2] <= index) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        int first = low == 0 ? 0 : (int) chunks[low * 3 - 1];
+        int end = (int) chunks[low * 3 + 2];
+        try {
+            return archive.read(chunks[low * 3], chunks[low * 3 + 1], (int) (chunks[low * 3 + 2] >>> 32), first,
+                    end - first);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read archived history", e);
+        }
+    }
+
+    private static StringBuilder appendMessage(StringBuilder out, byte type, long amount, long balance,
+                                               int counterparty) {
+        switch (type) {
+            case CREATED:
+                return Money.append(out.append("Account created with initial balance: "), amount);
+            case DEPOSIT:
+                return Money.append(Money.append(out.append("Deposited: "), amount).append(", New Balance: "), balance);
+            case WITHDRAW:
+                return Money.append(Money.append(out.append("Withdrew: "), amount).append(", New Balance: "), balance);
+            case TRANSFER_OUT:
+                return Money.append(Money.append(out.append("Transferred: "), amount).append(" to Account #")
+                        .append(counterparty).append(", New Balance: "), balance);
+            case TRANSFER_IN:
+                return Money.append(Money.append(out.append("Received: "), amount).append(" from Account #")
+                        .append(counterparty).append(", New Balance: "), balance);
+            case INTEREST:
+                return Money.append(Money.append(out.append("Interest credited: "), amount).append(", New Balance: "),
+                        balance);
+            default:
+                throw new IllegalStateException("Unknown transaction type " + type);
+        }
+    }
+
+    // Converts the formatted strings stored by older versions back into columns
+    public static TransactionLog fromStrings(List<String> lines) {
+        TransactionLog log = new TransactionLog();
+        Map<Integer, String> notes = new HashMap<>();
+        for (String line : lines) {
+            if (!log.parse(line)) {
+                notes.put(log.size, line);
+                log.add(0L, NOTE, 0, 0);
+            }
+        }
+        log.notes = notes.isEmpty() ? null : Collections.unmodifiableMap(notes);
+        return log;
+    }
+
+    private boolean parse(String line) {
+        int split = line.indexOf(" - ");
+        if (split < 0) {
+            return false;
+        }
+        try {
+            long time = LocalDateTime.parse(line.substring(0, split), TIMESTAMP)
+                    .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            String message = line.substring(split + 3);
+            byte type;
+            long amount;
+            long balance = 0;
+            if (message.startsWith("Account created with initial balance: ")) {
+                type = CREATED;
+                amount = Money.parse(message.substring(message.indexOf(": ") + 2));
+            } else if (message.startsWith("Deposited: ") || message.startsWith("Withdrew: ")) {
+                type = message.startsWith("Deposited: ") ? DEPOSIT : WITHDRAW;
+                int comma = message.indexOf(", New Balance: ");
+                if (comma < 0) {
+                    return false;
+                }
+                amount = Money.parse(message.substring(message.indexOf(": ") + 2, comma));
+                balance = Money.parse(message.substring(comma + ", New Balance: ".length()));
+            } else {
+                return false;
+            }
+            // Only accept entries that render back to exactly the same text
+            TransactionLog probe = new TransactionLog();
+            probe.add(time, type, amount, balance);
+            if (!probe.format(0).equals(line)) {
+                return false;
+            }
+            add(time, type, amount, balance);
+            return true;
+        } catch (DateTimeParseException | NumberFormatException e) {
+            return false;
+        }
+    }
+
+    // May replace the column arrays, so callers must index them only after it returns
+    private int slot(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+        }
+        if (index < start) {
+            loadBase();
+        }
+        return index - start;
+    }
+
+    // Reads the base columns out of the snapshot mapping in front of the tail, skipping any leading
+    // entries that have been sealed into the archive since the snapshot was written
+    private void loadBase() {
+        ByteBuffer segment = source.segment(sourceOffset, sourceLength);
+        int n = baseCount - baseFirst;
+        int skip = archived - baseFirst;
+        int base = baseCount - archived;
+        int tail = size - baseCount;
+        int capacity = Math.max(8, base + tail);
+        long[] newTimes = new long[capacity];
+        long[] newAmounts = new long[capacity];
+        long[] newBalances = new long[capacity];
+        int[] newCounterparties = new int[capacity];
+        byte[] newTypes = new byte[capacity];
+        segment.position(skip * 8);
+        segment.asLongBuffer().get(newTimes, 0, base);
+        segment.position((n + skip) * 8);
+        segment.asLongBuffer().get(newAmounts, 0, base);
+        segment.position((2 * n + skip) * 8);
+        segment.asLongBuffer().get(newBalances, 0, base);
+        int typesOffset = n * 24;
+        // Version 2 segments predate transfers and have no counterparty column
+        if (source.version() >= 3) {
+            segment.position(n * 24 + skip * 4);
+            segment.asIntBuffer().get(newCounterparties, 0, base);
+            typesOffset += n * 4;
+        }
+        segment.position(typesOffset + skip);
+        segment.get(newTypes, 0, base);
+        Map<Integer, String> loadedNotes = readNotes(segment.position(typesOffset + n));
+        if (loadedNotes != null && skip > 0) {
+            loadedNotes.keySet().removeIf(index -> index < archived);
+        }
+        System.arraycopy(times, 0, newTimes, base, tail);
+        System.arraycopy(amounts, 0, newAmounts, base, tail);
+        System.arraycopy(balances, 0, newBalances, base, tail);
+        System.arraycopy(counterparties, 0, newCounterparties, base, tail);
+        System.arraycopy(types, 0, newTypes, base, tail);
+        times = newTimes;
+        amounts = newAmounts;
+        balances = newBalances;
+        counterparties = newCounterparties;
+        types = newTypes;
+        notes = loadedNotes == null ? null : Collections.unmodifiableMap(loadedNotes);
+        start = archived;
+    }
+
+    private static Map<Integer, String> readNotes(ByteBuffer segment) {
+        int noteCount = segment.getInt();
+        if (noteCount == 0) {
+            return null;
+        }
+        Map<Integer, String> notes = new HashMap<>();
+        for (int i = 0; i < noteCount; i++) {
+            int index = segment.getInt();
+            byte[] text = new byte[segment.getInt()];
+            segment.get(text);
+            notes.put(index, new String(text, StandardCharsets.UTF_8));
+        }
+        return notes;
+    }
+
+    // Decodes a segment from a version 1 snapshot, which stored amounts and balances as doubles
+    static TransactionLog readDoubleColumns(ByteBuffer segment, int count) {
+        TransactionLog log = new TransactionLog();
+        log.allocate(Math.max(8, count));
+        segment.asLongBuffer().get(log.times, 0, count);
+        for (int i = 0; i < count; i++) {
+            log.amounts[i] = Money.fromDouble(segment.getDouble(count * 8 + i * 8));
+            log.balances[i] = Money.fromDouble(segment.getDouble(count * 16 + i * 8));
+        }
+        segment.position(count * 24);
+        segment.get(log.types, 0, count);
+        log.size = count;
+        Map<Integer, String> notes = readNotes(segment);
+        log.notes = notes == null ? null : Collections.unmodifiableMap(notes);
+        return log;
+    }
+
+    private void clearColumns() {
+        times = NO_VALUES;
+        amounts = NO_VALUES;
+        balances = NO_VALUES;
+        counterparties = NO_ACCOUNTS;
+        types = NO_TYPES;
+    }
+
+    private void grow() {
+        int capacity = Math.max(8, times.length << 1);
+        times = Arrays.copyOf(times, capacity);
+        types = Arrays.copyOf(types, capacity);
+        amounts = Arrays.copyOf(amounts, capacity);
+        balances = Arrays.copyOf(balances, capacity);
+        counterparties = Arrays.copyOf(counterparties, capacity);
+    }
+
+    private void allocate(int capacity) {
+        times = new long[capacity];
+        types = new byte[capacity];
+        amounts = new long[capacity];
+        balances = new long[capacity];
+        counterparties = new int[capacity];
+    }
+
+    // Snapshot segment for the entries not in the archive: the time, amount and balance columns, the
+    // counterparty and type columns, then any legacy notes. A base that was never paged in is copied
+    // column by column straight from the old mapping.
+    void writeColumns(SnapshotFile.Output out) throws IOException {
+        int tail = size - start;
+        if (start == archived) {
+            out.putLongs(times, tail);
+            out.putLongs(amounts, tail);
+            out.putLongs(balances, tail);
+            out.putInts(counterparties, tail);
+            out.putBytes(types, tail);
+            writeNotes(out, notes);
+            return;
+        }
+        ByteBuffer segment = source.segment(sourceOffset, sourceLength);
+        int n = baseCount - baseFirst;
+        int skip = archived - baseFirst;
+        int base = baseCount - archived;
+        out.putBuffer(segment.slice(skip * 8, base * 8));
+        out.putLongs(times, tail);
+        out.putBuffer(segment.slice((n + skip) * 8, base * 8));
+        out.putLongs(amounts, tail);
+        out.putBuffer(segment.slice((2 * n + skip) * 8, base * 8));
+        out.putLongs(balances, tail);
+        int typesOffset = n * 24;
+        if (source.version() >= 3) {
+            out.putBuffer(segment.slice(n * 24 + skip * 4, base * 4));
+            typesOffset += n * 4;
+        } else {
+            out.putZeros(base * 4L);
+        }
+        out.putInts(counterparties, tail);
+        out.putBuffer(segment.slice(typesOffset + skip, base));
+        out.putBytes(types, tail);
+        // Notes only ever come from the base; those now in the archive are left out
+        Map<Integer, String> baseNotes = readNotes(segment.position(typesOffset + n));
+        if (baseNotes != null && skip > 0) {
+            baseNotes.keySet().removeIf(index -> index < archived);
+        }
+        writeNotes(out, baseNotes);
+    }
+
+    private static void writeNotes(SnapshotFile.Output out, Map<Integer, String> notes) throws IOException {
+        if (notes == null) {
+            out.putInt(0);
+            return;
+        }
+        out.putInt(notes.size());
+        for (Map.Entry<Integer, String> note : notes.entrySet()) {
+            byte[] text = note.getValue().getBytes(StandardCharsets.UTF_8);
+            out.putInt(note.getKey());
+            out.putInt(text.length);
+            out.putBytes(text, text.length);
+        }
+    }
+
+    // Java serialization is only used to read accounts.dat files from before the binary snapshot, whose
+    // streams hold double amounts. Nothing writes it any more: the stream could not carry exact amounts
+    // or counterparties.
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        int count = in.readInt();
+        allocate(Math.max(8, count));
+        for (int i = 0; i < count; i++) {
+            times[i] = in.readLong();
+            types[i] = in.readByte();
+            amounts[i] = Money.fromDouble(in.readDouble());
+            balances[i] = Money.fromDouble(in.readDouble());
+        }
+        size = count;
+        chunks = NO_VALUES;
+        Map<Integer, String> legacyNotes = (Map<Integer, String>) in.readObject();
+        notes = legacyNotes == null ? null : Collections.unmodifiableMap(legacyNotes);
+    }
+}
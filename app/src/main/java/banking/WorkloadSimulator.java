@@ -0,0 +1,317 @@
+package banking;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+// Synthetic load against the real ledger, journal and transaction files: many threads issue a weighted
+// mix of operations on accounts picked with a Zipfian skew, so a few hot accounts take most of the
+// traffic. Prints throughput, per-operation latency percentiles, GC activity and bytes written.
+final class WorkloadSimulator {
+    enum Operation {
+        CREATE, DEPOSIT, WITHDRAW, BALANCE, HISTORY
+    }
+
+    // Settings; everything after --simulate is key=value, e.g. accounts=100000 threads=16 seconds=30
+    // skew=0.99 mix=create:1,deposit:40,withdraw:30,balance:20,history:9 dir=sim awaitDurable=false
+    static final class Config {
+        int accounts = 10_000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seconds = 10;
+        double skew = 0.99;
+        int[] mix = {1, 40, 30, 20, 9};
+        // Data directory; a temporary one is created and deleted when unset
+        File dir;
+        // Wait for each posting to be on disk, as the server does, rather than fire and forget like the GUI
+        boolean awaitDurable = true;
+        AccountJournal.SyncMode syncMode = AccountJournal.SyncMode.EVERY_COMMIT;
+        long groupCommitMicros = 200;
+        long checkpointBytes = 8L << 20;
+        long historyCacheEntries = 1_000_000;
+        int historyWindow = 10_000;
+        int maxOpenTransactionFiles = 64;
+        int changeFeedCapacity = 64 * 1024;
+
+        Config parse(String[] args, int from) {
+            for (int i = from; i < args.length; i++) {
+                int eq = args[i].indexOf('=');
+                if (eq < 0) {
+                    throw new IllegalArgumentException("Expected key=value: " + args[i]);
+                }
+                String key = args[i].substring(0, eq);
+                String value = args[i].substring(eq + 1);
+                switch (key) {
+                    case "accounts":
+                        accounts = Integer.parseInt(value);
+                        break;
+                    case "threads":
+                        threads = Integer.parseInt(value);
+                        break;
+                    case "seconds":
+                        seconds = Long.parseLong(value);
+                        break;
+                    case "skew":
+                        skew = Double.parseDouble(value);
+                        break;
+                    case "mix":
+                        mix = parseMix(value);
+                        break;
+                    case "dir":
+                        dir = new File(value);
+                        break;
+                    case "awaitDurable":
+                        awaitDurable = Boolean.parseBoolean(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown setting: " + key);
+                }
+            }
+            if (accounts < 2 || threads < 1 || seconds < 1 || skew < 0) {
+                throw new IllegalArgumentException("Need accounts >= 2, threads >= 1, seconds >= 1 and skew >= 0.");
+            }
+            return this;
+        }
+
+        private static int[] parseMix(String value) {
+            int[] weights = new int[Operation.values().length];
+            for (String part : value.split(",")) {
+                String[] pair = part.split(":");
+                if (pair.length != 2) {
+                    throw new IllegalArgumentException("Expected operation:weight in mix: " + part);
+                }
+                weights[Operation.valueOf(pair[0].trim().toUpperCase()).ordinal()] = Integer.parseInt(pair[1].trim());
+            }
+            return weights;
+        }
+    }
+
+    // Ranks 1..n with P(k) proportional to 1/k^skew, drawn by binary search over the cumulative distribution.
+    // Rank k is account number k, so account 1 is the hottest.
+    static final class Zipf {
+        private final double[] cdf;
+
+        Zipf(int n, double skew) {
+            cdf = new double[n];
+            double sum = 0;
+            for (int k = 1; k <= n; k++) {
+                sum += 1 / Math.pow(k, skew);
+                cdf[k - 1] = sum;
+            }
+            for (int i = 0; i < n; i++) {
+                cdf[i] /= sum;
+            }
+        }
+
+        int next(ThreadLocalRandom random) {
+            int index = Arrays.binarySearch(cdf, random.nextDouble());
+            return 1 + Math.min(cdf.length - 1, index < 0 ? -index - 1 : index);
+        }
+    }
+
+    private static final int HISTORY_PAGE = 50;
+
+    private final Config config;
+    private final LatencyHistogram[] latencies = new LatencyHistogram[Operation.values().length];
+    private final LongAdder[] rejected = new LongAdder[Operation.values().length];
+
+    WorkloadSimulator(Config config) {
+        this.config = config;
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+            rejected[i] = new LongAdder();
+        }
+    }
+
+    // Populates the accounts, runs the load for the configured time and returns the report
+    String run() throws IOException, InterruptedException {
+        Path dir = config.dir != null ? config.dir.toPath() : Files.createTempDirectory("bank-sim");
+        Files.createDirectories(dir.resolve("transactions"));
+        try {
+            return run(dir);
+        } finally {
+            if (config.dir == null) {
+                delete(dir);
+            }
+        }
+    }
+
+    private String run(Path dir) throws IOException, InterruptedException {
+        LedgerService ledger = LedgerService.open(dir.resolve("accounts.dat").toFile(),
+                dir.resolve("accounts.journal").toFile(), config.syncMode, config.groupCommitMicros,
+                config.checkpointBytes, config.historyCacheEntries, config.historyWindow);
+        TransactionFileWriter transactionFiles = new TransactionFileWriter(dir.resolve("transactions").toFile(),
+                config.maxOpenTransactionFiles);
+        ChangeFeed changes = new ChangeFeed(config.changeFeedCapacity);
+        PersistencePipeline persistence = new PersistencePipeline(ledger, transactionFiles, changes);
+        changes.subscribe("metrics", Metrics::count);
+        AtomicInteger nextAccount = new AtomicInteger(config.accounts);
+        Zipf zipf = new Zipf(config.accounts, config.skew);
+        long[] gcBefore;
+        long elapsed;
+        try {
+            for (int n = ledger.size() + 1; n <= config.accounts; n++) {
+                ledger.postCreate(n, "Holder " + n);
+                ledger.postDeposit(n, 100_000);
+            }
+            nextAccount.set(Math.max(config.accounts, ledger.size()));
+            ledger.checkpoint();
+            // The initial accounts are in the snapshot; only the run's postings go through the feed
+            ledger.publishTo(changes);
+
+            Metrics.reset();
+            gcBefore = gcTotals();
+            long deadline = System.nanoTime() + config.seconds * 1_000_000_000L;
+            List<Thread> workers = new ArrayList<>(config.threads);
+            for (int t = 0; t < config.threads; t++) {
+                Thread worker = new Thread(() -> work(ledger, persistence, zipf, nextAccount, deadline),
+                        "simulator-" + t);
+                workers.add(worker);
+                worker.start();
+            }
+            long start = System.nanoTime();
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            elapsed = System.nanoTime() - start;
+        } finally {
+            // Drains the pipeline, so the byte counts include everything the run queued
+            persistence.close();
+            changes.close();
+            transactionFiles.close();
+            ledger.close();
+        }
+        return report(elapsed, gcBefore, gcTotals(), dir);
+    }
+
+    private void work(LedgerService ledger, PersistencePipeline persistence, Zipf zipf, AtomicInteger nextAccount,
+                      long deadline) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int[] cumulative = new int[config.mix.length];
+        int total = 0;
+        for (int i = 0; i < config.mix.length; i++) {
+            total += config.mix[i];
+            cumulative[i] = total;
+        }
+        Operation[] operations = Operation.values();
+        while (System.nanoTime() < deadline) {
+            int pick = random.nextInt(total);
+            int op = 0;
+            while (pick >= cumulative[op]) {
+                op++;
+            }
+            int accountNumber = zipf.next(random);
+            long start = System.nanoTime();
+            try {
+                switch (operations[op]) {
+                    case CREATE:
+                        int created = nextAccount.incrementAndGet();
+                        persist(persistence, ledger.postCreate(created, "Holder " + created));
+                        break;
+                    case DEPOSIT:
+                        persist(persistence, ledger.postDeposit(accountNumber, 1 + random.nextInt(10_000)));
+                        break;
+                    case WITHDRAW:
+                        persist(persistence, ledger.postWithdraw(accountNumber, 1 + random.nextInt(10_000)));
+                        break;
+                    case BALANCE:
+                        ledger.getBalance(accountNumber);
+                        break;
+                    case HISTORY:
+                        // The most recent page, as the history table would show it
+                        TransactionLog.View history = ledger.view(accountNumber).history;
+                        for (int i = Math.max(0, history.size() - HISTORY_PAGE); i < history.size(); i++) {
+                            history.format(i);
+                        }
+                        break;
+                }
+            } catch (IllegalArgumentException e) {
+                // Insufficient balance and the like; still timed, counted separately
+                rejected[op].increment();
+            } catch (IOException e) {
+                throw new IllegalStateException("Simulated " + operations[op] + " failed", e);
+            }
+            latencies[op].record(System.nanoTime() - start);
+        }
+    }
+
+    private void persist(PersistencePipeline persistence, LedgerService.Posting posting) throws IOException {
+        CompletableFuture<Long> ack = persistence.submit(posting);
+        if (!config.awaitDurable) {
+            return;
+        }
+        try {
+            ack.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while saving.", e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    // Collection count and time summed over every collector
+    private static long[] gcTotals() {
+        long count = 0;
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+            millis += Math.max(0, gc.getCollectionTime());
+        }
+        return new long[]{count, millis};
+    }
+
+    private String report(long elapsedNanos, long[] gcBefore, long[] gcAfter, Path dir) throws IOException {
+        double seconds = elapsedNanos / 1e9;
+        long operations = 0;
+        long failures = 0;
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("Simulated %.1f s: %d threads, %d accounts, skew %.2f, %s%n", seconds,
+                config.threads, config.accounts, config.skew,
+                config.awaitDurable ? "waiting for each posting to be durable" : "not waiting for durability"));
+        text.append(String.format("%-10s %12s %10s %10s %10s %10s %10s %10s%n",
+                "operation", "count", "rejected", "mean", "p50", "p99", "p999", "max"));
+        for (Operation op : Operation.values()) {
+            LatencyHistogram.Snapshot s = latencies[op.ordinal()].snapshot();
+            operations += s.count;
+            failures += rejected[op.ordinal()].sum();
+            text.append(String.format("%-10s %12d %10d %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+                    op.name().toLowerCase(), s.count, rejected[op.ordinal()].sum(), s.meanNanos() / 1e3,
+                    s.percentileNanos(0.5) / 1e3, s.percentileNanos(0.99) / 1e3,
+                    s.percentileNanos(0.999) / 1e3, s.maxNanos / 1e3));
+        }
+        text.append(String.format("Latencies in microseconds. Throughput: %.0f ops/s (%d operations, %d rejected)%n",
+                operations / seconds, operations, failures));
+        text.append(String.format("GC: %d collections, %d ms%n", gcAfter[0] - gcBefore[0], gcAfter[1] - gcBefore[1]));
+        text.append(String.format("Bytes written: accounts.dat %d, accounts.journal %d, transactions/ %d%n",
+                Metrics.SNAPSHOT_BYTES.get(), Metrics.JOURNAL_BYTES.get(), Metrics.TRANSACTION_FILE_BYTES.get()));
+        File snapshot = SnapshotFile.current(dir.resolve("accounts.dat").toFile());
+        text.append(String.format("On disk now: accounts.dat %d, transactions/ %d%n",
+                Files.size(snapshot.toPath()), size(dir.resolve("transactions"))));
+        return text.toString();
+    }
+
+    private static long size(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            return paths.filter(Files::isRegularFile).mapToLong(path -> path.toFile().length()).sum();
+        }
+    }
+
+    private static void delete(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package banking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class AccountIndexTest {
+    @TempDir
+    Path dir;
+
+    private LedgerService open() throws IOException {
+        return LedgerService.open(dir.resolve("accounts.dat").toFile(), dir.resolve("accounts.journal").toFile(),
+                AccountJournal.SyncMode.NONE, 0, Long.MAX_VALUE, Long.MAX_VALUE, 0);
+    }
+
+    private static List<Integer> numbers(List<BankAccount> accounts) {
+        List<Integer> numbers = new ArrayList<>();
+        for (BankAccount account : accounts) {
+            numbers.add(account.getAccountNumber());
+        }
+        return numbers;
+    }
+
+    private static List<Integer> entries(List<AccountIndex.BalanceEntry> entries) {
+        List<Integer> numbers = new ArrayList<>();
+        for (AccountIndex.BalanceEntry entry : entries) {
+            numbers.add(entry.accountNumber);
+        }
+        return numbers;
+    }
+
+    @Test
+    void holderSearchIgnoresCaseAndPages() throws IOException {
+        try (LedgerService ledger = open()) {
+            ledger.createAccount(5, "anna");
+            ledger.createAccount(3, "Ann");
+            ledger.createAccount(9, "Bob");
+            ledger.createAccount(1, "ANDY");
+            assertEquals(List.of(1, 3, 5), numbers(ledger.searchByHolder("an", null, 10)));
+
+            List<BankAccount> first = ledger.searchByHolder("AN", null, 2);
+            assertEquals(List.of(1, 3), numbers(first));
+            assertEquals(List.of(5), numbers(ledger.searchByHolder("AN", first.get(1), 2)));
+
+            // Added after the index was first used
+            ledger.createAccount(7, "Annette");
+            assertEquals(List.of(3, 5, 7), numbers(ledger.searchByHolder("ann", null, 10)));
+            assertEquals(List.of(), numbers(ledger.searchByHolder("z", null, 10)));
+        }
+    }
+
+    @Test
+    void balanceSearchFollowsPostings() throws IOException {
+        try (LedgerService ledger = open()) {
+            for (int account = 1; account <= 6; account++) {
+                ledger.createAccount(account, "Holder " + account);
+                ledger.deposit(account, account * 1000L);
+            }
+            assertEquals(List.of(2, 3, 4), entries(ledger.searchByBalance(2000, 4000, null, 10)));
+            assertEquals(List.of(6, 5), entries(ledger.topBalances(2)));
+
+            ledger.withdraw(6, 5500);
+            ledger.transfer(1, 3, 1000);
+            // Balances now 0, 2000, 4000, 4000, 5000, 500
+            assertEquals(List.of(1, 6, 2), entries(ledger.searchByBalance(0, 2000, null, 10)));
+            List<AccountIndex.BalanceEntry> page = ledger.searchByBalance(2000, 5000, null, 2);
+            assertEquals(List.of(2, 3), entries(page));
+            assertEquals(List.of(4, 5), entries(ledger.searchByBalance(2000, 5000, page.get(1), 2)));
+            // Highest first throughout, so equal balances come in descending account order
+            assertEquals(List.of(5, 4, 3), entries(ledger.topBalances(3)));
+            assertEquals(4000, ledger.topBalances(3).get(1).balance);
+        }
+    }
+
+    @Test
+    void rebuiltIndexMatchesTheLiveOne() throws IOException {
+        List<Integer> byHolder;
+        List<Integer> byBalance;
+        try (LedgerService ledger = open()) {
+            // Used from the start, so every change below goes through the live index
+            ledger.searchByHolder("", null, 1);
+            for (int account = 1; account <= 200; account++) {
+                ledger.createAccount(account, "Holder " + (account % 17));
+                ledger.deposit(account, 1 + (account * 7919L) % 10_000);
+            }
+            for (int account = 2; account <= 200; account += 3) {
+                ledger.transfer(account, account - 1, ledger.getBalance(account) / 2);
+            }
+            byHolder = numbers(ledger.searchByHolder("holder", null, 1000));
+            byBalance = entries(ledger.searchByBalance(Long.MIN_VALUE, Long.MAX_VALUE, null, 1000));
+            ledger.checkpoint();
+        }
+        assertEquals(200, byHolder.size());
+        assertEquals(200, byBalance.size());
+        try (LedgerService ledger = open()) {
+            assertEquals(byHolder, numbers(ledger.searchByHolder("holder", null, 1000)));
+            assertEquals(byBalance, entries(ledger.searchByBalance(Long.MIN_VALUE, Long.MAX_VALUE, null, 1000)));
+            long previous = Long.MIN_VALUE;
+            for (int account : byBalance) {
+                long balance = ledger.getBalance(account);
+                assertTrue(balance >= previous);
+                previous = balance;
+            }
+        }
+    }
+}
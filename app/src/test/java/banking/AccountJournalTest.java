@@ -0,0 +1,99 @@
+package banking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class AccountJournalTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void replayDropsTornTail() throws IOException {
+        File file = dir.resolve("accounts.journal").toFile();
+        long intact;
+        try (AccountJournal journal = new AccountJournal(file, AccountJournal.SyncMode.EVERY_COMMIT, 0)) {
+            journal.logCreate(1, "Ann", 1000);
+            journal.logDeposit(1, 5000, 2000);
+            journal.commitAll();
+            intact = journal.size();
+            journal.logWithdraw(1, 1200, 3000);
+            journal.commitAll();
+        }
+        // Cut the last record short, as a crash in the middle of its write would
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 5);
+        }
+
+        AccountStore accounts = new AccountStore();
+        try (AccountJournal journal = new AccountJournal(file, AccountJournal.SyncMode.EVERY_COMMIT, 0)) {
+            assertEquals(2, journal.replay(accounts, 0, new Aggregates()));
+            assertEquals(intact, file.length());
+            assertEquals(5000, accounts.get(1).getBalance());
+            // New records follow the last intact one
+            assertEquals(3, journal.logWithdraw(1, 700, 4000));
+            journal.commitAll();
+        }
+
+        accounts = new AccountStore();
+        try (AccountJournal journal = new AccountJournal(file, AccountJournal.SyncMode.EVERY_COMMIT, 0)) {
+            assertEquals(3, journal.replay(accounts, 0, new Aggregates()));
+            assertEquals(4300, accounts.get(1).getBalance());
+        }
+    }
+
+    @Test
+    void replaySkipsRecordsCoveredBySnapshot() throws IOException {
+        File file = dir.resolve("accounts.journal").toFile();
+        try (AccountJournal journal = new AccountJournal(file, AccountJournal.SyncMode.NONE, 0)) {
+            journal.logCreate(1, "Ann", 1000);
+            journal.logCreate(2, "Bob", 1000);
+            journal.logDeposit(2, 900, 2000);
+        }
+
+        AccountStore accounts = new AccountStore();
+        accounts.add(new BankAccount(1, "Ann", 1000));
+        try (AccountJournal journal = new AccountJournal(file, AccountJournal.SyncMode.NONE, 0)) {
+            assertEquals(3, journal.replay(accounts, 1, new Aggregates()));
+        }
+        assertEquals(2, accounts.size());
+        assertEquals(900, accounts.get(2).getBalance());
+    }
+
+    @Test
+    void readOnlyReplayKeepsTornTail() throws IOException {
+        File file = dir.resolve("accounts.journal").toFile();
+        try (AccountJournal journal = new AccountJournal(file, AccountJournal.SyncMode.NONE, 0)) {
+            journal.logCreate(1, "Ann", 1000);
+            journal.logDeposit(1, 5000, 2000);
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+        long length = file.length();
+
+        AccountStore accounts = new AccountStore();
+        try (AccountJournal journal = new AccountJournal(file)) {
+            assertEquals(1, journal.replay(accounts, 0, new Aggregates()));
+            assertThrows(IllegalStateException.class, () -> journal.logDeposit(1, 100, 3000));
+        }
+        assertEquals(length, file.length());
+        assertEquals(0, accounts.get(1).getBalance());
+    }
+
+    @Test
+    void secondWriterIsRefused() throws IOException {
+        File file = dir.resolve("accounts.journal").toFile();
+        try (AccountJournal journal = new AccountJournal(file, AccountJournal.SyncMode.NONE, 0)) {
+            assertThrows(IOException.class, () -> new AccountJournal(file, AccountJournal.SyncMode.NONE, 0));
+        }
+        // Released on close
+        new AccountJournal(file, AccountJournal.SyncMode.NONE, 0).close();
+    }
+}
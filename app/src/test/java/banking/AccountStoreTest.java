@@ -0,0 +1,75 @@
+package banking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class AccountStoreTest {
+    private static final int COUNT = 10_000;
+
+    @Test
+    void growsThroughResizesAndSurvivesDeletes() {
+        AccountStore store = new AccountStore();
+        BankAccount[] accounts = new BankAccount[COUNT + 1];
+        for (int n = 1; n <= COUNT; n++) {
+            accounts[n] = new BankAccount(n, "Holder " + n, 0);
+            assertTrue(store.add(accounts[n]));
+        }
+        assertEquals(COUNT, store.size());
+        assertFalse(store.add(new BankAccount(42, "Duplicate", 0)));
+        for (int n = 1; n <= COUNT; n++) {
+            assertSame(accounts[n], store.get(n));
+        }
+
+        // Backward-shift deletion must leave every remaining probe chain reachable
+        for (int n = 1; n <= COUNT; n += 2) {
+            assertSame(accounts[n], store.remove(n));
+        }
+        assertEquals(COUNT / 2, store.size());
+        for (int n = 1; n <= COUNT; n++) {
+            if (n % 2 == 1) {
+                assertNull(store.get(n));
+            } else {
+                assertSame(accounts[n], store.get(n));
+            }
+        }
+        assertNull(store.remove(1));
+        assertNull(store.get(COUNT + 1));
+
+        Set<Integer> seen = new HashSet<>();
+        for (BankAccount account : store) {
+            assertTrue(seen.add(account.getAccountNumber()));
+        }
+        assertEquals(COUNT / 2, seen.size());
+
+        for (int n = 1; n <= COUNT; n += 2) {
+            assertTrue(store.add(accounts[n]));
+        }
+        for (int n = 1; n <= COUNT; n++) {
+            assertSame(accounts[n], store.remove(n));
+        }
+        assertTrue(store.isEmpty());
+        assertFalse(store.iterator().hasNext());
+    }
+
+    @Test
+    void presizedStoreKeepsEveryAccount() {
+        AccountStore store = new AccountStore(COUNT);
+        for (int n = COUNT; n >= 1; n--) {
+            store.add(new BankAccount(n * 7919, "Holder " + n, 0));
+        }
+        assertEquals(COUNT, store.size());
+        assertEquals(COUNT, store.toList().size());
+        for (int n = 1; n <= COUNT; n++) {
+            assertEquals(n * 7919, store.get(n * 7919).getAccountNumber());
+        }
+        assertNull(store.get(0));
+        assertNull(store.get(-5));
+    }
+}
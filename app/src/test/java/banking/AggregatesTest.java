@@ -0,0 +1,127 @@
+package banking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class AggregatesTest {
+    private static final int ACCOUNTS = 40;
+
+    @TempDir
+    Path dir;
+
+    private LedgerService open() throws IOException {
+        return LedgerService.open(dir.resolve("accounts.dat").toFile(), dir.resolve("accounts.journal").toFile(),
+                AccountJournal.SyncMode.NONE, 0, Long.MAX_VALUE, Long.MAX_VALUE, 0);
+    }
+
+    // Every figure recomputed from the accounts themselves
+    private static void assertMatchesAccounts(LedgerService ledger) {
+        Aggregates aggregates = ledger.aggregates();
+        long[] counts = new long[Aggregates.BAND_FLOORS.length];
+        long[] balances = new long[Aggregates.BAND_FLOORS.length];
+        long total = 0;
+        for (int accountNumber : ledger.accountNumbers()) {
+            long balance = ledger.getBalance(accountNumber);
+            counts[Aggregates.band(balance)]++;
+            balances[Aggregates.band(balance)] += balance;
+            total += balance;
+        }
+        assertEquals(ledger.size(), aggregates.accounts());
+        assertEquals(total, aggregates.totalBalance());
+        for (int band = 0; band < counts.length; band++) {
+            assertEquals(counts[band], aggregates.bandCount(band));
+            assertEquals(balances[band], aggregates.bandBalance(band));
+        }
+    }
+
+    private static Aggregates.Day today(LedgerService ledger) {
+        LocalDate today = LocalDate.now();
+        List<Aggregates.Day> days = ledger.aggregates().days(today, today);
+        assertEquals(1, days.size());
+        return days.get(0);
+    }
+
+    @Test
+    void bandsStartAtEachFloor() {
+        assertEquals(0, Aggregates.band(0));
+        assertEquals(0, Aggregates.band(99_99));
+        assertEquals(1, Aggregates.band(100_00));
+        assertEquals(4, Aggregates.band(999_999_99));
+        assertEquals(Aggregates.BAND_FLOORS.length - 1, Aggregates.band(Long.MAX_VALUE));
+    }
+
+    @Test
+    void figuresFollowPostingsAndSurviveReplayAndCheckpoints() throws IOException {
+        try (LedgerService ledger = open()) {
+            for (int account = 1; account <= ACCOUNTS; account++) {
+                ledger.createAccount(account, "Holder " + account);
+                // Spread across every band
+                ledger.deposit(account, (long) Math.pow(10, 2 + account % 8));
+            }
+            for (int account = 2; account <= ACCOUNTS; account += 2) {
+                ledger.withdraw(account, ledger.getBalance(account) / 3);
+                ledger.transfer(account, account - 1, ledger.getBalance(account) / 2);
+            }
+            assertMatchesAccounts(ledger);
+            Aggregates.Day day = today(ledger);
+            assertEquals(ACCOUNTS, day.count(TransactionLog.CREATED));
+            assertEquals(ACCOUNTS, day.count(TransactionLog.DEPOSIT));
+            assertEquals(ACCOUNTS / 2, day.count(TransactionLog.WITHDRAW));
+            assertEquals(ACCOUNTS / 2, day.count(TransactionLog.TRANSFER_OUT));
+            assertEquals(day.amount(TransactionLog.TRANSFER_OUT), day.amount(TransactionLog.TRANSFER_IN));
+        }
+
+        long deposited;
+        // Rebuilt from the journal alone
+        try (LedgerService ledger = open()) {
+            assertMatchesAccounts(ledger);
+            deposited = today(ledger).amount(TransactionLog.DEPOSIT);
+            ledger.checkpoint();
+        }
+        // Balances counted from the snapshot, volumes read from it
+        try (LedgerService ledger = open()) {
+            assertMatchesAccounts(ledger);
+            assertEquals(deposited, today(ledger).amount(TransactionLog.DEPOSIT));
+            assertEquals(ACCOUNTS / 2, today(ledger).count(TransactionLog.WITHDRAW));
+        }
+    }
+
+    @Test
+    void reportShowsTheAggregatesAndTopBalances() throws IOException {
+        try (LedgerService ledger = open()) {
+            ledger.createAccount(1, "Ann");
+            ledger.createAccount(2, "Bob");
+            ledger.createAccount(3, "Cy");
+            ledger.deposit(1, 250_00);
+            ledger.deposit(2, 1_500_00);
+
+            BankReport report = BankReport.build(ledger, 7, 2);
+            assertEquals(3, report.accounts);
+            assertEquals(1_750_00, report.totalBalance);
+            assertEquals(1, report.dates.size());
+            assertEquals(List.of("Bob", "Ann"), report.topHolders);
+            String text = report.format();
+            assertTrue(text.contains("Total Deposits: 1750.00"), text);
+            assertTrue(text.contains("Average Balance: 583.33"), text);
+
+            File export = dir.resolve("reports").resolve("bank.txt").toFile();
+            report.export(export);
+            assertEquals(text, new String(Files.readAllBytes(export.toPath()), StandardCharsets.UTF_8));
+            assertFalse(new File(export.getPath() + ".tmp").exists());
+
+            // Without top balances the index is not needed
+            assertTrue(BankReport.build(ledger, 1, 0).top.isEmpty());
+        }
+    }
+}
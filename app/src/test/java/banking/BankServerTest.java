@@ -0,0 +1,166 @@
+package banking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BankServerTest {
+    @TempDir
+    Path dir;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private CredentialStore credentials;
+    private LedgerService ledger;
+    private TransactionFileWriter transactionFiles;
+    private ChangeFeed changes;
+    private PersistencePipeline persistence;
+    private BankServer server;
+
+    private LedgerService openLedger() throws IOException {
+        return LedgerService.open(dir.resolve("accounts.dat").toFile(), dir.resolve("accounts.journal").toFile(),
+                AccountJournal.SyncMode.EVERY_COMMIT, 0, Long.MAX_VALUE, Long.MAX_VALUE, 0);
+    }
+
+    @BeforeEach
+    void start() throws IOException {
+        // A fresh store holds the default users
+        credentials = CredentialStore.open(dir.resolve("users.log").toFile(), dir.resolve("users.dat").toFile(), 1000);
+        ledger = openLedger();
+        File transactions = Files.createDirectory(dir.resolve("transactions")).toFile();
+        transactionFiles = new TransactionFileWriter(transactions, 16);
+        changes = new ChangeFeed(64);
+        persistence = new PersistencePipeline(ledger, transactionFiles, changes);
+        ledger.publishTo(changes);
+        server = new BankServer(ledger, persistence, credentials, new InetSocketAddress("127.0.0.1", 0), 16, 4);
+        server.start();
+    }
+
+    @AfterEach
+    void stop() throws IOException {
+        server.close();
+        persistence.close();
+        changes.close();
+        transactionFiles.close();
+        ledger.close();
+        credentials.close();
+    }
+
+    private HttpResponse<String> send(String method, String path, String form, String token)
+            throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(
+                URI.create("http://127.0.0.1:" + server.address().getPort() + path));
+        if (token != null) {
+            request.header("Authorization", "Bearer " + token);
+        }
+        if (form != null) {
+            request.header("Content-Type", "application/x-www-form-urlencoded")
+                    .method(method, HttpRequest.BodyPublishers.ofString(form));
+        } else {
+            request.method(method, HttpRequest.BodyPublishers.noBody());
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private String login() throws IOException, InterruptedException {
+        HttpResponse<String> response = send("POST", "/login", "user=user1&password=pass1", null);
+        assertEquals(200, response.statusCode());
+        Matcher token = Pattern.compile("\"token\":\"([0-9a-f]+)\"").matcher(response.body());
+        assertTrue(token.find(), response.body());
+        return token.group(1);
+    }
+
+    @Test
+    void postingsAreAnsweredOnceSaved() throws Exception {
+        String token = login();
+        assertEquals(200, send("POST", "/accounts", "account=1&holder=Ann%20%22A%22", token).statusCode());
+        assertEquals(200, send("POST", "/accounts", "account=2&holder=Bob", token).statusCode());
+        assertEquals("{\"account\":1,\"balance\":\"10.50\"}",
+                send("POST", "/deposit", "account=1&amount=10.50", token).body());
+        assertEquals("{\"accounts\":[{\"account\":1,\"balance\":\"6.25\"},{\"account\":2,\"balance\":\"4.25\"}]}",
+                send("POST", "/transfer", "from=1&to=2&amount=4.25", token).body());
+        assertEquals("{\"account\":2,\"balance\":\"4.25\"}", send("GET", "/balance?account=2", null, token).body());
+
+        String history = send("GET", "/history?account=1&offset=1&limit=5", null, token).body();
+        assertTrue(history.startsWith("{\"account\":1,\"total\":3,\"offset\":1,\"entries\":[{\"index\":1,"), history);
+        assertTrue(history.contains("\"amount\":\"4.25\",\"balance\":\"6.25\",\"counterparty\":2}"), history);
+
+        // Acknowledged postings are in the journal and the transaction files already
+        try (LedgerService reader = LedgerService.openReadOnly(dir.resolve("accounts.dat").toFile(),
+                dir.resolve("accounts.journal").toFile(), Long.MAX_VALUE)) {
+            assertEquals(625, reader.getBalance(1));
+            assertEquals("Ann \"A\"", reader.view(1).holder);
+        }
+        String file = new String(Files.readAllBytes(transactionFiles.fileFor(2).toPath()));
+        assertTrue(file.contains("Current Balance: 4.25"), file);
+    }
+
+    @Test
+    void requestsAreCheckedBeforeTheyReachTheLedger() throws Exception {
+        assertEquals(401, send("GET", "/balance?account=1", null, null).statusCode());
+        assertEquals(401, send("GET", "/balance?account=1", null, "not-a-session").statusCode());
+        assertEquals(401, send("POST", "/login", "user=user1&password=wrong", null).statusCode());
+        assertEquals(401, send("POST", "/login", "user=nobody&password=pass1", null).statusCode());
+
+        String token = login();
+        assertEquals(405, send("GET", "/deposit?account=1&amount=1", null, token).statusCode());
+        assertEquals(404, send("GET", "/balance/extra?account=1", null, token).statusCode());
+        assertEquals(400, send("POST", "/deposit", "account=1", token).statusCode());
+        assertEquals(400, send("POST", "/deposit", "account=1&amount=1.234", token).statusCode());
+        assertEquals(404, send("GET", "/balance?account=1", null, token).statusCode());
+        send("POST", "/accounts", "account=1&holder=Ann", token);
+        HttpResponse<String> overdraw = send("POST", "/withdraw", "account=1&amount=1", token);
+        assertEquals(400, overdraw.statusCode());
+        assertTrue(overdraw.body().startsWith("{\"error\":"), overdraw.body());
+        assertEquals(400, send("GET", "/history?account=1&limit=1001", null, token).statusCode());
+
+        assertEquals(200, send("POST", "/logout", null, token).statusCode());
+        assertEquals(401, send("GET", "/balance?account=1", null, token).statusCode());
+    }
+
+    @Test
+    void withoutVirtualThreadsRequestsShareABoundedPool() throws Exception {
+        assumeTrue(Runtime.version().feature() < 21);
+        ExecutorService executor = BankServer.requestExecutor(2);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger most = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < 6; i++) {
+            executor.execute(() -> {
+                most.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+            });
+        }
+        // Time for a third task to start if the pool let it
+        Thread.sleep(200);
+        assertEquals(2, most.get());
+        release.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(2, most.get());
+    }
+}
@@ -0,0 +1,72 @@
+package banking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BatchPosterTest {
+    private static final int ACCOUNTS = 50;
+    // More postings per worker than one commit group holds
+    private static final int ROUNDS = 400;
+
+    @TempDir
+    Path dir;
+
+    private LedgerService open() throws IOException {
+        return LedgerService.open(dir.resolve("accounts.dat").toFile(), dir.resolve("accounts.journal").toFile(),
+                AccountJournal.SyncMode.NONE, 0, Long.MAX_VALUE, Long.MAX_VALUE, 0);
+    }
+
+    @Test
+    void postsEachAccountsLinesInOrderAndReportsTheRest() throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add("account,type,amount");
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int account = 1; account <= ACCOUNTS; account++) {
+                lines.add(account + ",DEPOSIT,2.00");
+                lines.add(account + ",W,1.50");
+            }
+        }
+        // Overdraws only if it ran before the deposits above it
+        lines.add("1,WITHDRAW,200.00");
+        lines.add("2,WITHDRAW,200.01");
+        lines.add("3,TRANSFER,1.00");
+        lines.add("4,DEPOSIT,abc");
+        lines.add("999,DEPOSIT,1.00");
+        File input = dir.resolve("batch.csv").toFile();
+        Files.write(input.toPath(), lines, StandardCharsets.UTF_8);
+        File report = dir.resolve("batch.rejects.csv").toFile();
+
+        try (LedgerService ledger = open()) {
+            for (int account = 1; account <= ACCOUNTS; account++) {
+                ledger.createAccount(account, "Holder " + account);
+            }
+            BatchPoster.Result result = new BatchPoster(ledger, null, 4).post(input, report);
+            assertNull(result.failure);
+            assertEquals(lines.size(), result.lines);
+            assertEquals(2L * ACCOUNTS * ROUNDS + 1, result.posted);
+            assertEquals(4, result.rejected);
+        }
+
+        try (LedgerService ledger = open()) {
+            assertEquals(0, ledger.getBalance(1));
+            assertEquals(200_00, ledger.getBalance(2));
+            assertEquals(200_00, ledger.getBalance(ACCOUNTS));
+        }
+        List<String> rejects = Files.readAllLines(report.toPath(), StandardCharsets.UTF_8);
+        assertEquals(5, rejects.size());
+        // After the header, the rounds and account 1's withdrawal
+        int first = 1 + 2 * ACCOUNTS * ROUNDS + 2;
+        assertEquals(first, Integer.parseInt(rejects.get(1).split(",", 2)[0]));
+        assertEquals(first + 3, Integer.parseInt(rejects.get(4).split(",", 2)[0]));
+    }
+}
@@ -0,0 +1,146 @@
+package banking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class ChangeFeedTest {
+    private static final int EVENTS = 1000;
+
+    @Test
+    void consumersSeeEveryEventInOrderAcrossWraparound() throws Exception {
+        ChangeFeed feed = new ChangeFeed(16);
+        assertEquals(16, feed.capacity());
+        List<Long> first = Collections.synchronizedList(new ArrayList<>());
+        List<Long> second = Collections.synchronizedList(new ArrayList<>());
+        List<Long> downstreamLag = Collections.synchronizedList(new ArrayList<>());
+        ChangeFeed.Consumer upstream = feed.subscribe("first", (f, from, to) -> {
+            for (long s = from; s <= to; s++) {
+                first.add(f.amount(s));
+            }
+        });
+        ChangeFeed.Consumer downstream = feed.subscribe("second", (f, from, to) -> {
+            downstreamLag.add(upstream.sequence() - to);
+            for (long s = from; s <= to; s++) {
+                second.add(f.journalSequence(s));
+            }
+            // Slow enough that producers fill the ring and wait for it
+            Thread.sleep(1);
+        }, upstream);
+
+        // Each slot is reused EVENTS / 16 times
+        long last = 0;
+        for (long i = 1; i <= EVENTS; i++) {
+            last = feed.offer(AccountJournal.DEPOSIT, (int) i, i, i, i, i);
+        }
+        assertEquals(EVENTS, last);
+        assertEquals(EVENTS, (long) downstream.whenProcessed(last).get(10, TimeUnit.SECONDS));
+        downstream.close();
+        upstream.close();
+
+        List<Long> expected = new ArrayList<>();
+        for (long i = 1; i <= EVENTS; i++) {
+            expected.add(i);
+        }
+        assertEquals(expected, first);
+        assertEquals(expected, second);
+        // The downstream consumer never ran ahead of the one it follows
+        for (long lag : downstreamLag) {
+            assertTrue(lag >= 0);
+        }
+    }
+
+    @Test
+    void producersOnlyWaitForTheSlowestConsumer() throws Exception {
+        ChangeFeed feed = new ChangeFeed(16);
+        // Without consumers every published slot is free again at once
+        for (int i = 1; i <= 100; i++) {
+            feed.offer(AccountJournal.DEPOSIT, 1, i, i, i, i);
+        }
+        assertEquals(100, feed.cursor());
+
+        List<Long> seen = Collections.synchronizedList(new ArrayList<>());
+        ChangeFeed.Consumer consumer = feed.subscribe("late", (f, from, to) -> {
+            for (long s = from; s <= to; s++) {
+                seen.add(s);
+            }
+        });
+        for (int i = 0; i < 40; i++) {
+            feed.offer(AccountJournal.WITHDRAW, 2, -i, 0, 0, 0);
+        }
+        consumer.whenProcessed(140).get(10, TimeUnit.SECONDS);
+        feed.close();
+        assertEquals(40, seen.size());
+        assertEquals(101L, (long) seen.get(0));
+        assertEquals(140L, (long) seen.get(39));
+    }
+
+    @Test
+    void aFailedBatchIsRetriedBeforeConsumersAfterItSeeIt() throws Exception {
+        ChangeFeed feed = new ChangeFeed(16);
+        AtomicInteger failures = new AtomicInteger(3);
+        List<Long> committed = Collections.synchronizedList(new ArrayList<>());
+        List<Long> written = Collections.synchronizedList(new ArrayList<>());
+        List<Long> writtenEarly = Collections.synchronizedList(new ArrayList<>());
+        ChangeFeed.Consumer journal = feed.subscribe("journal", (f, from, to) -> {
+            if (failures.getAndDecrement() > 0) {
+                throw new IOException("disk full");
+            }
+            for (long s = from; s <= to; s++) {
+                committed.add(s);
+            }
+        });
+        ChangeFeed.Consumer files = feed.subscribe("files", (f, from, to) -> {
+            for (long s = from; s <= to; s++) {
+                if (!committed.contains(s)) {
+                    writtenEarly.add(s);
+                }
+                written.add(s);
+            }
+        }, journal);
+
+        long event = feed.offer(AccountJournal.DEPOSIT, 1, 100, 100, 1, 1);
+        // The caller hears of the first failure; the batch itself is not given up on
+        ExecutionException failed = assertThrows(ExecutionException.class,
+                () -> journal.whenProcessed(event).get(10, TimeUnit.SECONDS));
+        assertTrue(failed.getCause() instanceof IOException);
+        assertEquals(event, (long) files.whenProcessed(event).get(10, TimeUnit.SECONDS));
+        feed.close();
+
+        assertEquals(List.of(event), committed);
+        assertEquals(List.of(event), written);
+        assertTrue(writtenEarly.isEmpty());
+    }
+
+    @Test
+    void closingGivesUpOnABatchThatKeepsFailing() throws Exception {
+        ChangeFeed feed = new ChangeFeed(16);
+        List<Long> written = Collections.synchronizedList(new ArrayList<>());
+        ChangeFeed.Consumer journal = feed.subscribe("journal", (f, from, to) -> {
+            throw new IOException("disk full");
+        });
+        ChangeFeed.Consumer files = feed.subscribe("files", (f, from, to) -> {
+            for (long s = from; s <= to; s++) {
+                written.add(s);
+            }
+        }, journal);
+
+        long event = feed.offer(AccountJournal.DEPOSIT, 1, 100, 100, 1, 1);
+        CompletableFuture<Long> write = files.whenProcessed(event);
+        assertTimeoutPreemptively(Duration.ofSeconds(10), feed::close);
+        assertTrue(write.isCompletedExceptionally());
+        assertTrue(written.isEmpty());
+    }
+}
@@ -0,0 +1,139 @@
+package banking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CredentialStoreTest {
+    // Far below the production cost, which only makes hashing slower
+    private static final int ITERATIONS = 1000;
+
+    @TempDir
+    Path dir;
+
+    private File log() {
+        return dir.resolve("users.log").toFile();
+    }
+
+    private File legacy() {
+        return dir.resolve("users.dat").toFile();
+    }
+
+    private CredentialStore open(int iterations) throws IOException {
+        return CredentialStore.open(log(), legacy(), iterations);
+    }
+
+    private void writeLegacy(HashMap<String, String> users) throws IOException {
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(legacy()))) {
+            out.writeObject(users);
+        }
+    }
+
+    @Test
+    void plaintextUsersAreHashedThenDeleted() throws IOException {
+        HashMap<String, String> plain = new HashMap<>();
+        plain.put("alice", "secret");
+        plain.put("bob", "hunter2");
+        writeLegacy(plain);
+
+        try (CredentialStore store = open(ITERATIONS)) {
+            // Only the migrated users, no defaults
+            assertEquals(2, store.size());
+            assertTrue(store.verify("alice", "secret".toCharArray()));
+            assertFalse(store.verify("alice", "hunter2".toCharArray()));
+        }
+        assertFalse(legacy().exists());
+        byte[] log = Files.readAllBytes(log().toPath());
+        assertEquals(-1, new String(log, "ISO-8859-1").indexOf("hunter2"));
+
+        try (CredentialStore store = open(ITERATIONS)) {
+            assertTrue(store.verify("bob", "hunter2".toCharArray()));
+        }
+    }
+
+    @Test
+    void anUnreadableUsersFileIsKept() throws IOException {
+        Files.write(legacy().toPath(), new byte[]{1, 2, 3, 4});
+        assertThrows(IOException.class, () -> open(ITERATIONS));
+        assertTrue(legacy().exists());
+        assertFalse(log().exists());
+    }
+
+    @Test
+    void aMigrationInterruptedBeforeTheDeleteIsNotRepeated() throws IOException {
+        HashMap<String, String> plain = new HashMap<>();
+        plain.put("alice", "secret");
+        writeLegacy(plain);
+        open(ITERATIONS).close();
+
+        // users.dat back as if the delete never happened, now with a password the log does not have
+        plain.put("alice", "changed");
+        writeLegacy(plain);
+        try (CredentialStore store = open(ITERATIONS)) {
+            assertTrue(store.verify("alice", "secret".toCharArray()));
+        }
+        assertFalse(legacy().exists());
+    }
+
+    @Test
+    void freshStoreRegistersAndVerifies() throws IOException {
+        try (CredentialStore store = open(ITERATIONS)) {
+            assertTrue(store.exists("admin"));
+            assertTrue(store.register("carol", "pw".toCharArray()));
+            assertFalse(store.register("carol", "other".toCharArray()));
+            assertTrue(store.verify("carol", "pw".toCharArray()));
+            assertFalse(store.verify("carol", "other".toCharArray()));
+            assertFalse(store.verify("nobody", "pw".toCharArray()));
+        }
+    }
+
+    @Test
+    void olderHashesAreUpgradedOnLogin() throws IOException {
+        try (CredentialStore store = open(ITERATIONS)) {
+            store.register("carol", "pw".toCharArray());
+        }
+        long before = log().length();
+        try (CredentialStore store = open(2 * ITERATIONS)) {
+            assertTrue(store.verify("carol", "pw".toCharArray()));
+        }
+        long upgraded = log().length();
+        assertTrue(upgraded > before);
+        try (CredentialStore store = open(2 * ITERATIONS)) {
+            assertTrue(store.verify("carol", "pw".toCharArray()));
+            assertFalse(store.verify("carol", "wrong".toCharArray()));
+        }
+        // Already at the current cost, so nothing more is appended
+        assertEquals(upgraded, log().length());
+    }
+
+    @Test
+    void aTornTailIsDropped() throws IOException {
+        try (CredentialStore store = open(ITERATIONS)) {
+            store.register("carol", "pw".toCharArray());
+        }
+        long length = log().length();
+        try (RandomAccessFile raf = new RandomAccessFile(log(), "rw")) {
+            raf.seek(length);
+            raf.write(new byte[]{0, 0, 0, 40, 1, 2, 3});
+        }
+        try (CredentialStore store = open(ITERATIONS)) {
+            assertTrue(store.verify("carol", "pw".toCharArray()));
+            assertTrue(store.register("dave", "pw".toCharArray()));
+        }
+        try (CredentialStore store = open(ITERATIONS)) {
+            assertTrue(store.verify("dave", "pw".toCharArray()));
+        }
+    }
+}
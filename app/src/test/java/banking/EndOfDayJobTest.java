@@ -0,0 +1,53 @@
+package banking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class EndOfDayJobTest {
+    @TempDir
+    Path dir;
+
+    private EndOfDayJob.Config config(String date) {
+        EndOfDayJob.Config config = new EndOfDayJob.Config().parse(new String[]{"date=" + date, "partitionSize=2"}, 0);
+        config.statementsDirectory = dir.resolve("statements").toFile();
+        config.stateFile = dir.resolve("endofday.state").toFile();
+        config.completedFile = dir.resolve("endofday.completed").toFile();
+        return config;
+    }
+
+    @Test
+    void creditsEachDateOnce() throws IOException {
+        try (LedgerService ledger = LedgerService.open(dir.resolve("accounts.dat").toFile(),
+                dir.resolve("accounts.journal").toFile(), AccountJournal.SyncMode.NONE, 0, Long.MAX_VALUE,
+                Long.MAX_VALUE, 0)) {
+            for (int n = 1; n <= 5; n++) {
+                ledger.createAccount(n, "Holder " + n);
+                ledger.deposit(n, 10_000_000);
+            }
+            long daily = EndOfDayJob.dailyInterest(10_000_000, 200, 366);
+
+            EndOfDayJob.Result first = new EndOfDayJob(ledger, config("2024-03-01")).run();
+            assertEquals(5, first.credited);
+            assertEquals(3, first.partitions);
+            assertEquals(10_000_000 + daily, ledger.getBalance(1));
+            assertFalse(config("2024-03-01").stateFile.exists());
+            assertTrue(dir.resolve("statements/2024-03/account_5.txt").toFile().isFile());
+
+            // A retry of the same date pays nothing
+            EndOfDayJob.Result again = new EndOfDayJob(ledger, config("2024-03-01")).run();
+            assertTrue(again.alreadyCompleted);
+            assertEquals(10_000_000 + daily, ledger.getBalance(1));
+
+            EndOfDayJob.Result next = new EndOfDayJob(ledger, config("2024-03-02")).run();
+            assertEquals(5, next.credited);
+            assertEquals(10_000_000 + daily + EndOfDayJob.dailyInterest(10_000_000 + daily, 200, 366),
+                    ledger.getBalance(1));
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package banking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class HistoryArchiveTest {
+    private static final int WINDOW = 4;
+    private static final int DEPOSITS = 40;
+
+    @TempDir
+    Path dir;
+
+    private LedgerService open() throws IOException {
+        return LedgerService.open(dir.resolve("accounts.dat").toFile(), dir.resolve("accounts.journal").toFile(),
+                AccountJournal.SyncMode.NONE, 0, Long.MAX_VALUE, Long.MAX_VALUE, WINDOW);
+    }
+
+    @Test
+    void sealedEntriesReadBackFromTheArchive() throws IOException {
+        try (LedgerService ledger = open()) {
+            ledger.createAccount(1, "Ann");
+            ledger.createAccount(2, "Bob");
+            for (int i = 1; i <= DEPOSITS; i++) {
+                ledger.deposit(1, i * 100L);
+            }
+            ledger.deposit(2, 100);
+            ledger.checkpoint();
+            assertEquals(DEPOSITS + 1 - WINDOW, archived(ledger, 1));
+            // Short histories stay whole in the snapshot
+            assertEquals(0, archived(ledger, 2));
+            assertHistory(ledger);
+        }
+        File segment = new HistoryArchive(dir.resolve("archive").toFile(), 1).fileFor(0);
+        assertTrue(segment.isFile());
+
+        // Read back through a fresh process: only the snapshot's directory says where the chunks are
+        try (LedgerService ledger = open()) {
+            assertEquals(DEPOSITS + 1 - WINDOW, archived(ledger, 1));
+            assertHistory(ledger);
+            ledger.withdraw(1, 50);
+            ledger.checkpoint();
+            assertEquals(DEPOSITS + 1 - WINDOW, archived(ledger, 1));
+        }
+    }
+
+    @Test
+    void corruptChunkIsReported() throws IOException {
+        try (LedgerService ledger = open()) {
+            ledger.createAccount(1, "Ann");
+            for (int i = 1; i <= DEPOSITS; i++) {
+                ledger.deposit(1, i * 100L);
+            }
+            ledger.checkpoint();
+        }
+        File segment = new HistoryArchive(dir.resolve("archive").toFile(), 1).fileFor(0);
+        try (RandomAccessFile raf = new RandomAccessFile(segment, "rw")) {
+            raf.seek(raf.length() - 1);
+            int last = raf.read();
+            raf.seek(raf.length() - 1);
+            raf.write(last ^ 0xFF);
+        }
+        try (LedgerService ledger = open()) {
+            // Live entries are still readable; the sealed ones fail their checksum
+            assertEquals(DEPOSITS * 100L, ledger.view(1).history.amount(DEPOSITS));
+            assertThrows(UncheckedIOException.class, () -> ledger.view(1).history.amount(1));
+        }
+    }
+
+    private static int archived(LedgerService ledger, int accountNumber) throws IOException {
+        return ledger.withAccount(accountNumber, account -> account.getTransactionLog().archived());
+    }
+
+    private static void assertHistory(LedgerService ledger) {
+        TransactionLog.View history = ledger.view(1).history;
+        assertEquals(DEPOSITS + 1, history.size());
+        assertEquals(TransactionLog.CREATED, history.type(0));
+        long balance = 0;
+        for (int i = 1; i <= DEPOSITS; i++) {
+            balance += i * 100L;
+            assertEquals(TransactionLog.DEPOSIT, history.type(i));
+            assertEquals(i * 100L, history.amount(i));
+            assertEquals(balance, history.balance(i));
+        }
+        assertEquals(balance, ledger.getBalance(1));
+    }
+}
@@ -0,0 +1,166 @@
+package banking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LedgerServiceTest {
+    @TempDir
+    Path dir;
+
+    private LedgerService open() throws IOException {
+        // Never checkpoints on its own, so everything below is recovered from the journal
+        return LedgerService.open(snapshotFile(), journalFile(), AccountJournal.SyncMode.EVERY_COMMIT, 0,
+                Long.MAX_VALUE, Long.MAX_VALUE, 0);
+    }
+
+    private File snapshotFile() {
+        return dir.resolve("accounts.dat").toFile();
+    }
+
+    private File journalFile() {
+        return dir.resolve("accounts.journal").toFile();
+    }
+
+    @Test
+    void transferBatchesReplayWholeOrNotAtAll() throws IOException {
+        try (LedgerService ledger = open()) {
+            ledger.createAccount(1, "Ann");
+            ledger.createAccount(2, "Bob");
+            ledger.createAccount(3, "Cy");
+            ledger.deposit(1, 1000);
+            // The second leg overdraws account 2, so the first must not happen either
+            assertThrows(IllegalArgumentException.class, () -> ledger.postTransfers(Arrays.asList(
+                    new LedgerService.Transfer(1, 2, 600), new LedgerService.Transfer(2, 3, 900))));
+            assertEquals(1000, ledger.getBalance(1));
+            assertEquals(0, ledger.getBalance(2));
+            // A leg may spend what an earlier leg paid in
+            ledger.commit(ledger.postTransfers(Arrays.asList(
+                    new LedgerService.Transfer(1, 2, 600), new LedgerService.Transfer(2, 3, 500))).get(0).sequence);
+        }
+
+        try (LedgerService ledger = open()) {
+            assertEquals(400, ledger.getBalance(1));
+            assertEquals(100, ledger.getBalance(2));
+            assertEquals(500, ledger.getBalance(3));
+            TransactionLog.View history = ledger.view(2).history;
+            assertEquals(3, history.size());
+            assertEquals(TransactionLog.TRANSFER_IN, history.type(1));
+            assertEquals(1, history.counterparty(1));
+            assertEquals(TransactionLog.TRANSFER_OUT, history.type(2));
+            assertEquals(3, history.counterparty(2));
+            assertEquals(1000, ledger.aggregates().totalBalance());
+            ledger.transfer(3, 1, 250);
+        }
+
+        // A crash while the last transfer was being written loses all of its legs
+        try (RandomAccessFile raf = new RandomAccessFile(journalFile(), "rw")) {
+            raf.setLength(raf.length() - 4);
+        }
+        try (LedgerService ledger = open()) {
+            assertEquals(400, ledger.getBalance(1));
+            assertEquals(500, ledger.getBalance(3));
+            assertEquals(2, ledger.view(3).history.size());
+            assertEquals(3, ledger.view(1).history.size());
+        }
+    }
+
+    @Test
+    void checkpointKeepsStateAndEmptiesJournal() throws IOException {
+        try (LedgerService ledger = open()) {
+            ledger.createAccount(1, "Ann");
+            ledger.createAccount(2, "Bob");
+            ledger.deposit(1, 1000);
+            ledger.transfer(1, 2, 300);
+            ledger.checkpoint();
+            assertEquals(0, journalFile().length());
+            ledger.withdraw(2, 100);
+        }
+        try (LedgerService ledger = open()) {
+            assertEquals(700, ledger.getBalance(1));
+            assertEquals(200, ledger.getBalance(2));
+            assertEquals(3, ledger.view(2).history.size());
+        }
+    }
+
+    @Test
+    void onlyOneProcessOwnsTheFilesButReadersMayLook() throws IOException {
+        try (LedgerService ledger = open()) {
+            ledger.createAccount(1, "Ann");
+            ledger.deposit(1, 1000);
+            assertThrows(IOException.class, this::open);
+
+            long journalLength = journalFile().length();
+            try (LedgerService reader = LedgerService.openReadOnly(snapshotFile(), journalFile(), Long.MAX_VALUE)) {
+                assertEquals(1000, reader.getBalance(1));
+                assertEquals(1000, reader.aggregates().totalBalance());
+                assertThrows(IllegalStateException.class, () -> reader.postDeposit(1, 5));
+                assertThrows(IllegalStateException.class, reader::checkpoint);
+            }
+            assertEquals(journalLength, journalFile().length());
+            assertFalse(snapshotFile().exists());
+        }
+    }
+
+    @Test
+    void evictionsDoNotDeadlockWithCheckpoints() throws Exception {
+        int accounts = 64;
+        // Room for a few histories only, so nearly every read evicts another account's
+        try (LedgerService ledger = LedgerService.open(snapshotFile(), journalFile(), AccountJournal.SyncMode.NONE,
+                0, Long.MAX_VALUE, 16, 0)) {
+            for (int n = 1; n <= accounts; n++) {
+                ledger.createAccount(n, "Holder " + n);
+                for (int i = 0; i < 8; i++) {
+                    ledger.deposit(n, 100);
+                }
+            }
+            ledger.checkpoint();
+            ExecutorService pool = Executors.newFixedThreadPool(4);
+            try {
+                assertTimeoutPreemptively(Duration.ofSeconds(60), () -> {
+                    List<Future<?>> readers = new ArrayList<>();
+                    for (int t = 0; t < 3; t++) {
+                        int offset = t;
+                        readers.add(pool.submit(() -> {
+                            for (int i = 0; i < 20_000; i++) {
+                                int n = (i * 7 + offset) % accounts + 1;
+                                // Paging the history in makes room by evicting others
+                                assertEquals(100, (long) ledger.withAccount(n,
+                                        account -> account.getTransactionLog().amount(1)));
+                            }
+                            return null;
+                        }));
+                    }
+                    Future<?> checkpoints = pool.submit(() -> {
+                        while (!readers.stream().allMatch(Future::isDone)) {
+                            ledger.checkpoint();
+                        }
+                        return null;
+                    });
+                    for (Future<?> reader : readers) {
+                        reader.get();
+                    }
+                    checkpoints.get();
+                });
+            } finally {
+                pool.shutdownNow();
+            }
+            assertEquals(800, ledger.getBalance(accounts));
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package banking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigDecimal;
+import java.util.Locale;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class MoneyTest {
+    @Test
+    void parsesSignsAndUpToTwoFractionDigits() {
+        assertEquals(1200, Money.parse("12"));
+        assertEquals(1250, Money.parse("12.5"));
+        assertEquals(-75, Money.parse("-0.75"));
+        assertEquals(305, Money.parse("+3.05"));
+        assertEquals(50, Money.parse(".5"));
+        assertEquals(700, Money.parse("7."));
+        assertEquals(0, Money.parse("-0"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "-", "+", ".", "1.234", "1,00", "abc", "1.2.3", "1e3", " 1", "--1"})
+    void rejectsMalformedAmounts(String text) {
+        assertThrows(NumberFormatException.class, () -> Money.parse(text));
+    }
+
+    @Test
+    void rejectsAmountsBeyondTheLongRangeInsteadOfWrapping() {
+        assertEquals(9_223_372_036_854_775_799L, Money.parse("92233720368547757.99"));
+        assertEquals(-9_223_372_036_854_775_799L, Money.parse("-92233720368547757.99"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("92233720368547758.08"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("99999999999999999999"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("-184467440737095516.16"));
+    }
+
+    @Test
+    void formatsLikeRootLocalePercentTwoF() {
+        long[] amounts = {0, 5, -5, 99, -99, 100, 123_456, -123_456, 9_223_372_036_854_775_799L};
+        for (long amount : amounts) {
+            String expected = String.format(Locale.ROOT, "%.2f", BigDecimal.valueOf(amount, 2));
+            assertEquals(expected, Money.format(amount));
+            assertEquals(amount, Money.parse(Money.format(amount)));
+        }
+        assertEquals("-92233720368547758.08", Money.format(Long.MIN_VALUE));
+        assertEquals("92233720368547758.07", Money.format(Long.MAX_VALUE));
+    }
+
+    @Test
+    void addRejectsOverflow() {
+        assertEquals(150, Money.add(100, 50));
+        assertEquals(Long.MAX_VALUE, Money.add(Long.MAX_VALUE - 1, 1));
+        assertThrows(IllegalArgumentException.class, () -> Money.add(Long.MAX_VALUE, 1));
+        assertThrows(IllegalArgumentException.class, () -> Money.add(Long.MIN_VALUE, -1));
+    }
+
+    @Test
+    void legacyDoublesRoundHalfEvenToWholeCents() {
+        assertEquals(30, Money.fromDouble(0.1 + 0.2));
+        assertEquals(-1999, Money.fromDouble(-19.99));
+        // 12.5 and 37.5 cents are exact in binary, so these are true ties
+        assertEquals(12, Money.fromDouble(0.125));
+        assertEquals(38, Money.fromDouble(0.375));
+        assertEquals(0, Money.fromDouble(0.005));
+        assertThrows(IllegalArgumentException.class, () -> Money.fromDouble(Double.NaN));
+        assertThrows(IllegalArgumentException.class, () -> Money.fromDouble(1e30));
+        assertThrows(IllegalArgumentException.class, () -> Money.fromDouble(Double.NEGATIVE_INFINITY));
+    }
+}
@@ -0,0 +1,275 @@
+package banking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class SnapshotFileTest {
+    private static final long T0 = 1_700_000_000_000L;
+
+    @TempDir
+    Path dir;
+
+    // An account as an older release would have laid it out
+    private static final class Fixture {
+        final int accountNumber;
+        final String holder;
+        final List<long[]> entries = new ArrayList<>(); // time, type, amount, balance, counterparty
+
+        Fixture(int accountNumber, String holder) {
+            this.accountNumber = accountNumber;
+            this.holder = holder;
+            entries.add(new long[]{T0, TransactionLog.CREATED, 0, 0, 0});
+        }
+
+        Fixture add(byte type, long amount, long balance, int counterparty) {
+            entries.add(new long[]{T0 + entries.size() * 60_000L, type, amount, balance, counterparty});
+            return this;
+        }
+
+        long balance() {
+            return entries.get(entries.size() - 1)[3];
+        }
+    }
+
+    private File snapshotFile() {
+        return dir.resolve("accounts.dat").toFile();
+    }
+
+    private LedgerService open() throws IOException {
+        return LedgerService.open(snapshotFile(), dir.resolve("accounts.journal").toFile(),
+                AccountJournal.SyncMode.NONE, 0, Long.MAX_VALUE, Long.MAX_VALUE, 0);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 3, 4})
+    void olderVersionsMigrateToTheCurrentOne(int version) throws IOException {
+        List<Fixture> fixtures = fixtures(version);
+        write(snapshotFile(), version, 0, fixtures);
+
+        try (LedgerService ledger = open()) {
+            assertAccounts(ledger, fixtures, version);
+        }
+        assertTrue(new File(snapshotFile().getPath() + ".legacy").isFile());
+        assertFalse(snapshotFile().exists());
+        assertEquals(SnapshotFile.VERSION, version(snapshotFile()));
+
+        // The migrated file reads back the same, volumes included
+        try (LedgerService ledger = open()) {
+            assertAccounts(ledger, fixtures, version);
+            LocalDate date = Instant.ofEpochMilli(T0).atZone(ZoneId.systemDefault()).toLocalDate();
+            long deposited = 0;
+            for (Aggregates.Day day : ledger.aggregates().days(date, date.plusDays(1))) {
+                deposited += day.amount(TransactionLog.DEPOSIT);
+            }
+            assertEquals(1050, deposited);
+        }
+    }
+
+    @Test
+    void currentVersionRoundTrips() throws IOException {
+        try (LedgerService ledger = open()) {
+            ledger.createAccount(7, "Ann");
+            ledger.createAccount(9, "Bob");
+            ledger.deposit(7, 1050);
+            ledger.withdraw(7, 250);
+            ledger.transfer(7, 9, 300);
+            ledger.checkpoint();
+        }
+        assertEquals(SnapshotFile.VERSION, version(snapshotFile()));
+        try (LedgerService ledger = open()) {
+            assertEquals(500, ledger.getBalance(7));
+            assertEquals(300, ledger.getBalance(9));
+            TransactionLog.View history = ledger.view(9).history;
+            assertEquals(TransactionLog.TRANSFER_IN, history.type(1));
+            assertEquals(7, history.counterparty(1));
+            assertEquals("Bob", ledger.view(9).holder);
+            assertEquals(800, ledger.aggregates().totalBalance());
+        }
+        assertFalse(new File(snapshotFile().getPath() + ".legacy").exists());
+    }
+
+    @Test
+    void checkpointsWriteNewGenerationsAndDeleteTheOldOnes() throws IOException {
+        try (LedgerService ledger = open()) {
+            ledger.createAccount(7, "Ann");
+            ledger.checkpoint();
+            ledger.deposit(7, 100);
+            ledger.checkpoint();
+            ledger.deposit(7, 100);
+            ledger.checkpoint();
+        }
+        assertEquals(List.of("accounts.dat.3", "accounts.dat.current"), snapshotFiles());
+
+        // Left by a crash between writing a generation and naming it, or by a delete Windows refused
+        Files.write(dir.resolve("accounts.dat.2"), new byte[64]);
+        Files.write(dir.resolve("accounts.dat.4.tmp"), new byte[64]);
+        try (LedgerService ledger = open()) {
+            assertEquals(200, ledger.getBalance(7));
+        }
+        assertEquals(List.of("accounts.dat.3", "accounts.dat.current"), snapshotFiles());
+    }
+
+    private List<String> snapshotFiles() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.startsWith("accounts.dat"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static List<Fixture> fixtures(int version) {
+        List<Fixture> fixtures = new ArrayList<>();
+        Fixture ann = new Fixture(7, "Ann Ünal")
+                .add(TransactionLog.DEPOSIT, 1050, 1050, 0)
+                .add(TransactionLog.WITHDRAW, 250, 800, 0);
+        Fixture bob = new Fixture(9, "Bob");
+        if (version >= 3) {
+            // Transfers and their counterparty column arrived with version 3
+            ann.add(TransactionLog.TRANSFER_OUT, 300, 500, 9);
+            bob.add(TransactionLog.TRANSFER_IN, 300, 300, 7);
+        }
+        fixtures.add(ann);
+        fixtures.add(bob);
+        return fixtures;
+    }
+
+    private static void assertAccounts(LedgerService ledger, List<Fixture> fixtures, int version) {
+        assertEquals(fixtures.size(), ledger.size());
+        long total = 0;
+        for (Fixture fixture : fixtures) {
+            BankAccount.View account = ledger.view(fixture.accountNumber);
+            assertEquals(fixture.holder, account.holder);
+            assertEquals(fixture.balance(), account.balance);
+            assertEquals(fixture.entries.size(), account.history.size());
+            for (int i = 0; i < fixture.entries.size(); i++) {
+                long[] entry = fixture.entries.get(i);
+                assertEquals(entry[0], account.history.time(i));
+                assertEquals(entry[1], account.history.type(i));
+                assertEquals(entry[2], account.history.amount(i));
+                assertEquals(entry[3], account.history.balance(i));
+                assertEquals(version >= 3 ? entry[4] : 0, account.history.counterparty(i));
+            }
+            total += fixture.balance();
+        }
+        assertEquals(total, ledger.aggregates().totalBalance());
+    }
+
+    private int version(File file) throws IOException {
+        try (SnapshotFile snapshot = SnapshotFile.open(SnapshotFile.current(file), new AccountStore(),
+                new HistoryArchive(dir.resolve("archive").toFile(), 1))) {
+            return snapshot.version();
+        }
+    }
+
+    // Lays the accounts out as the given version did: a 64-byte header, a table of 48-byte entries
+    // (64 from version 4), the history segments, the archive directory (version 4, empty here) and
+    // the holder names
+    private static void write(File file, int version, long sequence, List<Fixture> fixtures) throws IOException {
+        int entrySize = version >= 4 ? 64 : 48;
+        long historyOffset = 64 + (long) fixtures.size() * entrySize;
+        List<byte[]> segments = new ArrayList<>();
+        long segmentsLength = 0;
+        for (Fixture fixture : fixtures) {
+            byte[] segment = segment(version, fixture);
+            segments.add(segment);
+            segmentsLength += segment.length;
+        }
+        long directoryOffset = historyOffset + segmentsLength;
+        long namesOffset = directoryOffset;
+        List<byte[]> names = new ArrayList<>();
+        long namesLength = 0;
+        for (Fixture fixture : fixtures) {
+            byte[] name = fixture.holder.getBytes(StandardCharsets.UTF_8);
+            names.add(name);
+            namesLength += name.length;
+        }
+        long fileLength = namesOffset + namesLength;
+
+        ByteBuffer out = ByteBuffer.allocate((int) fileLength).order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(SnapshotFile.MAGIC).putInt(version).putLong(sequence).putInt(fixtures.size()).putInt(0)
+                .putLong(historyOffset).putLong(namesOffset).putLong(fileLength);
+        if (version >= 4) {
+            out.putLong(directoryOffset);
+        }
+        out.position(64);
+        long segmentOffset = historyOffset;
+        long nameOffset = 0;
+        for (int i = 0; i < fixtures.size(); i++) {
+            Fixture fixture = fixtures.get(i);
+            int start = out.position();
+            out.putInt(fixture.accountNumber).putInt(fixture.entries.size()).putLong(nameOffset)
+                    .putInt(names.get(i).length).putInt(0);
+            if (version == 1) {
+                out.putDouble(fixture.balance() / 100.0);
+            } else {
+                out.putLong(fixture.balance());
+            }
+            out.putLong(segmentOffset).putLong(segments.get(i).length);
+            if (version >= 4) {
+                out.putLong(directoryOffset).putInt(0).putInt(0);
+            }
+            assertEquals(entrySize, out.position() - start);
+            segmentOffset += segments.get(i).length;
+            nameOffset += names.get(i).length;
+        }
+        for (byte[] segment : segments) {
+            out.put(segment);
+        }
+        for (byte[] name : names) {
+            out.put(name);
+        }
+        Files.write(file.toPath(), out.array());
+    }
+
+    // Times, amounts and balances (doubles in version 1), counterparties from version 3, types, no notes
+    private static byte[] segment(int version, Fixture fixture) {
+        int n = fixture.entries.size();
+        ByteBuffer out = ByteBuffer.allocate(n * 29 + 4).order(ByteOrder.LITTLE_ENDIAN);
+        for (long[] entry : fixture.entries) {
+            out.putLong(entry[0]);
+        }
+        for (int column = 2; column <= 3; column++) {
+            for (long[] entry : fixture.entries) {
+                if (version == 1) {
+                    out.putDouble(entry[column] / 100.0);
+                } else {
+                    out.putLong(entry[column]);
+                }
+            }
+        }
+        if (version >= 3) {
+            for (long[] entry : fixture.entries) {
+                out.putInt((int) entry[4]);
+            }
+        }
+        for (long[] entry : fixture.entries) {
+            out.put((byte) entry[1]);
+        }
+        out.putInt(0);
+        byte[] segment = new byte[out.position()];
+        out.flip();
+        out.get(segment);
+        return segment;
+    }
+}
@@ -0,0 +1,70 @@
+package banking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TransactionFileWriterTest {
+    @TempDir
+    Path dir;
+
+    private LedgerService open() throws IOException {
+        return LedgerService.open(dir.resolve("accounts.dat").toFile(), dir.resolve("accounts.journal").toFile(),
+                AccountJournal.SyncMode.NONE, 0, Long.MAX_VALUE, Long.MAX_VALUE, 0);
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    void appendsMatchAFullRewrite() throws IOException {
+        File incremental = Files.createDirectory(dir.resolve("incremental")).toFile();
+        File full = Files.createDirectory(dir.resolve("full")).toFile();
+        try (LedgerService ledger = open();
+             // One open file, so every other call closes and reopens one
+             TransactionFileWriter appender = new TransactionFileWriter(incremental, 1);
+             TransactionFileWriter exporter = new TransactionFileWriter(full, 1)) {
+            ledger.createAccount(1, "Ann");
+            ledger.createAccount(2, "Bob");
+            for (int i = 1; i <= 50; i++) {
+                ledger.deposit(1, i * 100L);
+                ledger.transfer(1, 2, i * 10L);
+                appender.append(ledger.view(1));
+                appender.append(ledger.view(2));
+            }
+            // The balance field is rewritten in place as it grows by several digits
+            ledger.deposit(2, 1_000_000_000_00L);
+            appender.append(ledger.view(2));
+
+            for (int account = 1; account <= 2; account++) {
+                exporter.export(ledger.view(account));
+                assertEquals(read(exporter.fileFor(account)), read(appender.fileFor(account)));
+            }
+            assertTrue(read(appender.fileFor(2)).contains("Current Balance: 1000000127.50"));
+        }
+    }
+
+    @Test
+    void olderViewsAreIgnored() throws IOException {
+        File directory = Files.createDirectory(dir.resolve("transactions")).toFile();
+        try (LedgerService ledger = open();
+             TransactionFileWriter writer = new TransactionFileWriter(directory, 16)) {
+            ledger.createAccount(1, "Ann");
+            BankAccount.View before = ledger.view(1);
+            ledger.deposit(1, 500);
+            BankAccount.View after = ledger.view(1);
+            writer.append(after);
+            String written = read(writer.fileFor(1));
+            writer.append(before);
+            assertEquals(written, read(writer.fileFor(1)));
+            assertTrue(written.contains("Current Balance: 5.00"));
+        }
+    }
+}
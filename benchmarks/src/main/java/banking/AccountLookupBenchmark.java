@@ -0,0 +1,58 @@
+package banking;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// findAccount: the GUI's lookup is LedgerService.find over the hash-indexed AccountStore
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class AccountLookupBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int accounts;
+
+    private Path dir;
+    private LedgerService ledger;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("bank-lookup");
+        ledger = BenchmarkSupport.openLedger(dir);
+        BenchmarkSupport.populate(ledger, accounts);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        ledger.close();
+        BenchmarkSupport.delete(dir);
+    }
+
+    @Benchmark
+    public BankAccount findExisting() {
+        return ledger.find(1 + ThreadLocalRandom.current().nextInt(accounts));
+    }
+
+    @Benchmark
+    public BankAccount findMissing() {
+        return ledger.find(accounts + 1 + ThreadLocalRandom.current().nextInt(accounts));
+    }
+}
@@ -0,0 +1,46 @@
+package banking;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// BankAccount.deposit/withdraw, including recording each entry in the transaction history
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class AccountOperationBenchmark {
+    private BankAccount account;
+
+    // A fresh account per iteration keeps the history from growing across the whole run
+    @Setup(Level.Iteration)
+    public void setUp() {
+        account = new BankAccount(1, "Benchmark Holder");
+        account.deposit(100_000_000L);
+    }
+
+    @Benchmark
+    public long deposit() {
+        account.deposit(1234);
+        return account.getBalance();
+    }
+
+    @Benchmark
+    public long depositThenWithdraw() {
+        account.deposit(1234);
+        account.withdraw(1234);
+        return account.getBalance();
+    }
+}
@@ -0,0 +1,38 @@
+package banking;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+// Shared fixtures: every benchmark runs against a throwaway data directory and never touches Swing
+final class BenchmarkSupport {
+    private BenchmarkSupport() {
+    }
+
+    static LedgerService openLedger(Path dir) throws IOException {
+        return LedgerService.open(dir.resolve("accounts.dat").toFile(), dir.resolve("accounts.journal").toFile(),
+                AccountJournal.SyncMode.NONE, 0, Long.MAX_VALUE, Long.MAX_VALUE, 10_000);
+    }
+
+    // Creates accounts 1..count, each with a few transactions, and snapshots them to accounts.dat
+    static void populate(LedgerService ledger, int count) throws IOException {
+        for (int n = 1; n <= count; n++) {
+            ledger.postCreate(n, "Holder " + n);
+            ledger.postDeposit(n, (100 + n % 1000) * 100L);
+            ledger.postWithdraw(n, 2550);
+        }
+        ledger.checkpoint();
+    }
+
+    static void delete(Path dir) throws IOException {
+        if (dir == null || !Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+}
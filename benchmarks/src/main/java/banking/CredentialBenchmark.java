@@ -0,0 +1,59 @@
+package banking;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Login verifications per second at different PBKDF2 costs; bank.auth.iterations picks the GUI's setting
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class CredentialBenchmark {
+    @Param({"10000", "100000", "310000", "600000"})
+    public int iterations;
+
+    private Path dir;
+    private CredentialStore store;
+    private final char[] password = "correct horse".toCharArray();
+    private final char[] wrongPassword = "battery staple".toCharArray();
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("bank-auth");
+        store = CredentialStore.open(dir.resolve("users.log").toFile(), dir.resolve("users.dat").toFile(), iterations);
+        store.register("bench", password);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        store.close();
+        BenchmarkSupport.delete(dir);
+    }
+
+    @Benchmark
+    public boolean verifyValid() throws IOException {
+        return store.verify("bench", password);
+    }
+
+    @Benchmark
+    public boolean verifyWrongPassword() throws IOException {
+        return store.verify("bench", wrongPassword);
+    }
+}
@@ -0,0 +1,62 @@
+package banking;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Turning stored history into the text shown by the history tab and written to transaction files
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class HistoryRenderingBenchmark {
+    @Param({"100", "10000"})
+    public int entries;
+
+    private BankAccount account;
+
+    @Setup
+    public void setUp() {
+        account = new BankAccount(1, "Benchmark Holder");
+        for (int i = 1; i < entries; i++) {
+            if (i % 3 == 0) {
+                account.withdraw(500);
+            } else {
+                account.deposit((10 + i % 100) * 100L);
+            }
+        }
+    }
+
+    // The list formats on access, so render every line as an export would
+    @Benchmark
+    public int fullHistory() {
+        int length = 0;
+        for (String line : account.getTransactionHistory()) {
+            length += line.length();
+        }
+        return length;
+    }
+
+    // Taking a read snapshot copies nothing, however long the history
+    @Benchmark
+    public BankAccount.View view() {
+        return account.view();
+    }
+
+    @Benchmark
+    public String latestEntry() {
+        return account.getTransaction(account.getTransactionCount() - 1);
+    }
+}
@@ -0,0 +1,66 @@
+package banking;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// saveAccounts/loadAccounts: a full snapshot (checkpoint) and a cold open of snapshot plus journal
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx4g"})
+public class PersistenceBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int accounts;
+
+    private Path dir;
+    private LedgerService ledger;
+    // Populated the same way but closed, since the open ledger holds the lock on dir
+    private Path loadDir;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("bank-persistence");
+        ledger = BenchmarkSupport.openLedger(dir);
+        BenchmarkSupport.populate(ledger, accounts);
+        loadDir = Files.createTempDirectory("bank-persistence-load");
+        try (LedgerService populated = BenchmarkSupport.openLedger(loadDir)) {
+            BenchmarkSupport.populate(populated, accounts);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        ledger.close();
+        BenchmarkSupport.delete(dir);
+        BenchmarkSupport.delete(loadDir);
+    }
+
+    @Benchmark
+    public void saveAccounts() throws IOException {
+        ledger.checkpoint();
+    }
+
+    @Benchmark
+    public int loadAccounts() throws IOException {
+        try (LedgerService loaded = BenchmarkSupport.openLedger(loadDir)) {
+            return loaded.size();
+        }
+    }
+}
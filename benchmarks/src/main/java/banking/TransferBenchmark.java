@@ -0,0 +1,83 @@
+package banking;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Transfers per second between random accounts from eight threads. Fewer accounts means more
+// threads contending for the same stripes.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class TransferBenchmark {
+    private static final int BATCH_LEGS = 4;
+
+    @Param({"100", "100000"})
+    public int accounts;
+
+    private Path dir;
+    private LedgerService ledger;
+
+    // A fresh ledger per iteration keeps the histories from growing across the whole run
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("bank-transfer");
+        ledger = BenchmarkSupport.openLedger(dir);
+        for (int n = 1; n <= accounts; n++) {
+            ledger.postCreate(n, "Holder " + n);
+            ledger.postDeposit(n, 1_000_000_000L);
+        }
+        ledger.checkpoint();
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        ledger.close();
+        BenchmarkSupport.delete(dir);
+    }
+
+    @Benchmark
+    public long transfer() throws IOException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = 1 + random.nextInt(accounts);
+        int to = 1 + (from + random.nextInt(accounts - 1)) % accounts;
+        return ledger.transfer(from, to, 1 + random.nextInt(100));
+    }
+
+    @Benchmark
+    public long batchTransfer() throws IOException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<LedgerService.Transfer> legs = new ArrayList<>(BATCH_LEGS);
+        for (int i = 0; i < BATCH_LEGS; i++) {
+            int from = 1 + random.nextInt(accounts);
+            int to = 1 + (from + random.nextInt(accounts - 1)) % accounts;
+            legs.add(new LedgerService.Transfer(from, to, 1 + random.nextInt(100)));
+        }
+        List<LedgerService.Posting> postings = ledger.postTransfers(legs);
+        ledger.commit(postings.get(0).sequence);
+        return postings.get(0).sequence;
+    }
+}